@@ -19,7 +19,8 @@ import java.util.Date;
 
 /** A news article, including its metadata and content. */
 public class NewsArticle {
-  private static final int LOWEST_PRIORITY = WebCrawler.CUSTOM_SEARCH_RESULT_COUNT;
+  private static final int LOWEST_PRIORITY =
+      WebCrawler.CUSTOM_SEARCH_RESULT_COUNT * WebCrawler.MAX_CUSTOM_SEARCH_PAGE_COUNT;
   private String title;
   private String url;
   private String content;
@@ -29,6 +30,9 @@ public class NewsArticle {
   private Date publishedDate;
   // A value in range [1, {@code LOWEREST_PRIORITY].
   private int priority;
+  // HTTP validators of the webpage, for conditionally re-fetching it in the next crawl.
+  private String etag;
+  private String httpLastModified;
 
   /**
    * Consturcts a {@code NewsArticle}. If {@code publishedDate} is null, initialize with the
@@ -50,6 +54,8 @@ public class NewsArticle {
     this.publisher = newsArticle.publisher;
     this.publishedDate = (Date) newsArticle.publishedDate.clone(); // Date is mutable.
     this.priority = newsArticle.priority;
+    this.etag = newsArticle.etag;
+    this.httpLastModified = newsArticle.httpLastModified;
   }
 
   public String getTitle() {
@@ -84,6 +90,14 @@ public class NewsArticle {
     return this.priority;
   }
 
+  public String getEtag() {
+    return this.etag;
+  }
+
+  public String getHttpLastModified() {
+    return this.httpLastModified;
+  }
+
   public void setTitle(String title) {
     this.title = (title == null) ? "" : title;
   }
@@ -100,6 +114,14 @@ public class NewsArticle {
     this.summarizedContent = (summarizedContent == null) ? "" : summarizedContent;
   }
 
+  public void setEtag(String etag) {
+    this.etag = etag;
+  }
+
+  public void setHttpLastModified(String httpLastModified) {
+    this.httpLastModified = httpLastModified;
+  }
+
   /**
    * Compares whether individual instance variables are equal, with the exception that content
    * can be the substring of another without being exactly the same. The exception is allowed
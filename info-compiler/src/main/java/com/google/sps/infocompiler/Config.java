@@ -30,6 +30,37 @@ public class Config {
   // This should be shorter than or equal to the time it takes for the next cycle of InfoCompiler
   // to run.
   public static final long DATA_EXPIRATION_SECONDS = 60 * 60 * 12;
+  // For skipping news articles that were already crawled: the number of (candidate, news article)
+  // pairs the seen article filter is sized for, and its false positive rate. Once the filter holds
+  // more, it is rebuilt from the stored news articles, for twice as many of them if that is larger.
+  // Memory use is about 1.2 bytes per expected insertion at a 1% false positive rate.
+  public static final long SEEN_ARTICLE_FILTER_EXPECTED_INSERTIONS = 100000;
+  public static final double SEEN_ARTICLE_FILTER_FALSE_POSITIVE_RATE = 0.01;
+  // Whether to extract news article content in streaming mode, which bounds the bytes parsed per
+  // webpage, skips navigation/script/style subtrees and stops once the article has ended.
+  public static final boolean STREAMING_EXTRACTION_MODE = false;
+  // Whether to extract news article content with the lightweight extractor, which tokenizes HTML
+  // in a single pass and feeds Boilerpipe directly instead of going through Tika.
+  public static final boolean LIGHTWEIGHT_EXTRACTION_MODE = false;
+  // Whether to summarize all news articles of a run together in a single PageRank job, run with
+  // {@code BATCH_SUMMARIZATION_PARALLELISM}, instead of in one job per news article. News articles
+  // are then stored at the end of the run rather than as soon as they are compiled.
+  public static final boolean BATCH_SUMMARIZATION_MODE = false;
+  public static final int BATCH_SUMMARIZATION_PARALLELISM =
+      Runtime.getRuntime().availableProcessors();
+  // For saving Custom Search quota on reruns and retries: how long the parsed results of a Custom
+  // Search query are reused, in seconds. 0 disables caching.
+  public static final long CUSTOM_SEARCH_CACHE_SECONDS = 60 * 60;
+  // How many pages of Custom Search results to fetch concurrently per candidate, in range [1, 10].
+  // Each page holds up to 10 results and costs one query. Queries of all news compilations share
+  // the Custom Search query rate limit (100 queries/minute).
+  public static final int CUSTOM_SEARCH_PAGE_COUNT = 1;
+  public static final double CUSTOM_SEARCH_QUERIES_PER_SECOND = 100.0 / 60;
+  // Whether to search only for news articles published since a candidate was last searched for,
+  // keeping the candidate's stored news articles, instead of searching from scratch every run. A
+  // full search still runs every {@code FULL_SEARCH_REFRESH_SECONDS}.
+  public static final boolean INCREMENTAL_SEARCH_MODE = false;
+  public static final long FULL_SEARCH_REFRESH_SECONDS = 60 * 60 * 24 * 7;
 
   // For respecting the query rate limit (250 queries/100 seconds) of the Civic Information API:
   // With Cloud Functions deployment: How much to shorten/extend the pause between queries, relative
@@ -40,4 +71,29 @@ public class Config {
   // For instance: [0, 300), [301, 600), [601, 1000) respectively for three Cloud Functions.
   public static final int ADDRESS_START_INDEX = 0; // Lower-bounded by 0.
   public static final int ADDRESS_END_INDEX = 300; // Upper-bounded by the total number of addresses.
+  // Elections held more than this many days ago are neither stored nor queried for contests.
+  public static final long ELECTION_HORIZON_DAYS = 1;
+
+  // How many candidates' news articles are compiled at the same time, in the background, while
+  // election contests keep being queried.
+  public static final int NEWS_COMPILATION_THREADS = 4;
+
+  // For InfoCompilerRunner on Compute Engine: Whether to query addresses concurrently, on virtual
+  // threads if the JVM supports them and on a pool of {@code MAX_PLATFORM_THREADS} threads
+  // otherwise. The query rate limit above still applies.
+  public static final boolean CONCURRENT_MODE = false;
+  public static final int MAX_PLATFORM_THREADS = 32;
+  // How many candidates' news articles may be compiled at the same time in concurrent mode, to
+  // bound the load on the Natural Language API and on news websites.
+  public static final int MAX_CONCURRENT_NEWS_COMPILATIONS = 16;
+
+  // For InfoCompilerRunner on Compute Engine: Whether to run continuously, every {@code
+  // REFRESH_SCHEDULER_TICK_SECONDS}, and only refresh the elections and candidates' news articles
+  // that are due, instead of refreshing everything once. Closer elections and candidates with
+  // more page views are refreshed more often, within the bounds below. The maximum interval is
+  // capped at half of {@code DATA_EXPIRATION_SECONDS}.
+  public static final boolean SCHEDULED_MODE = false;
+  public static final long REFRESH_SCHEDULER_TICK_SECONDS = 60 * 15;
+  public static final long MIN_REFRESH_INTERVAL_SECONDS = 60 * 60;
+  public static final long MAX_REFRESH_INTERVAL_SECONDS = 60 * 60 * 6;
 }
@@ -30,6 +30,7 @@ import com.google.cloud.storage.Blob;
 import com.google.cloud.storage.Storage;
 import com.google.cloud.storage.StorageOptions;
 import com.google.cloud.Timestamp;
+import com.google.common.util.concurrent.RateLimiter;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
@@ -38,17 +39,29 @@ import com.google.sps.infocompiler.Config;
 import com.google.sps.webcrawler.NewsContentExtractor;
 import com.google.sps.webcrawler.RelevancyChecker;
 import com.google.sps.webcrawler.WebCrawler;
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import org.apache.http.HttpEntity;
@@ -65,7 +78,7 @@ import org.apache.commons.lang3.StringUtils;
  * A information compiler for finding (1) official election/candidate information and (2) news
  * article information, and storing them in the database.
  */
-public class InfoCompiler {
+public class InfoCompiler implements Closeable {
   private static final String ELECTION_QUERY_URL =
       String.format("https://www.googleapis.com/civicinfo/v2/elections?key=%s",
                     Config.CIVIC_INFO_API_KEY);
@@ -88,11 +101,36 @@ public class InfoCompiler {
       Config.PROJECT_ID + "_datastore_bulk_delete";
   // This intermediary variable is set up for testing purposes.
   static long DATA_EXPIRATION_SECONDS = Config.DATA_EXPIRATION_SECONDS;
+  static long ELECTION_HORIZON_DAYS = Config.ELECTION_HORIZON_DAYS;
   Datastore datastore = DatastoreOptions.getDefaultInstance().getService();
   WebCrawler webCrawler;
   List<String> electionQueryIds;
+  // Mappings of (election query ID, election date) for the elections in {@code electionQueryIds}.
+  private Map<String, Date> electionDates = new ConcurrentHashMap<>();
   // List of U.S. street addresses that theoretically cover the entire U.S.
   List<String> addresses;
+  // Runs per-address queries in concurrent mode. Null in the default, sequential mode.
+  private ExecutorService taskExecutor;
+  // Shared by all tasks in concurrent mode to respect the query rate limit of the Civic
+  // Information API.
+  private RateLimiter civicQueryLimiter;
+  // Compiles candidates' news articles in the background, so that querying election contests
+  // needn't wait for web crawling. Its thread count bounds the number of candidates whose news
+  // articles are compiled at the same time.
+  private ExecutorService newsCompilationExecutor =
+      newNewsCompilationExecutor(Config.NEWS_COMPILATION_THREADS);
+  // News compilation tasks, which are awaited before the crawl state is saved and outdated
+  // information is cleared.
+  private Queue<Future<?>> newsCompilationTasks = new ConcurrentLinkedQueue<>();
+  // Mappings of (election query ID, lock) for serializing updates to the same {@code Election}
+  // entity.
+  private Map<String, Lock> electionLocks = new ConcurrentHashMap<>();
+  // Decides which elections and candidates' news articles the current run refreshes.
+  private RefreshPolicy refreshPolicy = RefreshPolicy.REFRESH_ALL;
+  // Names of the stored elections that the current run doesn't refresh.
+  private List<String> skippedElectionNames = new ArrayList<>();
+  // Whether the current run has stored elections or candidates, or deleted outdated information.
+  private AtomicBoolean isDatasetModified = new AtomicBoolean();
 
   public InfoCompiler() throws IOException {
     this(DatastoreOptions.getDefaultInstance().getService());
@@ -102,7 +140,7 @@ public class InfoCompiler {
   public InfoCompiler(Datastore datastore) throws IOException {
     this.datastore = datastore;
     this.webCrawler =
-        new WebCrawler(this.datastore, new NewsContentExtractor(), new RelevancyChecker());
+        new WebCrawler(this.datastore, NewsContentExtractor.create(), new RelevancyChecker());
     parseAddressesFromDataset();
   }
 
@@ -133,13 +171,99 @@ public class InfoCompiler {
   }
 
   /**
-   * Compiles location-specific information for elections, positions and candidates. Then clears
-   * outdated information from the database.
+   * Compiles location-specific information for elections, positions and candidates. Once the
+   * candidates' news articles, which are compiled in the background, are complete, stores the
+   * news articles that await batch summarization, if any, and saves the web crawler's state for
+   * the next run. Then clears outdated information from the database, and bumps the data set's
+   * generation so that the web app rebuilds its cached election directory, unless the run neither
+   * stored nor deleted anything that the web app serves, in which case the web app's caches stay
+   * valid.
    */
   public void compileInfo() {
+    compileInfo(RefreshPolicy.REFRESH_ALL);
+  }
+
+  /**
+   * Same as {@link #compileInfo()}, but only refreshes the elections and candidates' news articles
+   * that are due according to {@code refreshPolicy}. Candidates of elections that aren't due may
+   * still have their news articles compiled, from their stored information.
+   */
+  public void compileInfo(RefreshPolicy refreshPolicy) {
+    this.refreshPolicy = refreshPolicy;
+    skippedElectionNames.clear();
+    isDatasetModified.set(false);
+    webCrawler.getAndResetNewsArticlesModified();
     queryAndStoreBaseElectionInfo();
     queryAndStoreElectionContestInfo();
+    compileDueNewsArticlesOfSkippedElections();
+    awaitTasks(newsCompilationTasks);
+    newsCompilationTasks.clear();
+    webCrawler.summarizeAndStorePendingNewsArticles();
+    webCrawler.persistCrawlState();
     clearOutdatedInfo();
+    // Both are evaluated, so that the web crawler starts tracking anew either way.
+    boolean isNewsArticlesModified = webCrawler.getAndResetNewsArticlesModified();
+    if (isDatasetModified.get() || isNewsArticlesModified) {
+      storeDatasetGeneration();
+    } else {
+      System.out.println("Nothing was stored or deleted, so the dataset generation is kept.");
+    }
+  }
+
+  /**
+   * Opts into running per-address queries concurrently, on virtual threads if the JVM supports
+   * them and on a pool of {@code Config.MAX_PLATFORM_THREADS} threads otherwise. Queries to the
+   * Civic Information API are rate-limited across all tasks, up to {@code
+   * Config.MAX_CONCURRENT_NEWS_COMPILATIONS} candidates are crawled at the same time, and the web
+   * crawler keeps enforcing per-host connection limits and crawl delays.
+   */
+  public void enableConcurrentMode() {
+    taskExecutor = newTaskExecutor(Config.MAX_PLATFORM_THREADS);
+    civicQueryLimiter =
+        RateLimiter.create(
+            QUOTA_QUERY_LIMIT * 1000.0 / QUOTA_TIME_UNIT_MILLISECONDS / Config.PAUSE_FACTOR);
+    newsCompilationExecutor.shutdown();
+    newsCompilationExecutor =
+        newNewsCompilationExecutor(Config.MAX_CONCURRENT_NEWS_COMPILATIONS);
+  }
+
+  /**
+   * Creates an executor that compiles news articles on {@code threadCount} daemon threads, which
+   * don't keep the JVM alive.
+   */
+  private static ExecutorService newNewsCompilationExecutor(int threadCount) {
+    return Executors.newFixedThreadPool(threadCount, runnable -> {
+      Thread thread = new Thread(runnable, "news-compilation");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * Creates an executor that starts a virtual thread per task, if the JVM supports virtual
+   * threads, or a pool of {@code maxPlatformThreads} threads otherwise. The former is looked up
+   * reflectively so that the code still compiles and runs on older JVMs.
+   */
+  static ExecutorService newTaskExecutor(int maxPlatformThreads) {
+    try {
+      return (ExecutorService)
+          Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+      return Executors.newFixedThreadPool(maxPlatformThreads);
+    }
+  }
+
+  /**
+   * Releases the web crawler's connections and threads, and the threads of news compilation and
+   * concurrent mode.
+   */
+  @Override
+  public void close() throws IOException {
+    if (taskExecutor != null) {
+      taskExecutor.shutdownNow();
+    }
+    newsCompilationExecutor.shutdownNow();
+    webCrawler.close();
   }
 
   /**
@@ -157,19 +281,120 @@ public class InfoCompiler {
    * information, which will serve as the starting point for finding additional information, and
    * stores said found information in the database. VoterInfoQuery requires two query parameters:
    * (1) address and (2) election ID. To cover the entire United States and all elections, queries
-   * all combinations of {@code addresses} and election IDs. Information includes: candidate names
+   * all combinations of {@code addresses} and election IDs, as planned by {@link
+   * #planElectionContestQueries()}. Information includes: candidate names
    * and candidate party affiliations. Pauses for {@code QUERY_PAUSE_MILISECONDS} per query to
-   * respect the query rate limit of the Civic Information API.
+   * respect the query rate limit of the Civic Information API. In concurrent mode, runs the
+   * queries as concurrent tasks instead, and waits for them to finish. Either way, news articles
+   * of the candidates found are compiled in the background and may still be in progress on
+   * return.
    */
   void queryAndStoreElectionContestInfo() {
+    List<ContestQuery> contestQueries = planElectionContestQueries();
+    if (taskExecutor != null) {
+      List<Future<?>> queryTasks = new ArrayList<>(contestQueries.size());
+      for (ContestQuery contestQuery : contestQueries) {
+        queryTasks.add(taskExecutor.submit(() -> {
+          try {
+            queryAndStoreElectionContestInfo(contestQuery.address, contestQuery.electionQueryId);
+          } catch (UnsupportedEncodingException e) {}
+        }));
+      }
+      awaitTasks(queryTasks);
+      return;
+    }
+    for (ContestQuery contestQuery : contestQueries) {
+      try {
+        queryAndStoreElectionContestInfo(contestQuery.address, contestQuery.electionQueryId);
+        pause(QUERY_PAUSE_MILISECONDS);
+      } catch (UnsupportedEncodingException e) {}
+    }
+  }
+
+  /**
+   * Plans the VoterInfoQuery queries of this run: every combination of the addresses in range and
+   * the elections stored in this run, which excludes elections beyond the horizon. Orders the
+   * queries by election date, so that the closest elections are refreshed first, and reports the
+   * planned query count before any query is made.
+   */
+  private List<ContestQuery> planElectionContestQueries() {
     int addressStartIndex = Math.max(0, Config.ADDRESS_START_INDEX);
     int addressEndIndex = Math.min(addresses.size(), Config.ADDRESS_END_INDEX);
-    for (String address : addresses.subList(addressStartIndex, addressEndIndex)) {
-      for (String electionQueryId : electionQueryIds) {
-        try {
-          queryAndStoreElectionContestInfo(address, electionQueryId);
-          pause(QUERY_PAUSE_MILISECONDS);
-        } catch (UnsupportedEncodingException e) {}
+    List<String> plannedAddresses =
+        addresses.subList(addressStartIndex, Math.max(addressStartIndex, addressEndIndex));
+    List<String> plannedElectionQueryIds =
+        (electionQueryIds == null) ? new ArrayList<>() : new ArrayList<>(electionQueryIds);
+    plannedElectionQueryIds.sort(
+        Comparator.comparing(electionQueryId -> electionDates.get(electionQueryId),
+                             Comparator.nullsLast(Comparator.naturalOrder())));
+    List<ContestQuery> contestQueries =
+        new ArrayList<>(plannedElectionQueryIds.size() * plannedAddresses.size());
+    for (String electionQueryId : plannedElectionQueryIds) {
+      for (String address : plannedAddresses) {
+        contestQueries.add(new ContestQuery(address, electionQueryId));
+      }
+    }
+    System.out.println(
+        String.format("Planned %d contest queries for %d elections and %d addresses.",
+                      contestQueries.size(), plannedElectionQueryIds.size(),
+                      plannedAddresses.size()));
+    return contestQueries;
+  }
+
+  /** A planned VoterInfoQuery query, for an address and an election. */
+  private static class ContestQuery {
+    private String address;
+    private String electionQueryId;
+
+    ContestQuery(String address, String electionQueryId) {
+      this.address = address;
+      this.electionQueryId = electionQueryId;
+    }
+  }
+
+  /** Waits for all {@code tasks} to finish, and reports those that failed. */
+  private void awaitTasks(Iterable<Future<?>> tasks) {
+    for (Future<?> task : tasks) {
+      try {
+        task.get();
+      } catch (ExecutionException e) {
+        System.out.println("[ERROR] Concurrent task failed: " + e.getCause());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+    }
+  }
+
+  /**
+   * Compiles news articles, in the background, for the stored candidates of elections that
+   * weren't refreshed in this run, if their news articles are due according to {@code
+   * refreshPolicy}.
+   */
+  private void compileDueNewsArticlesOfSkippedElections() {
+    for (String electionName : skippedElectionNames) {
+      Entity electionEntity =
+          datastore.get(datastore.newKeyFactory().setKind("Election").newKey(electionName));
+      if (electionEntity == null) {
+        continue;
+      }
+      List<Value<String>> candidateIds = electionEntity.getList("candidateIds");
+      for (Value<String> candidateId : candidateIds) {
+        if (!refreshPolicy.isCandidateNewsDue(candidateId.get(), electionName)) {
+          continue;
+        }
+        Entity candidateEntity =
+            datastore.get(
+                datastore.newKeyFactory()
+                    .setKind("Candidate")
+                    .newKey(Long.parseLong(candidateId.get())));
+        if (candidateEntity == null) {
+          continue;
+        }
+        // The party is stored with a " Party" suffix, which news articles needn't mention.
+        String party = StringUtils.removeEnd(candidateEntity.getString("party"), " Party");
+        compileAndStoreCandidateNewsArticlesInDatabase(
+            candidateEntity.getString("name"), candidateId.get(), party);
       }
     }
   }
@@ -222,6 +447,7 @@ public class InfoCompiler {
     }
     if (targetInfo.equals("elections")) {
       electionQueryIds = new ArrayList<>(infoArray.size());
+      electionDates.clear();
       for (JsonElement info : infoArray) {
         storeBaseElectionInDatabase((JsonObject) info);
       }
@@ -238,6 +464,9 @@ public class InfoCompiler {
    * @throws ClientProtocolException if the GET request to the Civic Information API fails.
    */
   JsonObject queryCivicInformation(String queryUrl) throws IOException {
+    if (civicQueryLimiter != null) {
+      civicQueryLimiter.acquire();
+    }
     CloseableHttpClient httpClient = HttpClients.createDefault();
     HttpGet httpGet = new HttpGet(queryUrl);
     JsonObject json = requestHttpAndBuildJsonResponse(httpClient, httpGet);
@@ -275,7 +504,9 @@ public class InfoCompiler {
    * Stores the name, date and query ID of {@code election} in to the database. The original format
    * of the election day is "YYYY-MM-DD", and the specific hour/minute/second is irrelevant. By
    * default, stores the election day at the beginning of the day in EDT timezone. Extracts the
-   * state name from the political division information.
+   * state name from the political division information. Skips elections held more than {@code
+   * ELECTION_HORIZON_DAYS} days ago, and elections that aren't due according to {@code
+   * refreshPolicy}, leaving their stored information as is.
    */
   void storeBaseElectionInDatabase(JsonObject election) {
     String electionQueryId = election.get("id").getAsString();
@@ -293,6 +524,14 @@ public class InfoCompiler {
             Integer.parseInt(yearMonthDay[2]),
             4,
             0); // Convert from UTC to EDT with 4 hours.
+    long horizonTime = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(ELECTION_HORIZON_DAYS);
+    if (date.getTime() < horizonTime) {
+      return;
+    }
+    if (!refreshPolicy.isElectionDue(electionKey.getName(), date)) {
+      skippedElectionNames.add(electionKey.getName());
+      return;
+    }
     // Extract state name for the election. Set state to empty if not found.
     String ocdDivisionId = election.get("ocdDivisionId").getAsString();
     Matcher stateFinder = STATE_PATTERN.matcher(ocdDivisionId);
@@ -309,26 +548,77 @@ public class InfoCompiler {
             .set("lastModified", Timestamp.now())
             .build();
     datastore.put(electionEntity);
+    isDatasetModified.set(true);
     electionQueryIds.add(electionQueryId);
+    electionDates.put(electionQueryId, date);
   }
 
   /**
    * Stores the {@code contest} information of an election, including election positions, running
    * candidate names and party affiliations. Updates {@code Election} entities and creates {@code
-   * Candidate} entities.
+   * Candidate} entities. Updates to the same election are serialized, so that concurrent contests
+   * don't overwrite each other's positions and candidates. Only the update of the {@code Election}
+   * entity holds the election's lock: the incumbents are queried from the rate-limited Civic
+   * Information API before it is taken, and the new candidates are stored after it is released.
    */
   void storeElectionContestInDatabase(String electionQueryId, JsonObject contest) {
     JsonArray candidates = contest.getAsJsonArray("candidates");
     if (candidates == null) {
       return;
     }
+    Map<String, List<String>> incumbents =
+        getIncumbents(findElectionEntity(electionQueryId).getString("ocdDivisionId"));
+    Value<String> position =
+        StringValue.newBuilder(
+            capitalizeFirstLetterOfEachWord(contest.get("office").getAsString())).build();
+    List<JsonObject> newCandidates = new ArrayList<>(candidates.size());
+    List<Entity> newCandidateEntities = new ArrayList<>(candidates.size());
+    String electionName;
+    Lock electionLock = electionLocks.computeIfAbsent(electionQueryId, id -> new ReentrantLock());
+    electionLock.lock();
+    try {
+      electionName =
+          addElectionContestCandidates(electionQueryId, candidates, position, incumbents,
+                                       newCandidates, newCandidateEntities);
+    } finally {
+      electionLock.unlock();
+    }
+    if (newCandidateEntities.isEmpty()) {
+      return;
+    }
+    datastore.put(newCandidateEntities.toArray(new Entity[0]));
+    isDatasetModified.set(true);
+    for (int i = 0; i < newCandidates.size(); i++) {
+      String candidateId = Long.toString(newCandidateEntities.get(i).getKey().getId());
+      if (refreshPolicy.isCandidateNewsDue(candidateId, electionName)) {
+        compileAndStoreCandidateNewsArticlesInDatabase(
+            newCandidates.get(i).get("name").getAsString(), candidateId,
+            getParty(newCandidates.get(i)));
+      }
+    }
+  }
+
+  /** Finds the {@code Election} entity with {@code electionQueryId} in the database. */
+  private Entity findElectionEntity(String electionQueryId) {
     Query<Entity> electionQuery =
         Query.newEntityQueryBuilder()
             .setKind("Election")
             .setFilter(PropertyFilter.eq("queryId", electionQueryId))
             .build();
     QueryResults<Entity> electionQueryResults = datastore.run(electionQuery);
-    Entity electionEntity = electionQueryResults.next();
+    return electionQueryResults.next();
+  }
+
+  /**
+   * Adds the {@code candidates} running for {@code position} to the {@code Election} entity with
+   * {@code electionQueryId}, and updates it in the database. Adds each candidate that wasn't listed
+   * for the election yet to {@code newCandidates}, and its {@code Candidate} entity, which is left
+   * for the caller to store, to {@code newCandidateEntities}. Returns the name of the election.
+   */
+  private String addElectionContestCandidates(String electionQueryId, JsonArray candidates,
+      Value<String> position, Map<String, List<String>> incumbents,
+      List<JsonObject> newCandidates, List<Entity> newCandidateEntities) {
+    Entity electionEntity = findElectionEntity(electionQueryId);
     // Create a copy since the original list is a
     // {@code com.google.common.collect.ImmutableCollection}.
     List<Value<String>> candidatePositions =
@@ -337,22 +627,23 @@ public class InfoCompiler {
         new ArrayList<>(electionEntity.getList("candidateIds"));
     List<Value<Boolean>> candidateIncumbency =
         new ArrayList<>(electionEntity.getList("candidateIncumbency"));
-    String ocdDivisionId = electionEntity.getString("ocdDivisionId");
-    Map<String, List<String>> incumbents = getIncumbents(ocdDivisionId);
-    
-    // Obtain candidate information and create candidate entities in the database.
+    String electionName = electionEntity.getKey().getName();
+
+    // Obtain candidate information and build candidate entities.
     for (JsonElement candidate : candidates) {
-      Value<String> position =
-          StringValue.newBuilder(
-              capitalizeFirstLetterOfEachWord(contest.get("office").getAsString())).build();
-      storeElectionContestCandidateInDatabase(
-          (JsonObject) candidate,
-          candidateIds,
-          candidateIncumbency,
-          candidatePositions,
-          position,
-          incumbents,
-          electionEntity.getKey().getName());
+      Entity candidateEntity =
+          addElectionContestCandidate(
+              (JsonObject) candidate,
+              candidateIds,
+              candidateIncumbency,
+              candidatePositions,
+              position,
+              incumbents,
+              electionName);
+      if (candidateEntity != null) {
+        newCandidates.add((JsonObject) candidate);
+        newCandidateEntities.add(candidateEntity);
+      }
     }
     // Fill in position and candidate information for the election entities in the database.
     electionEntity =
@@ -362,6 +653,8 @@ public class InfoCompiler {
             .set("candidateIncumbency", candidateIncumbency)
             .build();
     datastore.update(electionEntity);
+    isDatasetModified.set(true);
+    return electionName;
   }
 
   /**
@@ -428,18 +721,17 @@ public class InfoCompiler {
   }
 
   /**
-   * Stores information of a {@code candidate} in the database, and updates the candidate's running
-   * position's information for the election. Information includes: name, party affiliation,
-   * incumbency status, and news articles related to the candidate. Set the last modified time for
-   * deletion purposes.
+   * Builds the {@code Candidate} entity of {@code candidate}, and updates the candidate's running
+   * position's information for the election. Information includes: name, party affiliation and
+   * incumbency status. Returns null if the candidate is already listed for the election. Set the
+   * last modified time for deletion purposes.
    */
-  void storeElectionContestCandidateInDatabase(JsonObject candidate,
+  Entity addElectionContestCandidate(JsonObject candidate,
       List<Value<String>> candidateIds, List<Value<Boolean>> candidateIncumbency, 
       List<Value<String>> candidatePositions, Value<String> position, Map<String,
       List<String>> incumbents, String electionName) {
     String name = candidate.get("name").getAsString();
-    String rawParty = candidate.get("party").getAsString();
-    String party = capitalizeFirstLetterOfEachWord(rawParty);
+    String party = getParty(candidate);
     String email = getField(candidate, "email");
     String phone = getField(candidate, "phone");
     String photoUrl = getField(candidate, "photoUrl");
@@ -448,7 +740,7 @@ public class InfoCompiler {
     long candidateId = (long) (name.hashCode() + party.hashCode() + electionName.hashCode());
     StringValue candidateIdString = StringValue.newBuilder(Long.toString(candidateId)).build();
     if (candidateIds.contains(candidateIdString)) {
-      return;
+      return null;
     }
     Key candidateKey =
         datastore.newKeyFactory()
@@ -465,13 +757,17 @@ public class InfoCompiler {
             .set("twitter", twitter)
             .set("lastModified", Timestamp.now())
             .build();
-    datastore.put(candidateEntity);
     candidateIds.add(candidateIdString);
     boolean isIncumbent = incumbents.containsKey(position.get())
         && incumbents.get(position.get()).contains(name);
     candidateIncumbency.add(BooleanValue.newBuilder(isIncumbent).build());
     candidatePositions.add(position);
-    compileAndStoreCandidateNewsArticlesInDatabase(name, new Long(candidateId).toString(), party);
+    return candidateEntity;
+  }
+
+  // Extracts the capitalized party affiliation from {@code candidate} JSON.
+  private String getParty(JsonObject candidate) {
+    return capitalizeFirstLetterOfEachWord(candidate.get("party").getAsString());
   }
 
   // Extracts {@code field} from {@code candidate} JSON.
@@ -500,11 +796,13 @@ public class InfoCompiler {
 
   /**
    * Compiles news articles data of {@code candidateName} and stores said data in the database.
-   * News articles data are represented by {@code NewsArticle}.
+   * News articles data are represented by {@code NewsArticle}. Does so in the background, on
+   * {@code newsCompilationExecutor}, without waiting for the compilation to finish.
    */
   private void compileAndStoreCandidateNewsArticlesInDatabase(String candidateName,
       String candidateId, String partyName) {
-    webCrawler.compileNewsArticle(candidateName, candidateId, partyName);
+    newsCompilationTasks.add(newsCompilationExecutor.submit(
+        () -> webCrawler.compileNewsArticle(candidateName, candidateId, partyName)));
   }
 
   /**
@@ -517,7 +815,22 @@ public class InfoCompiler {
             Timestamp.now().getSeconds() - DATA_EXPIRATION_SECONDS, 0);
     clearOutdatedEntities("Election", expirationTime);
     clearOutdatedEntities("Candidate", expirationTime);
-    clearOutdatedEntities("NewsArticle", expirationTime);
+    clearOutdatedEntities("NewsArticle", expirationTime, "NewsArticleContent");
+  }
+
+  /**
+   * Stores the current time as the generation of the data set, which the web app checks to tell
+   * whether its cached election directory is outdated.
+   */
+  private void storeDatasetGeneration() {
+    Key generationKey =
+        datastore.newKeyFactory().setKind("DatasetGeneration").newKey("current");
+    Entity generation =
+        Entity.newBuilder(generationKey)
+            .set("generation", System.currentTimeMillis())
+            .set("lastModified", Timestamp.now())
+            .build();
+    datastore.put(generation);
   }
 
   /**
@@ -525,6 +838,16 @@ public class InfoCompiler {
    * defined by {@code expirationTime}.
    */
   private void clearOutdatedEntities(String entityType, Timestamp expirationTime) {
+    clearOutdatedEntities(entityType, expirationTime, null);
+  }
+
+  /**
+   * Same as {@link #clearOutdatedEntities(String, Timestamp)}, but also clears the entity of type
+   * {@code dependentEntityType} with the same ID as each cleared entity, if any. Dependent
+   * entities are only cleared together with the entity they belong to.
+   */
+  private void clearOutdatedEntities(String entityType, Timestamp expirationTime,
+      String dependentEntityType) {
     Query<Entity> query =
         Query.newEntityQueryBuilder()
           .setKind(entityType)
@@ -534,6 +857,13 @@ public class InfoCompiler {
     while (queryResults.hasNext()) {
       Entity entity = queryResults.next();
       datastore.delete(entity.getKey());
+      isDatasetModified.set(true);
+      if (dependentEntityType != null) {
+        datastore.delete(
+            datastore.newKeyFactory()
+                .setKind(dependentEntityType)
+                .newKey(entity.getKey().getId()));
+      }
     }
   }
 }
@@ -27,8 +27,9 @@ import java.io.IOException;
 public class InfoCompilerFunction implements HttpFunction {
   @Override
   public void service(HttpRequest request, HttpResponse response) throws IOException {
-    InfoCompiler infoCompiler = new InfoCompiler();
-    infoCompiler.compileInfo();
+    try (InfoCompiler infoCompiler = new InfoCompiler()) {
+      infoCompiler.compileInfo();
+    }
     BufferedWriter writer = response.getWriter();
     writer.write("InfoCompiler completed.");
   }
@@ -23,8 +23,16 @@ import java.io.IOException;
 public class InfoCompilerRunner {
 
   public static void main(String[] args) throws IOException {
-    InfoCompiler infoCompiler = new InfoCompiler();
-    infoCompiler.compileInfo();
+    try (InfoCompiler infoCompiler = new InfoCompiler()) {
+      if (Config.CONCURRENT_MODE) {
+        infoCompiler.enableConcurrentMode();
+      }
+      if (Config.SCHEDULED_MODE) {
+        new RefreshScheduler(infoCompiler, infoCompiler.datastore).run();
+      } else {
+        infoCompiler.compileInfo();
+      }
+    }
     System.out.println("InfoCompiler completed.");
   }
 }
@@ -0,0 +1,49 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.infocompiler;
+
+import java.util.Date;
+
+/**
+ * Decides which elections and which candidates' news articles {@code InfoCompiler} refreshes in a
+ * run. Answering true also counts as the start of a refresh, so each election and candidate should
+ * be answered true at most once per run. Methods may be called concurrently.
+ */
+public interface RefreshPolicy {
+  /** Refreshes all elections and news articles, as a full batch run does. */
+  RefreshPolicy REFRESH_ALL = new RefreshPolicy() {
+    @Override
+    public boolean isElectionDue(String electionName, Date electionDate) {
+      return true;
+    }
+
+    @Override
+    public boolean isCandidateNewsDue(String candidateId, String electionName) {
+      return true;
+    }
+  };
+
+  /**
+   * Returns true if the election named {@code electionName}, held on {@code electionDate}, should
+   * have its contests queried again.
+   */
+  boolean isElectionDue(String electionName, Date electionDate);
+
+  /**
+   * Returns true if the news articles of the candidate with {@code candidateId}, running in the
+   * election named {@code electionName}, should be compiled again.
+   */
+  boolean isCandidateNewsDue(String candidateId, String electionName);
+}
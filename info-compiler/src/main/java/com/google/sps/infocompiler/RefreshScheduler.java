@@ -0,0 +1,160 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.infocompiler;
+
+import com.google.cloud.datastore.Datastore;
+import com.google.cloud.datastore.Entity;
+import com.google.cloud.datastore.Query;
+import com.google.cloud.datastore.QueryResults;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drives {@code InfoCompiler} as a continuously running daemon, which runs every {@code
+ * Config.REFRESH_SCHEDULER_TICK_SECONDS} and only refreshes the elections and candidates' news
+ * articles that are due. Elections are refreshed more often the closer they are, and candidates'
+ * news articles more often the more views their candidate page has, as counted in the {@code
+ * CandidateViewCount} entities. Refresh intervals are bounded by {@code
+ * Config.MIN_REFRESH_INTERVAL_SECONDS} and {@code Config.MAX_REFRESH_INTERVAL_SECONDS}, and by
+ * half of {@code Config.DATA_EXPIRATION_SECONDS} so that information isn't cleared as outdated
+ * before it is refreshed. Refresh times are kept in memory, so everything is refreshed on start.
+ */
+public class RefreshScheduler implements RefreshPolicy {
+  private static final long DAY_MILLISECONDS = TimeUnit.DAYS.toMillis(1);
+  // Elections up to this many days away are refreshed at the minimum interval, and the interval
+  // grows by the minimum interval for each additional such period.
+  private static final long PROXIMITY_PERIOD_DAYS = 7;
+  private static final long MIN_REFRESH_INTERVAL_MILLISECONDS =
+      TimeUnit.SECONDS.toMillis(Config.MIN_REFRESH_INTERVAL_SECONDS);
+  private static final long MAX_REFRESH_INTERVAL_MILLISECONDS =
+      TimeUnit.SECONDS.toMillis(
+          Math.min(Config.MAX_REFRESH_INTERVAL_SECONDS, Config.DATA_EXPIRATION_SECONDS / 2));
+  private InfoCompiler infoCompiler;
+  private Datastore datastore;
+  // Mappings of (election name, election date in milliseconds) for the current run.
+  private Map<String, Long> electionDates = new ConcurrentHashMap<>();
+  // Mappings of (election name or candidate ID, the last time it was refreshed, in milliseconds).
+  private Map<String, Long> electionRefreshTimes = new ConcurrentHashMap<>();
+  private Map<String, Long> newsRefreshTimes = new ConcurrentHashMap<>();
+  // Mappings of (candidate ID, number of views of the candidate page), loaded before each run.
+  private Map<String, Long> viewCounts = new HashMap<>();
+
+  public RefreshScheduler(InfoCompiler infoCompiler, Datastore datastore) {
+    this.infoCompiler = infoCompiler;
+    this.datastore = datastore;
+  }
+
+  /**
+   * Runs {@code InfoCompiler} every {@code Config.REFRESH_SCHEDULER_TICK_SECONDS} until
+   * interrupted. A failed run is reported, and retried at the next tick.
+   */
+  public void run() {
+    long tickMilliseconds = TimeUnit.SECONDS.toMillis(Config.REFRESH_SCHEDULER_TICK_SECONDS);
+    while (!Thread.currentThread().isInterrupted()) {
+      long runStartTime = System.currentTimeMillis();
+      try {
+        viewCounts = loadViewCounts();
+        infoCompiler.compileInfo(this);
+      } catch (RuntimeException e) {
+        System.out.println("[ERROR] Scheduled information compilation failed: " + e);
+      }
+      long timeToPause = runStartTime + tickMilliseconds - System.currentTimeMillis();
+      try {
+        if (timeToPause > 0) {
+          TimeUnit.MILLISECONDS.sleep(timeToPause);
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  @Override
+  public boolean isElectionDue(String electionName, Date electionDate) {
+    long now = System.currentTimeMillis();
+    electionDates.put(electionName, electionDate.getTime());
+    return claimIfDue(electionRefreshTimes, electionName,
+                      getElectionRefreshInterval(electionDate.getTime(), now), now);
+  }
+
+  @Override
+  public boolean isCandidateNewsDue(String candidateId, String electionName) {
+    long now = System.currentTimeMillis();
+    Long electionDate = electionDates.get(electionName);
+    long electionRefreshInterval =
+        (electionDate == null)
+            ? MAX_REFRESH_INTERVAL_MILLISECONDS
+            : getElectionRefreshInterval(electionDate, now);
+    long newsRefreshInterval =
+        getNewsRefreshInterval(electionRefreshInterval, viewCounts.getOrDefault(candidateId, 0L));
+    return claimIfDue(newsRefreshTimes, candidateId, newsRefreshInterval, now);
+  }
+
+  /**
+   * Returns the refresh interval, in milliseconds, of an election held at {@code electionTime}
+   * as of {@code now}: the minimum interval for elections within {@code PROXIMITY_PERIOD_DAYS},
+   * growing linearly with the distance to the election. Past elections get the maximum interval.
+   */
+  static long getElectionRefreshInterval(long electionTime, long now) {
+    if (electionTime + DAY_MILLISECONDS < now) {
+      return MAX_REFRESH_INTERVAL_MILLISECONDS;
+    }
+    long daysUntilElection = Math.max(0, (electionTime - now) / DAY_MILLISECONDS);
+    long interval =
+        MIN_REFRESH_INTERVAL_MILLISECONDS * (1 + daysUntilElection / PROXIMITY_PERIOD_DAYS);
+    return Math.min(interval, MAX_REFRESH_INTERVAL_MILLISECONDS);
+  }
+
+  /**
+   * Returns the refresh interval, in milliseconds, of the news articles of a candidate whose
+   * election is refreshed every {@code electionRefreshInterval} milliseconds and whose page has
+   * {@code viewCount} views. Every tenfold increase in views shortens the interval, down to the
+   * minimum interval.
+   */
+  static long getNewsRefreshInterval(long electionRefreshInterval, long viewCount) {
+    double popularity = 1 + Math.log10(1 + Math.max(viewCount, 0));
+    long interval = (long) (electionRefreshInterval / popularity);
+    return Math.max(interval,
+                    Math.min(MIN_REFRESH_INTERVAL_MILLISECONDS, electionRefreshInterval));
+  }
+
+  /**
+   * Returns true and records {@code now} as the refresh time of {@code id} if it hasn't been
+   * refreshed within {@code interval} milliseconds. Only one of concurrent callers succeeds.
+   */
+  private static boolean claimIfDue(Map<String, Long> refreshTimes, String id, long interval,
+      long now) {
+    Long lastRefreshTime = refreshTimes.get(id);
+    if (lastRefreshTime == null) {
+      return refreshTimes.putIfAbsent(id, now) == null;
+    }
+    return now - lastRefreshTime >= interval && refreshTimes.replace(id, lastRefreshTime, now);
+  }
+
+  /** Loads the view counts of all candidate pages from the database. */
+  private Map<String, Long> loadViewCounts() {
+    Map<String, Long> loadedViewCounts = new HashMap<>();
+    Query<Entity> query = Query.newEntityQueryBuilder().setKind("CandidateViewCount").build();
+    QueryResults<Entity> queryResults = datastore.run(query);
+    while (queryResults.hasNext()) {
+      Entity viewCount = queryResults.next();
+      loadedViewCounts.put(Long.toString(viewCount.getKey().getId()), viewCount.getLong("count"));
+    }
+    return loadedViewCounts;
+  }
+}
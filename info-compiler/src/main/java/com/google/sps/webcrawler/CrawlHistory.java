@@ -0,0 +1,93 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.webcrawler;
+
+import com.google.cloud.datastore.Datastore;
+import com.google.cloud.datastore.Entity;
+import com.google.cloud.datastore.Key;
+import com.google.cloud.Timestamp;
+import com.google.sps.infocompiler.Config;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A persisted record of when each candidate's news articles were last searched for, which lets
+ * the web crawler search only for news articles published since then, and fall back to a full
+ * search every {@code Config.FULL_SEARCH_REFRESH_SECONDS}. Each candidate's record is stored in
+ * the database as an entity keyed by the candidate ID, and isn't cleared with outdated
+ * information.
+ */
+public class CrawlHistory {
+  static final String ENTITY_KIND = "CandidateCrawlState";
+  // Extra days searched before the last search, so that news articles whose published date lags
+  // behind their indexing aren't missed.
+  private static final int OVERLAP_DAYS = 1;
+  private Datastore datastore;
+
+  public CrawlHistory(Datastore datastore) {
+    this.datastore = datastore;
+  }
+
+  /**
+   * Returns the number of days, counted back from {@code now} in milliseconds, that an incremental
+   * search for the candidate with {@code candidateId} should cover. Returns 0 if a full search is
+   * due instead: in full search mode, if the candidate has never been searched for, or if the last
+   * full search is older than {@code Config.FULL_SEARCH_REFRESH_SECONDS}.
+   */
+  public int getIncrementalSearchDays(String candidateId, long now) {
+    if (!Config.INCREMENTAL_SEARCH_MODE) {
+      return 0;
+    }
+    Entity crawlState = datastore.get(buildCrawlStateKey(candidateId));
+    if (crawlState == null) {
+      return 0;
+    }
+    long lastFullSearchTime = crawlState.getTimestamp("lastFullSearchTime").toDate().getTime();
+    if (now - lastFullSearchTime >= TimeUnit.SECONDS.toMillis(Config.FULL_SEARCH_REFRESH_SECONDS)) {
+      return 0;
+    }
+    long lastSearchTime = crawlState.getTimestamp("lastSearchTime").toDate().getTime();
+    long elapsedDays = (now - lastSearchTime + TimeUnit.DAYS.toMillis(1) - 1)
+        / TimeUnit.DAYS.toMillis(1);
+    return (int) Math.max(elapsedDays, 1) + OVERLAP_DAYS;
+  }
+
+  /**
+   * Records that the news articles of the candidate with {@code candidateId} were successfully
+   * searched for and compiled, with a search that started at {@code searchTime} in milliseconds.
+   */
+  public void recordSearch(String candidateId, long searchTime, boolean isFullSearch) {
+    Key crawlStateKey = buildCrawlStateKey(candidateId);
+    Timestamp lastFullSearchTime = Timestamp.of(new Date(searchTime));
+    if (!isFullSearch) {
+      Entity crawlState = datastore.get(crawlStateKey);
+      if (crawlState == null) {
+        return;
+      }
+      lastFullSearchTime = crawlState.getTimestamp("lastFullSearchTime");
+    }
+    Entity crawlState =
+        Entity.newBuilder(crawlStateKey)
+            .set("lastSearchTime", Timestamp.of(new Date(searchTime)))
+            .set("lastFullSearchTime", lastFullSearchTime)
+            .set("lastModified", Timestamp.now())
+            .build();
+    datastore.put(crawlState);
+  }
+
+  private Key buildCrawlStateKey(String candidateId) {
+    return datastore.newKeyFactory().setKind(ENTITY_KIND).newKey(Long.parseLong(candidateId));
+  }
+}
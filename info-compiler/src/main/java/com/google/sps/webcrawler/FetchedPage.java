@@ -0,0 +1,96 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.webcrawler;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+
+/**
+ * A webpage fetched by {@code PageFetcher}, including the HTTP status, the (decompressed and
+ * possibly truncated) body, its character encoding, and the headers that the web crawler makes
+ * use of.
+ */
+public class FetchedPage {
+  private int statusCode;
+  private byte[] body;
+  private boolean isTruncated;
+  private String contentType;
+  private Charset charset;
+  private String etag;
+  private String lastModified;
+
+  /** Constructs a {@code FetchedPage} whose character encoding is sniffed from {@code body}. */
+  public FetchedPage(int statusCode, byte[] body, boolean isTruncated, String contentType,
+      String etag, String lastModified) {
+    this(statusCode, body, isTruncated, contentType,
+         HtmlCharsetSniffer.sniff(body == null ? new byte[0] : body,
+                                  body == null ? 0 : body.length, contentType),
+         etag, lastModified);
+  }
+
+  public FetchedPage(int statusCode, byte[] body, boolean isTruncated, String contentType,
+      Charset charset, String etag, String lastModified) {
+    this.statusCode = statusCode;
+    this.body = (body == null) ? new byte[0] : body;
+    this.isTruncated = isTruncated;
+    this.contentType = contentType;
+    this.charset = charset;
+    this.etag = etag;
+    this.lastModified = lastModified;
+  }
+
+  public int getStatusCode() {
+    return this.statusCode;
+  }
+
+  /** Returns true if the server answered a conditional request with 304 (Not Modified). */
+  public boolean isNotModified() {
+    return this.statusCode == 304;
+  }
+
+  public byte[] getBody() {
+    return this.body;
+  }
+
+  public InputStream getBodyStream() {
+    return new ByteArrayInputStream(this.body);
+  }
+
+  /** Returns true if the body was cut off at {@code PageFetcher.MAX_BODY_BYTES}. */
+  public boolean isTruncated() {
+    return this.isTruncated;
+  }
+
+  public String getContentType() {
+    return this.contentType;
+  }
+
+  /**
+   * Returns the character encoding of the body, determined from its byte order mark, the
+   * "Content-Type" header or a meta tag.
+   */
+  public Charset getCharset() {
+    return this.charset;
+  }
+
+  public String getEtag() {
+    return this.etag;
+  }
+
+  public String getLastModified() {
+    return this.lastModified;
+  }
+}
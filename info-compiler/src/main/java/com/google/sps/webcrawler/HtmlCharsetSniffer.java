@@ -0,0 +1,93 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.webcrawler;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A utility class for determining the character encoding of an HTML document from, in order of
+ * precedence: its byte order mark, the charset of its "Content-Type" header, and a charset declared
+ * in a meta tag within its first {@code META_PRESCAN_BYTES} bytes. Falls back to UTF-8.
+ */
+final class HtmlCharsetSniffer {
+  static final int META_PRESCAN_BYTES = 1024;
+  private static final Pattern CONTENT_TYPE_CHARSET_PATTERN =
+      Pattern.compile("charset\\s*=\\s*[\"']?\\s*([-\\w.:]+)", Pattern.CASE_INSENSITIVE);
+  private static final Pattern META_CHARSET_PATTERN =
+      Pattern.compile("<meta[^>]*?charset\\s*=\\s*[\"']?\\s*([-\\w.:]+)",
+                      Pattern.CASE_INSENSITIVE);
+
+  private HtmlCharsetSniffer() {}
+
+  /**
+   * Returns the character encoding of the HTML document in the first {@code length} bytes of
+   * {@code bytes}, served with the "Content-Type" header {@code contentType}, which may be null.
+   */
+  static Charset sniff(byte[] bytes, int length, String contentType) {
+    Charset byteOrderMarkCharset = sniffByteOrderMark(bytes, length);
+    if (byteOrderMarkCharset != null) {
+      return byteOrderMarkCharset;
+    }
+    if (contentType != null) {
+      Charset headerCharset = findCharset(CONTENT_TYPE_CHARSET_PATTERN.matcher(contentType));
+      if (headerCharset != null) {
+        return headerCharset;
+      }
+    }
+    // Markup that declares the charset is ASCII, which ISO-8859-1 decodes byte by byte.
+    String prescan =
+        new String(bytes, 0, Math.min(length, META_PRESCAN_BYTES), StandardCharsets.ISO_8859_1);
+    Charset metaCharset = findCharset(META_CHARSET_PATTERN.matcher(prescan));
+    return metaCharset == null ? StandardCharsets.UTF_8 : metaCharset;
+  }
+
+  /** Returns the length of the byte order mark at the start of {@code bytes}, if any. */
+  static int getByteOrderMarkLength(byte[] bytes, int length) {
+    Charset byteOrderMarkCharset = sniffByteOrderMark(bytes, length);
+    if (byteOrderMarkCharset == null) {
+      return 0;
+    }
+    return byteOrderMarkCharset.equals(StandardCharsets.UTF_8) ? 3 : 2;
+  }
+
+  private static Charset sniffByteOrderMark(byte[] bytes, int length) {
+    if (length >= 3 && (bytes[0] & 0xFF) == 0xEF && (bytes[1] & 0xFF) == 0xBB
+        && (bytes[2] & 0xFF) == 0xBF) {
+      return StandardCharsets.UTF_8;
+    }
+    if (length >= 2 && (bytes[0] & 0xFF) == 0xFE && (bytes[1] & 0xFF) == 0xFF) {
+      return StandardCharsets.UTF_16BE;
+    }
+    if (length >= 2 && (bytes[0] & 0xFF) == 0xFF && (bytes[1] & 0xFF) == 0xFE) {
+      return StandardCharsets.UTF_16LE;
+    }
+    return null;
+  }
+
+  /** Returns the charset named by the first group of {@code matcher}, if found and supported. */
+  private static Charset findCharset(Matcher matcher) {
+    if (!matcher.find()) {
+      return null;
+    }
+    try {
+      return Charset.forName(matcher.group(1));
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+  }
+}
@@ -0,0 +1,433 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.webcrawler;
+
+import com.google.sps.data.NewsArticle;
+import de.l3s.boilerpipe.BoilerpipeProcessingException;
+import de.l3s.boilerpipe.document.TextDocument;
+import de.l3s.boilerpipe.extractors.ArticleExtractor;
+import de.l3s.boilerpipe.sax.BoilerpipeHTMLContentHandler;
+import java.io.InputStream;
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+
+/**
+ * A lighter alternative to {@code TikaNewsContentExtractor}, which skips Tika's parsing pipeline:
+ * Reads at most {@code MAX_STREAMED_BYTES} of the webpage, decodes it once with its sniffed
+ * character encoding, and tokenizes the HTML in a single pass, feeding SAX events directly to
+ * Boilerpipe's {@code BoilerpipeHTMLContentHandler} for {@code ArticleExtractor}. The tokenizer
+ * tolerates malformed HTML by ignoring unmatched end tags and closing elements that were left
+ * open.
+ */
+public class LightweightNewsContentExtractor implements NewsContentExtractor {
+  // Elements that never have content or end tags.
+  private static final Set<String> VOID_ELEMENTS =
+      new HashSet<>(Arrays.asList("area", "base", "br", "col", "embed", "hr", "img", "input",
+                                  "link", "meta", "param", "source", "track", "wbr"));
+  // Elements whose content is raw text rather than markup.
+  private static final Set<String> RAW_TEXT_ELEMENTS =
+      new HashSet<>(Arrays.asList("script", "style", "title", "textarea", "noscript"));
+  // Raw text elements whose content isn't passed on.
+  private static final Set<String> SKIPPED_RAW_TEXT_ELEMENTS =
+      new HashSet<>(Arrays.asList("script", "style", "noscript"));
+  // Elements that may precede the body. Any other element implicitly opens the body.
+  private static final Set<String> HEAD_ELEMENTS =
+      new HashSet<>(Arrays.asList("html", "head", "title", "meta", "link", "base", "script",
+                                  "style", "noscript"));
+  // Elements whose end tags may be omitted, implied by the start of a sibling of the same kind.
+  private static final Set<String> SELF_TERMINATING_ELEMENTS =
+      new HashSet<>(Arrays.asList("p", "li", "dt", "dd", "option", "tr", "td", "th"));
+  private static final Map<String, String> NAMED_ENTITIES = new HashMap<>();
+  static {
+    NAMED_ENTITIES.put("amp", "&");
+    NAMED_ENTITIES.put("lt", "<");
+    NAMED_ENTITIES.put("gt", ">");
+    NAMED_ENTITIES.put("quot", "\"");
+    NAMED_ENTITIES.put("apos", "'");
+    NAMED_ENTITIES.put("nbsp", " ");
+    NAMED_ENTITIES.put("ndash", "–");
+    NAMED_ENTITIES.put("mdash", "—");
+    NAMED_ENTITIES.put("lsquo", "‘");
+    NAMED_ENTITIES.put("rsquo", "’");
+    NAMED_ENTITIES.put("ldquo", "“");
+    NAMED_ENTITIES.put("rdquo", "”");
+    NAMED_ENTITIES.put("hellip", "…");
+    NAMED_ENTITIES.put("copy", "©");
+  }
+  private static final int MAX_ENTITY_LENGTH = 10;
+  private static final int MAX_POOLED_DECODERS = 16;
+  // Idle decoders that are reused instead of allocating new decoders and buffers for every webpage.
+  private BlockingQueue<PageDecoder> idleDecoders = new ArrayBlockingQueue<>(MAX_POOLED_DECODERS);
+
+  /**
+   * Extracts textual content from HTML. Packages data into {@code NewsArticle}. Sets "content" to
+   * empty in the event of an exception, which may be caused by errors such as failure in reading
+   * in the HTML source code from {@code htmlFileStream}.
+   */
+  @Override
+  public void extractContentFromHtml(InputStream htmlFileStream, NewsArticle newsArticle) {
+    if (htmlFileStream == null) {
+      newsArticle.setTitle("");
+      newsArticle.setContent("");
+      return;
+    }
+    // The webpage is read into the pooled decoder's own buffer, which is reused across webpages.
+    PageDecoder pageDecoder = borrowDecoder();
+    try {
+      int length = pageDecoder.read(htmlFileStream, MAX_STREAMED_BYTES);
+      byte[] bytes = pageDecoder.getReadBytes();
+      extractContentFromBytes(pageDecoder, bytes, length,
+                              HtmlCharsetSniffer.sniff(bytes, length, null), newsArticle);
+    } catch (IOException e) {
+      newsArticle.setTitle("");
+      newsArticle.setContent("");
+    } finally {
+      idleDecoders.offer(pageDecoder);
+    }
+  }
+
+  /**
+   * Extracts textual content from the body of {@code webpage}, which is decoded with the
+   * character encoding that {@code PageFetcher} already detected, directly from the fetched bytes.
+   */
+  @Override
+  public void extractContentFromPage(FetchedPage webpage, NewsArticle newsArticle) {
+    byte[] bytes = webpage.getBody();
+    PageDecoder pageDecoder = borrowDecoder();
+    try {
+      extractContentFromBytes(pageDecoder, bytes, Math.min(bytes.length, MAX_STREAMED_BYTES),
+                              webpage.getCharset(), newsArticle);
+    } finally {
+      idleDecoders.offer(pageDecoder);
+    }
+  }
+
+  /** Takes an idle decoder from the pool, or creates one if there is none. */
+  private PageDecoder borrowDecoder() {
+    PageDecoder pageDecoder = idleDecoders.poll();
+    return (pageDecoder == null) ? new PageDecoder() : pageDecoder;
+  }
+
+  /**
+   * Decodes the first {@code length} bytes of {@code bytes} with {@code charset} using {@code
+   * pageDecoder}, extracts textual content from the decoded HTML and packages data into {@code
+   * NewsArticle}. Sets "content" to empty in the event of an exception.
+   */
+  private void extractContentFromBytes(PageDecoder pageDecoder, byte[] bytes, int length,
+      Charset charset, NewsArticle newsArticle) {
+    try {
+      CharBuffer html = pageDecoder.decode(bytes, length, charset);
+      BoilerpipeHTMLContentHandler boilerpipeHandler = new BoilerpipeHTMLContentHandler();
+      tokenize(html.array(), html.limit(), boilerpipeHandler);
+      TextDocument textDocument = boilerpipeHandler.toTextDocument();
+      ArticleExtractor.INSTANCE.process(textDocument);
+      newsArticle.setTitle(textDocument.getTitle() == null ? "" : textDocument.getTitle());
+      newsArticle.setContent(textDocument.getContent());
+    } catch (SAXException | BoilerpipeProcessingException e) {
+      newsArticle.setTitle("");
+      newsArticle.setContent("");
+    }
+  }
+
+  /**
+   * Tokenizes the first {@code length} characters of {@code html} in a single pass and reports
+   * their elements and text to {@code handler}. This method is made default for testing purposes.
+   */
+  static void tokenize(char[] html, int length, ContentHandler handler) throws SAXException {
+    Deque<String> openElements = new ArrayDeque<>();
+    boolean[] isInBody = {false};
+    handler.startDocument();
+    int textStart = 0;
+    int index = 0;
+    while (index < length) {
+      if (html[index] != '<' || index + 1 >= length) {
+        index++;
+        continue;
+      }
+      char next = html[index + 1];
+      if (next == '!' || next == '?') {
+        // A comment, doctype or processing instruction.
+        emitText(html, textStart, index, handler, openElements, isInBody);
+        int end =
+            startsWith(html, length, index, "<!--")
+                ? indexOf(html, length, "-->", index + 4) + 3
+                : indexOf(html, length, ">", index + 2) + 1;
+        index = textStart = (end <= 0) ? length : end;
+        continue;
+      }
+      boolean isEndTag = next == '/';
+      int nameStart = isEndTag ? index + 2 : index + 1;
+      if (nameStart >= length || !Character.isLetter(html[nameStart])) {
+        // A stray '<' is text.
+        index++;
+        continue;
+      }
+      emitText(html, textStart, index, handler, openElements, isInBody);
+      int nameEnd = nameStart;
+      while (nameEnd < length && !isTagNameEnd(html[nameEnd])) {
+        nameEnd++;
+      }
+      String name = new String(html, nameStart, nameEnd - nameStart).toLowerCase(Locale.ENGLISH);
+      AttributesImpl attributes = new AttributesImpl();
+      int tagEnd = parseAttributes(html, length, nameEnd, attributes);
+      boolean isSelfClosing = tagEnd >= 2 && html[tagEnd - 2] == '/';
+      index = textStart = tagEnd;
+      if (isEndTag) {
+        closeElement(name, handler, openElements);
+        continue;
+      }
+      openElement(name, attributes, handler, openElements, isInBody);
+      if (VOID_ELEMENTS.contains(name) || isSelfClosing) {
+        closeElement(name, handler, openElements);
+      } else if (RAW_TEXT_ELEMENTS.contains(name)) {
+        int rawTextEnd = indexOfIgnoreCase(html, length, "</" + name, index);
+        if (rawTextEnd < 0) {
+          rawTextEnd = length;
+        }
+        if (!SKIPPED_RAW_TEXT_ELEMENTS.contains(name)) {
+          emitText(html, index, rawTextEnd, handler, openElements, isInBody);
+        }
+        closeElement(name, handler, openElements);
+        int closingTagEnd = indexOf(html, length, ">", rawTextEnd);
+        index = textStart = (closingTagEnd < 0) ? length : closingTagEnd + 1;
+      }
+    }
+    emitText(html, textStart, length, handler, openElements, isInBody);
+    while (!openElements.isEmpty()) {
+      String name = openElements.pop();
+      handler.endElement("", name, name);
+    }
+    handler.endDocument();
+  }
+
+  /**
+   * Parses the attributes of a tag, starting at {@code index} right after the tag name, into
+   * {@code attributes}. Returns the index right after the end of the tag.
+   */
+  private static int parseAttributes(char[] html, int length, int index,
+      AttributesImpl attributes) {
+    while (index < length && html[index] != '>') {
+      if (Character.isWhitespace(html[index]) || html[index] == '/') {
+        index++;
+        continue;
+      }
+      int nameStart = index;
+      while (index < length && html[index] != '=' && html[index] != '>'
+          && !Character.isWhitespace(html[index]) && html[index] != '/') {
+        index++;
+      }
+      String name = new String(html, nameStart, index - nameStart).toLowerCase(Locale.ENGLISH);
+      while (index < length && Character.isWhitespace(html[index])) {
+        index++;
+      }
+      String value = "";
+      if (index < length && html[index] == '=') {
+        index++;
+        while (index < length && Character.isWhitespace(html[index])) {
+          index++;
+        }
+        if (index < length && (html[index] == '"' || html[index] == '\'')) {
+          char quote = html[index];
+          int valueEnd = indexOf(html, length, String.valueOf(quote), index + 1);
+          if (valueEnd < 0) {
+            valueEnd = length;
+          }
+          value = decodeEntities(html, index + 1, valueEnd);
+          index = Math.min(length, valueEnd + 1);
+        } else {
+          int valueStart = index;
+          while (index < length && html[index] != '>'
+              && !Character.isWhitespace(html[index])) {
+            index++;
+          }
+          value = decodeEntities(html, valueStart, index);
+        }
+      }
+      if (!name.isEmpty()) {
+        attributes.addAttribute("", name, name, "CDATA", value);
+      }
+    }
+    return Math.min(length, index + 1);
+  }
+
+  /**
+   * Reports the start of element {@code name}, opening the body first if {@code name} can't be
+   * part of the head. Closes an open anchor before opening another, since anchors can't nest, and
+   * an open sibling of the same kind whose end tag was omitted.
+   */
+  private static void openElement(String name, AttributesImpl attributes, ContentHandler handler,
+      Deque<String> openElements, boolean[] isInBody) throws SAXException {
+    if (name.equals("body") || !HEAD_ELEMENTS.contains(name)) {
+      openBody(handler, openElements, isInBody);
+      if (name.equals("body")) {
+        return;
+      }
+    }
+    if (name.equals("a") && openElements.contains("a")) {
+      closeElement("a", handler, openElements);
+    } else if (SELF_TERMINATING_ELEMENTS.contains(name) && name.equals(openElements.peek())) {
+      closeElement(name, handler, openElements);
+    }
+    handler.startElement("", name, name, attributes);
+    openElements.push(name);
+  }
+
+  private static void openBody(ContentHandler handler, Deque<String> openElements,
+      boolean[] isInBody) throws SAXException {
+    if (isInBody[0]) {
+      return;
+    }
+    // Elements of the head are all closed by now.
+    while (!openElements.isEmpty() && !openElements.peek().equals("html")) {
+      String name = openElements.pop();
+      handler.endElement("", name, name);
+    }
+    handler.startElement("", "body", "body", new AttributesImpl());
+    openElements.push("body");
+    isInBody[0] = true;
+  }
+
+  /**
+   * Reports the end of element {@code name} and of all elements opened after it. Ignores the end
+   * tag if {@code name} isn't open. The body is only closed at the end of the document.
+   */
+  private static void closeElement(String name, ContentHandler handler,
+      Deque<String> openElements) throws SAXException {
+    if (name.equals("body") || name.equals("html") || !openElements.contains(name)) {
+      return;
+    }
+    String openName;
+    do {
+      openName = openElements.pop();
+      handler.endElement("", openName, openName);
+    } while (!openName.equals(name));
+  }
+
+  /**
+   * Reports the text in {@code html} from {@code start} (inclusive) to {@code end} (exclusive),
+   * with entities decoded. Text outside of the head opens the body.
+   */
+  private static void emitText(char[] html, int start, int end, ContentHandler handler,
+      Deque<String> openElements, boolean[] isInBody) throws SAXException {
+    if (start >= end) {
+      return;
+    }
+    String text = decodeEntities(html, start, end);
+    if (!isInBody[0] && !openElements.contains("title") && !text.trim().isEmpty()) {
+      openBody(handler, openElements, isInBody);
+    }
+    handler.characters(text.toCharArray(), 0, text.length());
+  }
+
+  /** Decodes character references in {@code html} from {@code start} to {@code end}. */
+  private static String decodeEntities(char[] html, int start, int end) {
+    StringBuilder text = new StringBuilder(end - start);
+    int index = start;
+    while (index < end) {
+      char character = html[index];
+      if (character == '&') {
+        int semicolon = -1;
+        for (int i = index + 1; i < Math.min(end, index + MAX_ENTITY_LENGTH + 2); i++) {
+          if (html[i] == ';') {
+            semicolon = i;
+            break;
+          }
+        }
+        if (semicolon > index + 1) {
+          String decoded = decodeEntity(new String(html, index + 1, semicolon - index - 1));
+          if (decoded != null) {
+            text.append(decoded);
+            index = semicolon + 1;
+            continue;
+          }
+        }
+      }
+      text.append(character);
+      index++;
+    }
+    return text.toString();
+  }
+
+  /** Decodes the character reference {@code entity}, or returns null if it is unknown. */
+  private static String decodeEntity(String entity) {
+    if (entity.charAt(0) != '#') {
+      return NAMED_ENTITIES.get(entity);
+    }
+    try {
+      int codePoint =
+          (entity.length() > 1 && (entity.charAt(1) == 'x' || entity.charAt(1) == 'X'))
+              ? Integer.parseInt(entity.substring(2), 16)
+              : Integer.parseInt(entity.substring(1));
+      return new String(Character.toChars(codePoint));
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+  }
+
+  private static boolean isTagNameEnd(char character) {
+    return Character.isWhitespace(character) || character == '>' || character == '/';
+  }
+
+  private static boolean startsWith(char[] html, int length, int index, String prefix) {
+    if (index + prefix.length() > length) {
+      return false;
+    }
+    for (int i = 0; i < prefix.length(); i++) {
+      if (html[index + i] != prefix.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static int indexOf(char[] html, int length, String target, int fromIndex) {
+    for (int i = Math.max(0, fromIndex); i + target.length() <= length; i++) {
+      if (startsWith(html, length, i, target)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private static int indexOfIgnoreCase(char[] html, int length, String target, int fromIndex) {
+    for (int i = Math.max(0, fromIndex); i + target.length() <= length; i++) {
+      boolean isMatch = true;
+      for (int j = 0; j < target.length(); j++) {
+        if (Character.toLowerCase(html[i + j]) != target.charAt(j)) {
+          isMatch = false;
+          break;
+        }
+      }
+      if (isMatch) {
+        return i;
+      }
+    }
+    return -1;
+  }
+}
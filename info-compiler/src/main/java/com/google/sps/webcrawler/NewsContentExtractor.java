@@ -15,35 +15,27 @@
 package com.google.sps.webcrawler;
 
 import com.google.sps.data.NewsArticle;
-import de.l3s.boilerpipe.document.TextBlock;
-import de.l3s.boilerpipe.document.TextDocument;
-import de.l3s.boilerpipe.extractors.ArticleExtractor;
+import com.google.sps.infocompiler.Config;
 import java.io.InputStream;
-import java.io.IOException;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.Optional;
-import org.apache.tika.exception.TikaException;
-import org.apache.tika.metadata.Metadata;
-import org.apache.tika.parser.html.BoilerpipeContentHandler;
-import org.apache.tika.parser.html.HtmlParser;
-import org.apache.tika.sax.BodyContentHandler;
-import org.xml.sax.SAXException;
 
-/** A utility class for extracting textual content from HTML pages. */
-public class NewsContentExtractor {
-  private HtmlParser parser;
+/**
+ * Extracts the title and textual content of news articles from HTML pages. Methods may be called
+ * concurrently.
+ */
+public interface NewsContentExtractor {
+  // At most this many bytes of a webpage are parsed, in streaming mode or by the lightweight
+  // extractor.
+  int MAX_STREAMED_BYTES = 512 * 1024;
 
   /**
-   * Constructs a {@code NewsContentExtractor} instance to use Boilerpipe extraction.
+   * Creates the extractor selected in {@code Config}: a {@code LightweightNewsContentExtractor} if
+   * {@code Config.LIGHTWEIGHT_EXTRACTION_MODE} is set, or a {@code TikaNewsContentExtractor}
+   * otherwise.
    */
-  public NewsContentExtractor() {
-    this(new HtmlParser());
-  }
-
-  /** For testing purposes. */
-  NewsContentExtractor(HtmlParser parser) {
-    this.parser = parser;
+  static NewsContentExtractor create() {
+    return Config.LIGHTWEIGHT_EXTRACTION_MODE
+        ? new LightweightNewsContentExtractor()
+        : new TikaNewsContentExtractor();
   }
 
   /**
@@ -51,33 +43,12 @@ public class NewsContentExtractor {
    * empty in the event of an exception, which may be caused by errors such as failure in reading
    * in the HTML source code from {@code htmlFileStream}.
    */
-  public void extractContentFromHtml(InputStream htmlFileStream, NewsArticle newsArticle) {
-    if (htmlFileStream == null) {
-      newsArticle.setTitle("");
-      newsArticle.setContent("");
-      return;
-    }
-    BoilerpipeContentHandler boilerpipeHandler =
-        new BoilerpipeContentHandler(new BodyContentHandler(), new ArticleExtractor());
-    Metadata metadata = new Metadata();
-    try {
-      extractContentFromHtml(boilerpipeHandler, metadata, htmlFileStream, newsArticle);
-    } catch (IOException | SAXException | TikaException e) {
-      newsArticle.setTitle("");
-      newsArticle.setContent("");
-    }
-  }
+  void extractContentFromHtml(InputStream htmlFileStream, NewsArticle newsArticle);
 
   /**
-   * Extracts textual content from HTML with {@code boilerpipeHandler} and packages data into
-   * {@code NewsArticle}. This method is made default for testing purposes.
+   * Extracts textual content from the body of {@code webpage}, decoding it with the character
+   * encoding that {@code PageFetcher} already detected. Packages data into {@code NewsArticle},
+   * and sets "content" to empty in the event of an exception.
    */
-  void extractContentFromHtml(BoilerpipeContentHandler boilerpipeHandler,
-      Metadata metadata, InputStream htmlFileStream, NewsArticle newsArticle)
-      throws IOException, SAXException, TikaException {
-    parser.parse(htmlFileStream, boilerpipeHandler, metadata);
-    TextDocument textDocument = boilerpipeHandler.getTextDocument();
-    newsArticle.setTitle(textDocument.getTitle() == null ? "" : textDocument.getTitle());
-    newsArticle.setContent(textDocument.getContent());
-  }
+  void extractContentFromPage(FetchedPage webpage, NewsArticle newsArticle);
 }
@@ -25,29 +25,21 @@ import java.io.InputStream;
 import java.io.IOException;
 import java.nio.channels.Channels;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
-import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
-import opennlp.tools.sentdetect.SentenceDetectorME;
 import opennlp.tools.sentdetect.SentenceModel;
-import opennlp.tools.tokenize.TokenizerME;
 import opennlp.tools.tokenize.TokenizerModel;
-import org.apache.commons.math3.linear.ArrayRealVector;
-import org.apache.commons.math3.linear.RealVector;
 import org.apache.flink.api.java.ExecutionEnvironment;
 import org.apache.flink.graph.Edge;
 import org.apache.flink.graph.Graph;
 import org.apache.flink.graph.Vertex;
 import org.apache.flink.graph.library.linkanalysis.PageRank;
 import org.apache.flink.types.DoubleValue;
-import org.apache.flink.types.IntValue;
-import org.apache.flink.types.StringValue;
+import org.apache.flink.types.LongValue;
+import org.apache.flink.types.NullValue;
 
 /** Static utilities for processing textual content, such as abbreviations. */
 public class NewsContentProcessor {
@@ -60,6 +52,9 @@ public class NewsContentProcessor {
   private static final boolean PAGERANK_INCLUDE_ZERO_DEGREES_VERTICES = true;
   private static final Storage storage =
       StorageOptions.newBuilder().setProjectId(Config.PROJECT_ID).build().getService();
+  // OpenNLP models, loaded on first use.
+  private static SentenceModel sentenceModel;
+  private static TokenizerModel tokenizerModel;
 
   private static final Comparator<PageRank.Result> PAGERANK_SCORE_DESCENDING =
       new Comparator<PageRank.Result>() {
@@ -69,8 +64,8 @@ public class NewsContentProcessor {
       // early) comes first.
       if (a.getPageRankScore().getValue() < b.getPageRankScore().getValue() ||
           (a.getPageRankScore().getValue() == b.getPageRankScore().getValue() && 
-              ((IntValue) a.getVertexId0()).getValue()
-                  > ((IntValue) b.getVertexId0()).getValue())) {
+              ((LongValue) a.getVertexId0()).getValue()
+                  > ((LongValue) b.getVertexId0()).getValue())) {
         return 1;
       } else {
         return -1;
@@ -83,7 +78,8 @@ public class NewsContentProcessor {
     @Override
     public int compare(PageRank.Result a, PageRank.Result b) {
       // Smaller index (sentences that appear early) comes first.
-      if (((IntValue) a.getVertexId0()).getValue() > ((IntValue) b.getVertexId0()).getValue()) {
+      if (((LongValue) a.getVertexId0()).getValue()
+          > ((LongValue) b.getVertexId0()).getValue()) {
         return 1;
       } else {
         return -1;
@@ -93,12 +89,7 @@ public class NewsContentProcessor {
 
   /** Extracts the first {@code MAX_WORD_COUNT} words from the news article content. */
   public static void abbreviate(NewsArticle newsArticle) {
-    String[] splitContent = newsArticle.getContent().split(" ");
-    int wordCount = splitContent.length;
-    int allowedLength = Math.min(wordCount, MAX_WORD_COUNT);
-    String abbreviatedContent =
-        String.join(" ", Arrays.asList(splitContent).subList(0, allowedLength));
-    newsArticle.setAbbreviatedContent(abbreviatedContent);
+    abbreviate(newsArticle, new TextAnalysis(newsArticle.getContent()));
   }
 
   /**
@@ -113,104 +104,190 @@ public class NewsContentProcessor {
    *     own-summarizer-in-python-b26a9f09fc70></a>
    */
   public static void summarize(NewsArticle newsArticle) {
-    String rawContent = newsArticle.getContent();
-    String[] sentences;
-    List<PageRank.Result<IntValue>> ranking;
+    summarize(newsArticle, new TextAnalysis(newsArticle.getContent()));
+  }
+
+  /**
+   * Abbreviates and summarizes the news article content, as in {@link #abbreviate(NewsArticle)}
+   * and {@link #summarize(NewsArticle)}, sharing a single pass of text analysis.
+   */
+  public static void abbreviateAndSummarize(NewsArticle newsArticle) {
+    TextAnalysis textAnalysis = new TextAnalysis(newsArticle.getContent());
+    abbreviate(newsArticle, textAnalysis);
+    summarize(newsArticle, textAnalysis);
+  }
+
+  private static void abbreviate(NewsArticle newsArticle, TextAnalysis textAnalysis) {
+    newsArticle.setAbbreviatedContent(
+        textAnalysis.getContent().substring(0, textAnalysis.getEndOfWords(MAX_WORD_COUNT)));
+  }
+
+  /** Summarizes the news article content with the results of {@code textAnalysis}. */
+  private static void summarize(NewsArticle newsArticle, TextAnalysis textAnalysis) {
+    summarize(Collections.singletonList(newsArticle), Collections.singletonList(textAnalysis),
+              ExecutionEnvironment.createLocalEnvironment());
+  }
+
+  /**
+   * Summarizes the contents of all {@code newsArticles} as {@link #summarize(NewsArticle)} does,
+   * but with a single PageRank job over the disjoint union of their similarity graphs, run with
+   * {@code parallelism} on local cores. This avoids starting a Flink job for every news article.
+   */
+  public static void summarizeAll(List<NewsArticle> newsArticles, int parallelism) {
+    List<TextAnalysis> textAnalyses = new ArrayList<>(newsArticles.size());
+    for (NewsArticle newsArticle : newsArticles) {
+      textAnalyses.add(new TextAnalysis(newsArticle.getContent()));
+    }
+    summarize(newsArticles, textAnalyses, ExecutionEnvironment.createLocalEnvironment(parallelism));
+  }
+
+  /**
+   * Summarizes the contents of {@code newsArticles}, analyzed in the respective {@code
+   * textAnalyses}, by running PageRank on {@code environment} once over the disjoint union of
+   * their similarity graphs. The sentences of different news articles aren't connected, so the
+   * scores of one news article's sentences keep the same order as if PageRank were run on that
+   * news article alone. News articles with few enough sentences are summarized as themselves.
+   */
+  private static void summarize(List<NewsArticle> newsArticles, List<TextAnalysis> textAnalyses,
+      ExecutionEnvironment environment) {
+    List<Vertex<LongValue, NullValue>> vertices = new ArrayList<>();
+    List<Edge<LongValue, DoubleValue>> edges = new ArrayList<>();
+    List<Integer> rankedArticleIndices = new ArrayList<>();
     try {
-      sentences = breakIntoSentences(rawContent);
-      if (sentences.length <= SUMMARIZATION_MAX_SENTENCE_NUMBER) {
-        newsArticle.setSummarizedContent(rawContent);
-        return;
+      SentenceModel sentenceModel = getSentenceModel();
+      TokenizerModel tokenizerModel = getTokenizerModel();
+      for (int i = 0; i < newsArticles.size(); i++) {
+        TextAnalysis textAnalysis = textAnalyses.get(i);
+        textAnalysis.analyzeSentences(sentenceModel, tokenizerModel);
+        if (textAnalysis.getSentenceCount() <= SUMMARIZATION_MAX_SENTENCE_NUMBER) {
+          newsArticles.get(i).setSummarizedContent(textAnalysis.getContent());
+          continue;
+        }
+        addSimilarityGraph(i, textAnalysis, vertices, edges);
+        rankedArticleIndices.add(i);
       }
-      Graph<IntValue, StringValue, DoubleValue> similarityGraph = buildSimilarityGraph(sentences);
-      ranking = getRanking(similarityGraph);
     } catch (Exception e) {
-      newsArticle.setSummarizedContent("");
+      for (NewsArticle newsArticle : newsArticles) {
+        newsArticle.setSummarizedContent("");
+      }
+      return;
+    }
+    if (rankedArticleIndices.isEmpty()) {
+      return;
+    }
+    Map<Integer, List<PageRank.Result<LongValue>>> rankings;
+    try {
+      rankings = getRankings(Graph.fromCollection(vertices, edges, environment));
+    } catch (Exception e) {
+      for (int articleIndex : rankedArticleIndices) {
+        newsArticles.get(articleIndex).setSummarizedContent("");
+      }
       return;
     }
-    String summarizedContent = extractSentencesBasedOnRanking(ranking, sentences);
-    newsArticle.setSummarizedContent(summarizedContent);
+    for (int articleIndex : rankedArticleIndices) {
+      newsArticles.get(articleIndex).setSummarizedContent(
+          extractSentencesBasedOnRanking(rankings.get(articleIndex),
+                                         textAnalyses.get(articleIndex)));
+    }
   }
 
-  /** Breaks down {@code rawContent} into sentences. */
-  private static String[] breakIntoSentences(String rawContent) throws IOException {
-    InputStream modelFile = buildModelFileStream(Config.OPEN_NLP_SENTENCE_DETECTOR_FILE);
-    SentenceModel model = new SentenceModel(modelFile);
-    SentenceDetectorME sentenceDetector = new SentenceDetectorME(model);
-    return sentenceDetector.sentDetect(rawContent);
+  /**
+   * Returns the sentence detection model, which is loaded from Cloud Storage once and then shared,
+   * since models are immutable.
+   */
+  private static synchronized SentenceModel getSentenceModel() throws IOException {
+    if (sentenceModel == null) {
+      try (InputStream modelFile = buildModelFileStream(Config.OPEN_NLP_SENTENCE_DETECTOR_FILE)) {
+        sentenceModel = new SentenceModel(modelFile);
+      }
+    }
+    return sentenceModel;
   }
 
   /**
-   * Builds the similarity graph among all sentences. The vertex (k, vv) represents the k-th
-   * sentence. The edge (k1, k2, ev) represents a similarity of ev between the k1-th and k2-th
-   * sentences. An edge exists only when the two sentences are similar "enough", as determined
-   * by {@code SIMILARITY_THRESHOLD}.
+   * Returns the tokenization model, which is loaded from Cloud Storage once and then shared,
+   * since models are immutable.
    */
-  private static Graph<IntValue, StringValue, DoubleValue> buildSimilarityGraph(String[] sentences)
-      throws IOException {
-    List<Vertex<IntValue, StringValue>> vertices =
-        new ArrayList<Vertex<IntValue, StringValue>>(sentences.length);
-    List<Edge<IntValue, DoubleValue>> edges =
-        new ArrayList<Edge<IntValue, DoubleValue>>((int) Math.pow(sentences.length, 2));
-    for (int i = 0; i < sentences.length; i++) {
-      vertices.add(new Vertex(new IntValue(i), new StringValue(sentences[i])));
-      for (int j = i + 1; j < sentences.length; j++) {
-        String[] sentenceA = tokenizeSentence(sentences[i]);
-        String[] sentenceB = tokenizeSentence(sentences[j]);
-        double similarity = computeInterSentenceSimilarity(sentenceA, sentenceB);
+  private static synchronized TokenizerModel getTokenizerModel() throws IOException {
+    if (tokenizerModel == null) {
+      try (InputStream modelFile = buildModelFileStream(Config.OPEN_NLP_TOKENIZER_FILE)) {
+        tokenizerModel = new TokenizerModel(modelFile);
+      }
+    }
+    return tokenizerModel;
+  }
+
+  /**
+   * Adds the similarity graph among all sentences of the {@code articleIndex}-th news article to
+   * {@code vertices} and {@code edges}. The vertex (a, k) represents the k-th sentence of the a-th
+   * news article, and its ID packs a into the high and k into the low 32 bits. The edge ((a, k1),
+   * (a, k2), ev) represents a similarity of ev between the k1-th and k2-th sentences. An edge
+   * exists only when the two sentences are similar "enough", as determined by {@code
+   * SIMILARITY_THRESHOLD}.
+   */
+  private static void addSimilarityGraph(int articleIndex, TextAnalysis textAnalysis,
+      List<Vertex<LongValue, NullValue>> vertices, List<Edge<LongValue, DoubleValue>> edges) {
+    long idBase = ((long) articleIndex) << 32;
+    int sentenceCount = textAnalysis.getSentenceCount();
+    for (int i = 0; i < sentenceCount; i++) {
+      vertices.add(new Vertex<>(new LongValue(idBase + i), NullValue.getInstance()));
+      for (int j = i + 1; j < sentenceCount; j++) {
+        double similarity = textAnalysis.computeSimilarity(i, j);
         if (similarity >= SIMILARITY_THRESHOLD) {
-          edges.add(new Edge(new IntValue(i), new IntValue(j), new DoubleValue(similarity)));
-          edges.add(new Edge(new IntValue(j), new IntValue(i), new DoubleValue(similarity)));
+          edges.add(new Edge<>(new LongValue(idBase + i), new LongValue(idBase + j),
+                               new DoubleValue(similarity)));
+          edges.add(new Edge<>(new LongValue(idBase + j), new LongValue(idBase + i),
+                               new DoubleValue(similarity)));
         }
       }
     }
-    return Graph.fromCollection(vertices, edges, ExecutionEnvironment.createLocalEnvironment());
   }
 
   /**
-   * Finds sentence ranking by applying the PageRank algorithm to {@code similarityGraph} and
-   * sorting all sentences based on descending PageRank scores (high-scored sentence comes first).
-   * If two sentences have the same PageRank score, the sentence that comes early in the original
-   * content comes first.
+   * Finds the sentence ranking of each news article by applying the PageRank algorithm to {@code
+   * similarityGraph} and sorting all sentences based on descending PageRank scores (high-scored
+   * sentence comes first). If two sentences have the same PageRank score, the sentence that comes
+   * early in the original content comes first. Rankings are keyed by news article index.
    */
-  private static List<PageRank.Result<IntValue>> getRanking(
-      Graph<IntValue, StringValue, DoubleValue> similarityGraph) throws Exception {
-    PageRank pageRank =
-        new PageRank(PAGERANK_DAMPEN_FACTOR, PAGERANK_MAX_ITER, PAGERANK_CONVERGENCE_THRESHOLD);
-    List<PageRank.Result<IntValue>> pageRankResults =
+  private static Map<Integer, List<PageRank.Result<LongValue>>> getRankings(
+      Graph<LongValue, NullValue, DoubleValue> similarityGraph) throws Exception {
+    PageRank<LongValue, NullValue, DoubleValue> pageRank =
+        new PageRank<>(PAGERANK_DAMPEN_FACTOR, PAGERANK_MAX_ITER, PAGERANK_CONVERGENCE_THRESHOLD);
+    List<PageRank.Result<LongValue>> pageRankResults =
         pageRank.setIncludeZeroDegreeVertices(PAGERANK_INCLUDE_ZERO_DEGREES_VERTICES)
             .run(similarityGraph).collect();
     Collections.sort(pageRankResults, PAGERANK_SCORE_DESCENDING);
-    return pageRankResults;
+    Map<Integer, List<PageRank.Result<LongValue>>> rankings = new HashMap<>();
+    for (PageRank.Result<LongValue> pageRankResult : pageRankResults) {
+      int articleIndex = (int) (pageRankResult.getVertexId0().getValue() >>> 32);
+      rankings.computeIfAbsent(articleIndex, index -> new ArrayList<>()).add(pageRankResult);
+    }
+    return rankings;
   }
 
   /**
    * Extracts the most important {@code SUMMARIZATION_MAX_SENTENCE_NUMBER} sentences for expressing
-   * the overall meaning of {@code sentences}, based on {@code ranking}, and re-arranges the
+   * the overall meaning of the analyzed content, based on {@code ranking}, and re-arranges the
    * sentences based on their original order.
    */
-  private static String extractSentencesBasedOnRanking(List<PageRank.Result<IntValue>> ranking,
-      String[] sentences) {
-    int sentenceNumber = Math.min(SUMMARIZATION_MAX_SENTENCE_NUMBER, sentences.length);
-    List<PageRank.Result<IntValue>> subRanking = ranking.subList(0, sentenceNumber);
+  private static String extractSentencesBasedOnRanking(List<PageRank.Result<LongValue>> ranking,
+      TextAnalysis textAnalysis) {
+    int sentenceNumber =
+        Math.min(SUMMARIZATION_MAX_SENTENCE_NUMBER, textAnalysis.getSentenceCount());
+    List<PageRank.Result<LongValue>> subRanking = ranking.subList(0, sentenceNumber);
     Collections.sort(subRanking, SENTENCES_ORIGINAL_ORDER);
-    String summarizedContent = "";
+    StringBuilder summarizedContent = new StringBuilder();
     for (int i = 0; i < sentenceNumber; i++) {
-      int sentenceIndex = subRanking.get(i).getVertexId0().getValue();
-      summarizedContent += sentences[sentenceIndex];
+      // The sentence index is in the low 32 bits of the vertex ID.
+      int sentenceIndex = (int) subRanking.get(i).getVertexId0().getValue();
+      summarizedContent.append(textAnalysis.getContent(),
+                               textAnalysis.getSentenceStart(sentenceIndex),
+                               textAnalysis.getSentenceEnd(sentenceIndex));
       if (i != sentenceNumber - 1) {
-        summarizedContent += " ";
+        summarizedContent.append(' ');
       }
     }
-    return summarizedContent;
-  }
-
-  /** Tokenizes {@code sentence} into individual words; */
-  private static String[] tokenizeSentence(String sentence) throws IOException {
-    InputStream modelFile = buildModelFileStream(Config.OPEN_NLP_TOKENIZER_FILE);
-    TokenizerModel model = new TokenizerModel(modelFile);
-    TokenizerME tokenizer = new TokenizerME(model);
-    return tokenizer.tokenize(sentence.toLowerCase());
+    return summarizedContent.toString();
   }
 
   /** Fetches a model file from Cloud Storage and builds a stream for the file. */
@@ -220,45 +297,4 @@ public class NewsContentProcessor {
     ReadChannel modelFileReader = modelFileBlob.reader();
     return Channels.newInputStream(modelFileReader);
   }
-
-  /** Computes the cosine similarity between {@code sentenceA} and {@code sentenceB}. */
-  private static double computeInterSentenceSimilarity(String[] sentenceA, String[] sentenceB) {
-    Map<String, Integer> vocab = buildVocabFromSentences(sentenceA, sentenceB);
-    RealVector representationA = buildVectorRepresentation(vocab, sentenceA);
-    RealVector representationB = buildVectorRepresentation(vocab, sentenceB);
-    return computeCosineSimilarity(representationA, representationB);
-  }
-
-  /** Builds the vocabulary of {@code sentenceA} and {@code sentenceB}. */
-  private static Map<String, Integer> buildVocabFromSentences(String[] sentenceA,
-      String[] sentenceB) {
-    Set<String> vocabSet = new HashSet<>(Arrays.asList(sentenceA));
-    vocabSet.addAll(Arrays.asList(sentenceB));
-    Map<String, Integer> vocab = new HashMap<>(vocabSet.size());
-    int index = 0;
-    for (String word : vocabSet) {
-      vocab.put(word, index);
-      index++;
-    }
-    return vocab;
-  }
-
-  /**
-   * Construct vector representations of {@code sentenceA} and {@code sentenceB} with respect to
-   * {@code vocab}.
-   */
-  private static RealVector buildVectorRepresentation(Map<String, Integer> vocab,
-      String[] sentence) {
-    RealVector representation = new ArrayRealVector(vocab.size()); // Zero vector.
-    for (String word : sentence) {
-      int index = vocab.get(word);
-      representation.setEntry(index, representation.getEntry(index) + 1);
-    }
-    return representation;
-  }
-
-  /** Computes the cosine similarity between {@code vectorA} and {@code vectorB}. */
-  private static double computeCosineSimilarity(RealVector vectorA, RealVector vectorB) {
-    return vectorA.dotProduct(vectorB) / (vectorA.getNorm() * vectorB.getNorm());
-  }
 }
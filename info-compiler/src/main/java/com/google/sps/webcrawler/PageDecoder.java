@@ -0,0 +1,97 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.webcrawler;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.Arrays;
+
+/**
+ * Reads and decodes webpage bytes into characters, reusing its {@code CharsetDecoder}, input
+ * buffer and output buffer across webpages so that reading and decoding a webpage allocates
+ * nothing once the buffers have grown large enough. Not thread-safe: each thread should use its
+ * own instance, e.g. one borrowed from a pool.
+ */
+final class PageDecoder {
+  // The initial size of the input buffer, which doubles whenever it is full.
+  private static final int INITIAL_READ_BUFFER_BYTES = 8192;
+  private CharsetDecoder decoder;
+  private byte[] readBuffer = new byte[0];
+  private CharBuffer buffer = CharBuffer.allocate(0);
+
+  /**
+   * Reads from {@code input} until it ends or {@code maxLength} bytes have been read, into an input
+   * buffer that grows with the webpage rather than being sized for the largest webpage, and returns
+   * the number of bytes read. The bytes are available from {@link #getReadBytes()} until the next
+   * call.
+   */
+  int read(InputStream input, int maxLength) throws IOException {
+    if (readBuffer.length == 0) {
+      readBuffer = new byte[Math.min(INITIAL_READ_BUFFER_BYTES, maxLength)];
+    }
+    int length = 0;
+    int bytesRead = 0;
+    while (length < maxLength && bytesRead != -1) {
+      if (length == readBuffer.length) {
+        readBuffer = Arrays.copyOf(readBuffer, (int) Math.min(2L * readBuffer.length, maxLength));
+      }
+      bytesRead =
+          input.read(readBuffer, length, Math.min(readBuffer.length, maxLength) - length);
+      if (bytesRead > 0) {
+        length += bytesRead;
+      }
+    }
+    return length;
+  }
+
+  /** Returns the input buffer that {@link #read} read the webpage into. */
+  byte[] getReadBytes() {
+    return readBuffer;
+  }
+
+  /**
+   * Decodes the first {@code length} bytes of {@code bytes} with {@code charset}, skipping any
+   * byte order mark and replacing malformed input. The returned buffer is array-backed, starts at
+   * index 0 of its array, and is only valid until the next call.
+   */
+  CharBuffer decode(byte[] bytes, int length, Charset charset) {
+    if (decoder == null || !decoder.charset().equals(charset)) {
+      decoder =
+          charset.newDecoder()
+              .onMalformedInput(CodingErrorAction.REPLACE)
+              .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+    int byteOrderMarkLength = HtmlCharsetSniffer.getByteOrderMarkLength(bytes, length);
+    ByteBuffer input = ByteBuffer.wrap(bytes, byteOrderMarkLength, length - byteOrderMarkLength);
+    int capacity = (int) Math.ceil(input.remaining() * (double) decoder.maxCharsPerByte()) + 1;
+    if (buffer.capacity() < capacity) {
+      buffer = CharBuffer.allocate(capacity);
+    }
+    // Called through {@code Buffer}, so that builds on newer JDKs don't bind to the covariant
+    // overrides of {@code CharBuffer}, which Java 8 lacks.
+    ((Buffer) buffer).clear();
+    decoder.reset();
+    decoder.decode(input, buffer, true);
+    decoder.flush(buffer);
+    ((Buffer) buffer).flip();
+    return buffer;
+  }
+}
@@ -0,0 +1,504 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.webcrawler;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.InputStream;
+import java.io.IOException;
+import java.io.SequenceInputStream;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.zip.GZIPInputStream;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpException;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.ClientProtocolException;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.entity.DeflateInputStream;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.conn.ConnectTimeoutException;
+import org.apache.http.entity.ContentType;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.nio.ContentDecoder;
+import org.apache.http.nio.ContentEncoder;
+import org.apache.http.nio.IOControl;
+import org.apache.http.nio.client.methods.HttpAsyncMethods;
+import org.apache.http.nio.protocol.AbstractAsyncResponseConsumer;
+import org.apache.http.nio.protocol.HttpAsyncRequestProducer;
+import org.apache.http.nio.reactor.IOReactorException;
+import org.apache.http.protocol.HttpContext;
+
+/**
+ * A pooled, keep-alive and non-blocking HTTP client for fetching webpages and robots.txt files,
+ * so that robots.txt and the news article on the same host share connections, and so that
+ * hundreds of fetches can be in flight on {@code IO_THREAD_COUNT} threads. Limits the number of
+ * connections per host and the number of redirects, decodes gzip/deflate-compressed responses,
+ * stops reading bodies beyond {@code MAX_BODY_BYTES}, and adapts timeouts to how fast each host
+ * has responded.
+ */
+public class PageFetcher implements Closeable {
+  static final int IO_THREAD_COUNT = 2;
+  static final int MAX_CONNECTIONS_TOTAL = 256;
+  static final int MAX_CONNECTIONS_PER_HOST = 2;
+  static final int MAX_REDIRECTS = 5;
+  static final int MAX_BODY_BYTES = 2 * 1024 * 1024;
+  static final int MIN_TIMEOUT_MILLISECONDS = 1000;
+  static final int MAX_TIMEOUT_MILLISECONDS = 8 * 1000;
+  // Fetches beyond the connection limits wait for a pooled connection for at most this long.
+  static final int CONNECTION_REQUEST_TIMEOUT_MILLISECONDS = 60 * 1000;
+  // Timeouts are set to this multiple of the host's smoothed response latency.
+  private static final int TIMEOUT_TO_LATENCY_RATIO = 4;
+  // Weight of the latest response latency in the smoothed response latency.
+  private static final double LATENCY_SMOOTHING_FACTOR = 0.3;
+  // Response bodies are read into pooled chunks of this size, of which at most
+  // {@code MAX_POOLED_CHUNKS} are kept for reuse.
+  static final int CHUNK_BYTES = 32 * 1024;
+  private static final int MAX_POOLED_CHUNKS = 128;
+  private CloseableHttpAsyncClient httpClient;
+  private int maxBodyBytes;
+  private BlockingQueue<ByteBuffer> idleChunks = new ArrayBlockingQueue<>(MAX_POOLED_CHUNKS);
+  // Mappings of (host, smoothed response latency in milliseconds) for adapting timeouts.
+  private Map<String, Double> hostLatencies = new ConcurrentHashMap<>();
+
+  public PageFetcher() {
+    this(MAX_BODY_BYTES);
+  }
+
+  /** For testing purposes. */
+  PageFetcher(int maxBodyBytes) {
+    PoolingNHttpClientConnectionManager connectionManager;
+    try {
+      connectionManager =
+          new PoolingNHttpClientConnectionManager(
+              new DefaultConnectingIOReactor(
+                  IOReactorConfig.custom().setIoThreadCount(IO_THREAD_COUNT).build()));
+    } catch (IOReactorException e) {
+      throw new IllegalStateException("Failed to start the I/O reactor: " + e);
+    }
+    connectionManager.setMaxTotal(MAX_CONNECTIONS_TOTAL);
+    connectionManager.setDefaultMaxPerRoute(MAX_CONNECTIONS_PER_HOST);
+    this.httpClient =
+        HttpAsyncClients.custom()
+            .setConnectionManager(connectionManager)
+            .setThreadFactory(runnable -> {
+              Thread thread = new Thread(runnable, "page-fetcher");
+              thread.setDaemon(true);
+              return thread;
+            })
+            .build();
+    this.httpClient.start();
+    this.maxBodyBytes = maxBodyBytes;
+  }
+
+  /**
+   * Fetches {@code url} unconditionally, blocking until the response has been read.
+   *
+   * @throws ClientProtocolException if the response status is neither 2xx nor 304.
+   * @throws IOException if the connection fails or times out.
+   */
+  public FetchedPage fetch(URL url) throws IOException {
+    return fetch(url, null, null);
+  }
+
+  /**
+   * Blocking version of {@link #fetchAsync(URL, String, String)}.
+   *
+   * @throws ClientProtocolException if the response status is neither 2xx nor 304.
+   * @throws IOException if the connection fails or times out.
+   */
+  public FetchedPage fetch(URL url, String etag, String lastModified) throws IOException {
+    try {
+      return fetchAsync(url, etag, lastModified).get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while fetching " + url, e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      throw new ClientProtocolException(e.getCause());
+    }
+  }
+
+  /** Fetches {@code url} unconditionally without blocking. */
+  public CompletableFuture<FetchedPage> fetchAsync(URL url) {
+    return fetchAsync(url, null, null);
+  }
+
+  /**
+   * Fetches {@code url} without blocking, sending "If-None-Match" with {@code etag} and
+   * "If-Modified-Since" with {@code lastModified} if they are non-empty, so that an unmodified
+   * webpage is answered with 304 and no body. Reads at most {@code maxBodyBytes} of the body and
+   * then closes the connection. The returned future completes on an I/O thread, and fails with
+   * {@code ClientProtocolException} if the response status is neither 2xx nor 304, or with
+   * {@code IOException} if the connection fails or times out.
+   */
+  public CompletableFuture<FetchedPage> fetchAsync(URL url, String etag, String lastModified) {
+    String host = url.getHost();
+    int timeout = getTimeout(host);
+    HttpGet httpGet = new HttpGet(url.toString());
+    httpGet.setConfig(
+        RequestConfig.custom()
+            .setConnectTimeout(timeout)
+            .setConnectionRequestTimeout(CONNECTION_REQUEST_TIMEOUT_MILLISECONDS)
+            .setSocketTimeout(timeout)
+            .setMaxRedirects(MAX_REDIRECTS)
+            .build());
+    httpGet.setHeader("Accept-Encoding", "gzip, deflate");
+    if (etag != null && !etag.isEmpty()) {
+      httpGet.setHeader("If-None-Match", etag);
+    }
+    if (lastModified != null && !lastModified.isEmpty()) {
+      httpGet.setHeader("If-Modified-Since", lastModified);
+    }
+    CompletableFuture<FetchedPage> fetchedPage = new CompletableFuture<>();
+    TimedRequestProducer requestProducer =
+        new TimedRequestProducer(HttpAsyncMethods.create(httpGet));
+    httpClient.execute(
+        requestProducer,
+        new BoundedResponseConsumer(fetchedPage, maxBodyBytes, idleChunks),
+        new FutureCallback<FetchedPage>() {
+          @Override
+          public void completed(FetchedPage page) {
+            recordLatency(host, System.currentTimeMillis() - requestProducer.getSentTime());
+            fetchedPage.complete(page);
+          }
+
+          @Override
+          public void failed(Exception e) {
+            if (e instanceof SocketTimeoutException || e instanceof ConnectTimeoutException) {
+              recordTimeout(host, timeout);
+            }
+            fetchedPage.completeExceptionally(
+                e instanceof HttpException ? new ClientProtocolException(e) : e);
+          }
+
+          @Override
+          public void cancelled() {
+            fetchedPage.cancel(false);
+          }
+        });
+    return fetchedPage;
+  }
+
+  /** Closes all pooled connections and stops the I/O threads. */
+  @Override
+  public void close() throws IOException {
+    httpClient.close();
+  }
+
+  /**
+   * Produces the request of {@code delegate} and records when it has been sent, so that the
+   * response latency of a host doesn't include the time spent waiting for a pooled connection to
+   * it. The client generates the request before leasing a connection for it, so the time is taken
+   * once the request has been sent instead.
+   */
+  private static class TimedRequestProducer implements HttpAsyncRequestProducer {
+    private HttpAsyncRequestProducer delegate;
+    // Until the request has been sent, the time that the fetch was issued.
+    private volatile long sentTime = System.currentTimeMillis();
+
+    TimedRequestProducer(HttpAsyncRequestProducer delegate) {
+      this.delegate = delegate;
+    }
+
+    long getSentTime() {
+      return sentTime;
+    }
+
+    @Override
+    public HttpHost getTarget() {
+      return delegate.getTarget();
+    }
+
+    @Override
+    public HttpRequest generateRequest() throws IOException, HttpException {
+      return delegate.generateRequest();
+    }
+
+    @Override
+    public void produceContent(ContentEncoder encoder, IOControl ioControl) throws IOException {
+      delegate.produceContent(encoder, ioControl);
+    }
+
+    @Override
+    public void requestCompleted(HttpContext context) {
+      sentTime = System.currentTimeMillis();
+      delegate.requestCompleted(context);
+    }
+
+    @Override
+    public void failed(Exception e) {
+      delegate.failed(e);
+    }
+
+    @Override
+    public boolean isRepeatable() {
+      return delegate.isRepeatable();
+    }
+
+    @Override
+    public void resetRequest() throws IOException {
+      delegate.resetRequest();
+    }
+
+    @Override
+    public void close() throws IOException {
+      delegate.close();
+    }
+  }
+
+  /**
+   * Collects the response body as it arrives, up to {@code maxBodyBytes}, into chunks borrowed
+   * from {@code idleChunks}. A compressed body is decompressed straight from those chunks into
+   * more borrowed chunks. Either way, the body is copied out of the chunks into the body of {@code
+   * FetchedPage} once, and the chunks are then returned to the pool. Once the limit is reached,
+   * or once the response status turns out to be unexpected, completes {@code fetchedPage} right
+   * away and drops the connection instead of draining the rest of the body.
+   */
+  private static class BoundedResponseConsumer
+      extends AbstractAsyncResponseConsumer<FetchedPage> {
+    private CompletableFuture<FetchedPage> fetchedPage;
+    private int maxBodyBytes;
+    private BlockingQueue<ByteBuffer> idleChunks;
+    private HttpResponse response;
+    private List<ByteBuffer> chunks = new ArrayList<>();
+    private int bodyLength = 0;
+    private List<ByteBuffer> decodedChunks = new ArrayList<>();
+    private int decodedLength = 0;
+
+    BoundedResponseConsumer(CompletableFuture<FetchedPage> fetchedPage, int maxBodyBytes,
+        BlockingQueue<ByteBuffer> idleChunks) {
+      this.fetchedPage = fetchedPage;
+      this.maxBodyBytes = maxBodyBytes;
+      this.idleChunks = idleChunks;
+    }
+
+    @Override
+    protected void onResponseReceived(HttpResponse response) {
+      this.response = response;
+    }
+
+    @Override
+    protected void onEntityEnclosed(HttpEntity entity, ContentType contentType) {}
+
+    @Override
+    protected void onContentReceived(ContentDecoder decoder, IOControl ioControl)
+        throws IOException {
+      if (!isExpectedStatus(getStatus())) {
+        fetchedPage.completeExceptionally(unexpectedStatus(getStatus()));
+        ioControl.shutdown();
+        return;
+      }
+      int bytesRead;
+      do {
+        ByteBuffer chunk = chunks.isEmpty() ? null : chunks.get(chunks.size() - 1);
+        if (chunk == null || !chunk.hasRemaining()) {
+          chunk = borrowChunk();
+          chunks.add(chunk);
+        }
+        // Reading one byte past the limit tells whether the body is longer than the limit.
+        // Buffer's methods are called through {@code Buffer}, so that builds on newer JDKs don't
+        // bind to the covariant overrides of {@code ByteBuffer}, which Java 8 lacks.
+        ((Buffer) chunk)
+            .limit(Math.min(chunk.capacity(), chunk.position() + maxBodyBytes + 1 - bodyLength));
+        bytesRead = decoder.read(chunk);
+        if (bytesRead > 0) {
+          bodyLength += bytesRead;
+        }
+        if (bodyLength > maxBodyBytes) {
+          fetchedPage.complete(buildPage(true));
+          ioControl.shutdown();
+          return;
+        }
+      } while (bytesRead > 0);
+    }
+
+    @Override
+    protected FetchedPage buildResult(HttpContext context) throws IOException {
+      if (!isExpectedStatus(getStatus())) {
+        throw unexpectedStatus(getStatus());
+      }
+      return buildPage(false);
+    }
+
+    @Override
+    protected void releaseResources() {
+      releaseChunks(chunks);
+      releaseChunks(decodedChunks);
+    }
+
+    private void releaseChunks(List<ByteBuffer> chunks) {
+      for (ByteBuffer chunk : chunks) {
+        ((Buffer) chunk).clear();
+        idleChunks.offer(chunk);
+      }
+      chunks.clear();
+    }
+
+    private ByteBuffer borrowChunk() {
+      ByteBuffer chunk = idleChunks.poll();
+      return (chunk == null) ? ByteBuffer.allocate(CHUNK_BYTES) : chunk;
+    }
+
+    /** Copies the first {@code length} bytes of {@code chunks} into one array. */
+    private static byte[] copyChunks(List<ByteBuffer> chunks, int length) {
+      byte[] body = new byte[length];
+      int offset = 0;
+      for (ByteBuffer chunk : chunks) {
+        int chunkLength = Math.min(chunk.position(), length - offset);
+        System.arraycopy(chunk.array(), 0, body, offset, chunkLength);
+        offset += chunkLength;
+      }
+      return body;
+    }
+
+    /** Returns a stream over the first {@code length} bytes of {@code chunks}, without copying. */
+    private static InputStream streamChunks(List<ByteBuffer> chunks, int length) {
+      List<InputStream> chunkStreams = new ArrayList<>(chunks.size());
+      int offset = 0;
+      for (ByteBuffer chunk : chunks) {
+        int chunkLength = Math.min(chunk.position(), length - offset);
+        chunkStreams.add(new ByteArrayInputStream(chunk.array(), 0, chunkLength));
+        offset += chunkLength;
+      }
+      return new SequenceInputStream(Collections.enumeration(chunkStreams));
+    }
+
+    /**
+     * Reads at most {@code maxBodyBytes} of the decompressed body from {@code input} into chunks
+     * borrowed from {@code idleChunks}. Returns true if {@code input} had more bytes than that. A
+     * compressed body that was itself cut off ends at the last byte that could be decoded.
+     */
+    private boolean decodeIntoChunks(InputStream input) throws IOException {
+      int bytesRead;
+      try {
+        do {
+          ByteBuffer chunk =
+              decodedChunks.isEmpty() ? null : decodedChunks.get(decodedChunks.size() - 1);
+          if (chunk == null || !chunk.hasRemaining()) {
+            chunk = borrowChunk();
+            decodedChunks.add(chunk);
+          }
+          // Reading one byte past the limit tells whether the body is longer than the limit.
+          bytesRead =
+              input.read(chunk.array(), chunk.position(),
+                         Math.min(chunk.remaining(), maxBodyBytes + 1 - decodedLength));
+          if (bytesRead > 0) {
+            ((Buffer) chunk).position(chunk.position() + bytesRead);
+            decodedLength += bytesRead;
+          }
+        } while (bytesRead != -1 && decodedLength <= maxBodyBytes);
+      } catch (EOFException e) {
+        return true;
+      }
+      return decodedLength > maxBodyBytes;
+    }
+
+    private int getStatus() {
+      return response.getStatusLine().getStatusCode();
+    }
+
+    /**
+     * Packages the response into {@code FetchedPage}, decompressing the body if necessary. The
+     * decompressed body is also limited to {@code maxBodyBytes}. The character encoding is
+     * detected here, once, so that extraction needn't sniff it again.
+     */
+    private FetchedPage buildPage(boolean isTruncated) throws IOException {
+      List<ByteBuffer> bodyChunks = chunks;
+      int length = Math.min(bodyLength, maxBodyBytes);
+      String contentEncoding = getHeader(response, "Content-Encoding");
+      if (length > 0 && contentEncoding != null) {
+        InputStream decodedStream = null;
+        if (contentEncoding.equalsIgnoreCase("gzip")
+            || contentEncoding.equalsIgnoreCase("x-gzip")) {
+          decodedStream = new GZIPInputStream(streamChunks(chunks, length));
+        } else if (contentEncoding.equalsIgnoreCase("deflate")) {
+          decodedStream = new DeflateInputStream(streamChunks(chunks, length));
+        }
+        if (decodedStream != null) {
+          isTruncated = decodeIntoChunks(decodedStream) || isTruncated;
+          bodyChunks = decodedChunks;
+          length = Math.min(decodedLength, maxBodyBytes);
+        }
+      }
+      byte[] content = copyChunks(bodyChunks, length);
+      String contentType = getHeader(response, "Content-Type");
+      return new FetchedPage(getStatus(), content, isTruncated, contentType,
+                             HtmlCharsetSniffer.sniff(content, content.length, contentType),
+                             getHeader(response, "ETag"), getHeader(response, "Last-Modified"));
+    }
+  }
+
+  private static boolean isExpectedStatus(int status) {
+    return status == 304 || (status >= 200 && status < 300);
+  }
+
+  private static ClientProtocolException unexpectedStatus(int status) {
+    return new ClientProtocolException("Unexpected response status: " + status);
+  }
+
+  private static String getHeader(HttpResponse response, String name) {
+    Header header = response.getFirstHeader(name);
+    return header == null ? null : header.getValue();
+  }
+
+  /**
+   * Returns the connect/read timeout for {@code host}, which is {@code TIMEOUT_TO_LATENCY_RATIO}
+   * times its smoothed response latency, bounded by {@code MIN_TIMEOUT_MILLISECONDS} and {@code
+   * MAX_TIMEOUT_MILLISECONDS}. This method is made default for testing purposes.
+   */
+  int getTimeout(String host) {
+    Double latency = hostLatencies.get(host);
+    if (latency == null) {
+      return MIN_TIMEOUT_MILLISECONDS;
+    }
+    long timeout = Math.round(latency * TIMEOUT_TO_LATENCY_RATIO);
+    return (int) Math.max(MIN_TIMEOUT_MILLISECONDS, Math.min(MAX_TIMEOUT_MILLISECONDS, timeout));
+  }
+
+  /** Folds {@code latency} into the smoothed response latency of {@code host}. */
+  private void recordLatency(String host, long latency) {
+    hostLatencies.merge(host, (double) latency,
+        (previous, latest) ->
+            previous * (1 - LATENCY_SMOOTHING_FACTOR) + latest * LATENCY_SMOOTHING_FACTOR);
+  }
+
+  /** Doubles the timeout of {@code host} after a request to it timed out with {@code timeout}. */
+  private void recordTimeout(String host, int timeout) {
+    hostLatencies.put(host, 2.0 * timeout / TIMEOUT_TO_LATENCY_RATIO);
+  }
+}
@@ -0,0 +1,186 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.webcrawler;
+
+import com.google.cloud.datastore.Blob;
+import com.google.cloud.datastore.BlobValue;
+import com.google.cloud.datastore.Datastore;
+import com.google.cloud.datastore.Entity;
+import com.google.cloud.datastore.Key;
+import com.google.cloud.datastore.LongValue;
+import com.google.cloud.datastore.Query;
+import com.google.cloud.datastore.QueryResults;
+import com.google.cloud.Timestamp;
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import com.google.sps.data.NewsArticle;
+import com.google.sps.infocompiler.Config;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A compact, persisted record of news articles that have already been crawled, implemented as a
+ * Bloom filter of (candidate ID, URL, published date) tuples. The published date is taken from
+ * the Custom Search metatags, which include modification times, and serves as the content
+ * fingerprint that is available before fetching. A positive answer may be a false positive, at
+ * a rate of {@code Config.SEEN_ARTICLE_FILTER_FALSE_POSITIVE_RATE}, so callers should confirm it
+ * against the database. The filter is stored in the database as a single entity, and is rebuilt
+ * from stored {@code NewsArticle} entities if that entity is missing. Since a Bloom filter can't
+ * forget news articles, even once they are cleared from the database, and its false positive rate
+ * climbs once it holds more than it was sized for, the filter is also rebuilt when it is loaded
+ * or persisted with more elements than its expected insertions.
+ */
+public class SeenArticleFilter {
+  static final String ENTITY_KIND = "CrawlerState";
+  static final String ENTITY_NAME = "seenArticleFilter";
+  private Datastore datastore;
+  private BloomFilter<CharSequence> bloomFilter;
+  // The number of insertions that {@code bloomFilter} was sized for.
+  private long expectedInsertions;
+
+  public SeenArticleFilter(Datastore datastore) {
+    this.datastore = datastore;
+  }
+
+  /**
+   * Returns true if the news article might have been compiled for the candidate with {@code
+   * candidateId} before, and false if it definitely hasn't.
+   */
+  public boolean mightContain(String candidateId, NewsArticle newsArticle) {
+    return getBloomFilter().mightContain(buildFingerprint(candidateId, newsArticle));
+  }
+
+  /**
+   * Records that {@code newsArticle} has been compiled for the candidate with {@code candidateId}.
+   */
+  public void put(String candidateId, NewsArticle newsArticle) {
+    getBloomFilter().put(buildFingerprint(candidateId, newsArticle));
+  }
+
+  /**
+   * Stores the filter in the database, excluded from indexes, after rebuilding it if it has
+   * outgrown its expected insertions. Does nothing if the filter has never been loaded.
+   */
+  public synchronized void persist() {
+    if (bloomFilter == null) {
+      return;
+    }
+    if (isOverfull()) {
+      rebuildFromDatabase();
+    }
+    ByteArrayOutputStream serializedFilter = new ByteArrayOutputStream();
+    try {
+      bloomFilter.writeTo(serializedFilter);
+    } catch (IOException e) {
+      System.out.println("[ERROR] Failed to serialize the seen article filter: " + e);
+      return;
+    }
+    Entity filterEntity =
+        Entity.newBuilder(buildFilterKey())
+            .set("filter", BlobValue.newBuilder(Blob.copyFrom(serializedFilter.toByteArray()))
+                               .setExcludeFromIndexes(true)
+                               .build())
+            .set("expectedInsertions",
+                 LongValue.newBuilder(expectedInsertions).setExcludeFromIndexes(true).build())
+            .set("lastModified", Timestamp.now())
+            .build();
+    datastore.put(filterEntity);
+  }
+
+  /**
+   * Loads the filter from the database upon first use, or rebuilds it if it is missing or has
+   * outgrown its expected insertions.
+   */
+  private synchronized BloomFilter<CharSequence> getBloomFilter() {
+    if (bloomFilter == null) {
+      loadFromDatabase();
+      if (bloomFilter == null || isOverfull()) {
+        rebuildFromDatabase();
+      }
+    }
+    return bloomFilter;
+  }
+
+  private boolean isOverfull() {
+    return bloomFilter.approximateElementCount() > expectedInsertions;
+  }
+
+  /**
+   * Reads the stored filter, along with the number of insertions it was sized for. Leaves the
+   * filter null if it doesn't exist or can't be deserialized.
+   */
+  private void loadFromDatabase() {
+    Entity filterEntity = datastore.get(buildFilterKey());
+    if (filterEntity == null) {
+      return;
+    }
+    try (InputStream serializedFilter = filterEntity.getBlob("filter").asInputStream()) {
+      bloomFilter =
+          BloomFilter.readFrom(serializedFilter, Funnels.stringFunnel(StandardCharsets.UTF_8));
+    } catch (IOException e) {
+      System.out.println("[ERROR] Failed to deserialize the seen article filter: " + e);
+      return;
+    }
+    // Filters stored before their expected insertions were recorded are sized by {@code Config}.
+    expectedInsertions =
+        filterEntity.contains("expectedInsertions")
+            ? filterEntity.getLong("expectedInsertions")
+            : Config.SEEN_ARTICLE_FILTER_EXPECTED_INSERTIONS;
+  }
+
+  /**
+   * Replaces the filter with a new one built out of all {@code NewsArticle} entities in the
+   * database. The new filter is sized by {@code Config.SEEN_ARTICLE_FILTER_EXPECTED_INSERTIONS},
+   * or for twice the stored news articles if there are more, so that it isn't rebuilt again right
+   * away. This method is made default for testing purposes.
+   */
+  void rebuildFromDatabase() {
+    List<String> fingerprints = new ArrayList<>();
+    Query<Entity> query = Query.newEntityQueryBuilder().setKind("NewsArticle").build();
+    QueryResults<Entity> queryResults = datastore.run(query);
+    while (queryResults.hasNext()) {
+      Entity newsArticle = queryResults.next();
+      fingerprints.add(
+          buildFingerprint(Long.toString(newsArticle.getKey("candidateId").getId()),
+                           newsArticle.getString("url"),
+                           newsArticle.getTimestamp("publishedDate").toDate().getTime()));
+    }
+    expectedInsertions =
+        Math.max(Config.SEEN_ARTICLE_FILTER_EXPECTED_INSERTIONS, 2L * fingerprints.size());
+    bloomFilter =
+        BloomFilter.create(Funnels.stringFunnel(StandardCharsets.UTF_8), expectedInsertions,
+                           Config.SEEN_ARTICLE_FILTER_FALSE_POSITIVE_RATE);
+    for (String fingerprint : fingerprints) {
+      bloomFilter.put(fingerprint);
+    }
+  }
+
+  private Key buildFilterKey() {
+    return datastore.newKeyFactory().setKind(ENTITY_KIND).newKey(ENTITY_NAME);
+  }
+
+  private static String buildFingerprint(String candidateId, NewsArticle newsArticle) {
+    return buildFingerprint(candidateId, newsArticle.getUrl(),
+                            newsArticle.getPublishedDate().getTime());
+  }
+
+  private static String buildFingerprint(String candidateId, String url, long publishedTime) {
+    return candidateId + "|" + url + "|" + publishedTime;
+  }
+}
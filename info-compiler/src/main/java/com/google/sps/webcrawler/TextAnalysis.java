@@ -0,0 +1,211 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.webcrawler;
+
+import java.nio.CharBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import opennlp.tools.sentdetect.SentenceDetectorME;
+import opennlp.tools.sentdetect.SentenceModel;
+import opennlp.tools.tokenize.TokenizerME;
+import opennlp.tools.tokenize.TokenizerModel;
+import opennlp.tools.util.Span;
+
+/**
+ * A single pass of text analysis over the content of a news article, shared by abbreviation and
+ * summarization. Results are kept as offsets into the original content rather than as copied
+ * substrings: the ends of space-separated words, the spans of sentences, and for each sentence,
+ * the counts of its lowercased tokens keyed by ids into a vocabulary shared by all sentences.
+ * Words are analyzed on construction. Sentences and tokens need OpenNLP models and are analyzed
+ * on demand, since abbreviation doesn't use them.
+ */
+final class TextAnalysis {
+  private final String content;
+  // End offsets of the space-separated words of {@code content}, in the same sense as {@code
+  // content.split(" ")}: trailing spaces don't delimit words.
+  private final int[] wordEnds;
+  private Span[] sentenceSpans;
+  // Sorted ids of the distinct tokens of each sentence, their counts and the Euclidean norm of
+  // the counts.
+  private int[][] sentenceTokenIds;
+  private int[][] sentenceTokenCounts;
+  private double[] sentenceNorms;
+
+  TextAnalysis(String content) {
+    this.content = content;
+    this.wordEnds = findWordEnds(content);
+  }
+
+  String getContent() {
+    return this.content;
+  }
+
+  /**
+   * Returns the end offset of the first {@code wordCount} words, so that the prefix of the
+   * content up to it equals the first {@code wordCount} elements of {@code content.split(" ")}
+   * joined with spaces.
+   */
+  int getEndOfWords(int wordCount) {
+    if (wordCount <= 0 || wordEnds.length == 0) {
+      return 0;
+    }
+    return wordEnds[Math.min(wordCount, wordEnds.length) - 1];
+  }
+
+  private static int[] findWordEnds(String content) {
+    int end = content.length();
+    while (end > 0 && content.charAt(end - 1) == ' ') {
+      end--;
+    }
+    if (end == 0) {
+      return new int[0];
+    }
+    int wordCount = 1;
+    for (int i = 0; i < end; i++) {
+      if (content.charAt(i) == ' ') {
+        wordCount++;
+      }
+    }
+    int[] wordEnds = new int[wordCount];
+    int wordIndex = 0;
+    for (int i = 0; i < end; i++) {
+      if (content.charAt(i) == ' ') {
+        wordEnds[wordIndex++] = i;
+      }
+    }
+    wordEnds[wordIndex] = end;
+    return wordEnds;
+  }
+
+  /**
+   * Detects sentences with {@code sentenceModel}, and tokenizes the lowercased content once with
+   * {@code tokenizerModel}, assigning each token to the sentence it starts in. Does nothing if
+   * sentences have already been analyzed.
+   */
+  void analyzeSentences(SentenceModel sentenceModel, TokenizerModel tokenizerModel) {
+    if (sentenceSpans != null) {
+      return;
+    }
+    Span[] spans = new SentenceDetectorME(sentenceModel).sentPosDetect(content);
+    // Lowercasing character by character keeps offsets aligned with the original content.
+    char[] lowerCaseCharacters = new char[content.length()];
+    for (int i = 0; i < lowerCaseCharacters.length; i++) {
+      lowerCaseCharacters[i] = Character.toLowerCase(content.charAt(i));
+    }
+    String lowerCaseContent = new String(lowerCaseCharacters);
+    Span[] tokenSpans = new TokenizerME(tokenizerModel).tokenizePos(lowerCaseContent);
+    Map<CharBuffer, Integer> vocabulary = new HashMap<>();
+    int[][] tokenIds = new int[spans.length][];
+    int tokenIndex = 0;
+    for (int i = 0; i < spans.length; i++) {
+      while (tokenIndex < tokenSpans.length
+          && tokenSpans[tokenIndex].getStart() < spans[i].getStart()) {
+        tokenIndex++;
+      }
+      int firstTokenIndex = tokenIndex;
+      while (tokenIndex < tokenSpans.length
+          && tokenSpans[tokenIndex].getStart() < spans[i].getEnd()) {
+        tokenIndex++;
+      }
+      tokenIds[i] = new int[tokenIndex - firstTokenIndex];
+      for (int j = firstTokenIndex; j < tokenIndex; j++) {
+        CharBuffer token =
+            CharBuffer.wrap(lowerCaseContent, tokenSpans[j].getStart(), tokenSpans[j].getEnd());
+        Integer tokenId = vocabulary.get(token);
+        if (tokenId == null) {
+          tokenId = vocabulary.size();
+          vocabulary.put(token, tokenId);
+        }
+        tokenIds[i][j - firstTokenIndex] = tokenId;
+      }
+    }
+    countTokens(tokenIds);
+    this.sentenceSpans = spans;
+  }
+
+  /** Compresses the token ids of each sentence into sorted distinct ids and counts. */
+  private void countTokens(int[][] tokenIds) {
+    sentenceTokenIds = new int[tokenIds.length][];
+    sentenceTokenCounts = new int[tokenIds.length][];
+    sentenceNorms = new double[tokenIds.length];
+    for (int i = 0; i < tokenIds.length; i++) {
+      int[] ids = tokenIds[i];
+      Arrays.sort(ids);
+      int distinctCount = 0;
+      for (int j = 0; j < ids.length; j++) {
+        if (j == 0 || ids[j] != ids[j - 1]) {
+          distinctCount++;
+        }
+      }
+      int[] distinctIds = new int[distinctCount];
+      int[] counts = new int[distinctCount];
+      int index = -1;
+      for (int j = 0; j < ids.length; j++) {
+        if (j == 0 || ids[j] != ids[j - 1]) {
+          index++;
+          distinctIds[index] = ids[j];
+        }
+        counts[index]++;
+      }
+      long squaredNorm = 0;
+      for (int count : counts) {
+        squaredNorm += (long) count * count;
+      }
+      sentenceTokenIds[i] = distinctIds;
+      sentenceTokenCounts[i] = counts;
+      sentenceNorms[i] = Math.sqrt(squaredNorm);
+    }
+  }
+
+  /** Returns the number of sentences. Sentences must have been analyzed. */
+  int getSentenceCount() {
+    return sentenceSpans.length;
+  }
+
+  /** Returns the start offset of the {@code index}-th sentence in the content. */
+  int getSentenceStart(int index) {
+    return sentenceSpans[index].getStart();
+  }
+
+  /** Returns the end offset of the {@code index}-th sentence in the content. */
+  int getSentenceEnd(int index) {
+    return sentenceSpans[index].getEnd();
+  }
+
+  /**
+   * Computes the cosine similarity between the token counts of the {@code indexA}-th and {@code
+   * indexB}-th sentences. The result is NaN if either sentence has no tokens.
+   */
+  double computeSimilarity(int indexA, int indexB) {
+    int[] idsA = sentenceTokenIds[indexA];
+    int[] idsB = sentenceTokenIds[indexB];
+    int[] countsA = sentenceTokenCounts[indexA];
+    int[] countsB = sentenceTokenCounts[indexB];
+    long dotProduct = 0;
+    int a = 0;
+    int b = 0;
+    while (a < idsA.length && b < idsB.length) {
+      if (idsA[a] < idsB[b]) {
+        a++;
+      } else if (idsA[a] > idsB[b]) {
+        b++;
+      } else {
+        dotProduct += (long) countsA[a++] * countsB[b++];
+      }
+    }
+    return dotProduct / (sentenceNorms[indexA] * sentenceNorms[indexB]);
+  }
+}
@@ -0,0 +1,311 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.webcrawler;
+
+import com.google.sps.data.NewsArticle;
+import com.google.sps.infocompiler.Config;
+import de.l3s.boilerpipe.document.TextBlock;
+import de.l3s.boilerpipe.document.TextDocument;
+import de.l3s.boilerpipe.extractors.ArticleExtractor;
+import java.io.InputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import org.apache.commons.io.input.BoundedInputStream;
+import org.apache.tika.detect.EncodingDetector;
+import org.apache.tika.exception.TikaException;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.parser.ParseContext;
+import org.apache.tika.parser.html.BoilerpipeContentHandler;
+import org.apache.tika.parser.html.DefaultHtmlMapper;
+import org.apache.tika.parser.html.HtmlMapper;
+import org.apache.tika.parser.html.HtmlParser;
+import org.apache.tika.sax.BodyContentHandler;
+import org.apache.tika.sax.ContentHandlerDecorator;
+import org.ccil.cowan.tagsoup.ElementType;
+import org.ccil.cowan.tagsoup.HTMLSchema;
+import org.ccil.cowan.tagsoup.Schema;
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Extracts textual content from HTML pages with Tika's HTML parser and Boilerpipe, in streaming
+ * mode if {@code Config.STREAMING_EXTRACTION_MODE} is set.
+ */
+public class TikaNewsContentExtractor implements NewsContentExtractor {
+  // In streaming mode: an {@code <article>} element is taken to hold the news article once it has
+  // this many characters and the headline, and parsing stops when it closes.
+  static final int MIN_ARTICLE_CHARACTER_COUNT = 500;
+  private static final int MAX_POOLED_HANDLERS = 16;
+  // In streaming mode: elements that are skipped together with their subtrees, in addition to
+  // script and style elements.
+  private static final Set<String> SKIPPED_ELEMENTS =
+      new HashSet<>(Arrays.asList("NAV", "ASIDE", "FOOTER", "NOSCRIPT", "IFRAME", "SVG", "BUTTON",
+                                  "SELECT", "TEMPLATE"));
+  // HTML5 elements that the HTML parser doesn't know of and would otherwise drop, along with
+  // their tags, before {@code StreamingHtmlMapper} sees them.
+  private static final List<String> HTML5_SECTIONING_ELEMENTS =
+      Arrays.asList("article", "nav", "aside", "header", "footer", "section", "main");
+  private static final Schema STREAMING_HTML_SCHEMA = buildStreamingHtmlSchema();
+  private static final HtmlMapper STREAMING_HTML_MAPPER = new StreamingHtmlMapper();
+  private HtmlParser parser;
+  private boolean isStreamingMode;
+  // Idle handlers that streaming mode reuses instead of allocating new ones for every webpage.
+  private BlockingQueue<BoilerpipeContentHandler> idleHandlers =
+      new ArrayBlockingQueue<>(MAX_POOLED_HANDLERS);
+
+  /**
+   * Constructs a {@code TikaNewsContentExtractor} instance to use Boilerpipe extraction, in
+   * streaming mode if {@code Config.STREAMING_EXTRACTION_MODE} is set.
+   */
+  public TikaNewsContentExtractor() {
+    this(new HtmlParser(), Config.STREAMING_EXTRACTION_MODE);
+  }
+
+  /** For testing purposes. */
+  TikaNewsContentExtractor(HtmlParser parser) {
+    this(parser, false);
+  }
+
+  /** For testing purposes. */
+  TikaNewsContentExtractor(HtmlParser parser, boolean isStreamingMode) {
+    this.parser = parser;
+    this.isStreamingMode = isStreamingMode;
+  }
+
+  /**
+   * Extracts textual content from HTML. Packages data into {@code NewsArticle}. Sets "content" to
+   * empty in the event of an exception, which may be caused by errors such as failure in reading
+   * in the HTML source code from {@code htmlFileStream}.
+   */
+  @Override
+  public void extractContentFromHtml(InputStream htmlFileStream, NewsArticle newsArticle) {
+    extractContentFromHtml(htmlFileStream, null, newsArticle);
+  }
+
+  /**
+   * Extracts textual content from the body of {@code webpage}, decoding it with the character
+   * encoding that {@code PageFetcher} already detected instead of sniffing it again. Packages data
+   * into {@code NewsArticle}, and sets "content" to empty in the event of an exception.
+   */
+  @Override
+  public void extractContentFromPage(FetchedPage webpage, NewsArticle newsArticle) {
+    extractContentFromHtml(webpage.getBodyStream(), webpage.getCharset(), newsArticle);
+  }
+
+  /**
+   * Extracts textual content from HTML encoded in {@code charset}, or in an encoding detected by
+   * the HTML parser if {@code charset} is null.
+   */
+  private void extractContentFromHtml(InputStream htmlFileStream, Charset charset,
+      NewsArticle newsArticle) {
+    if (htmlFileStream == null) {
+      newsArticle.setTitle("");
+      newsArticle.setContent("");
+      return;
+    }
+    if (isStreamingMode) {
+      streamAndExtractContentFromHtml(htmlFileStream, charset, newsArticle);
+      return;
+    }
+    BoilerpipeContentHandler boilerpipeHandler =
+        new BoilerpipeContentHandler(new BodyContentHandler(), new ArticleExtractor());
+    Metadata metadata = new Metadata();
+    try {
+      if (charset == null) {
+        extractContentFromHtml(boilerpipeHandler, metadata, htmlFileStream, newsArticle);
+      } else {
+        parser.parse(htmlFileStream, boilerpipeHandler, metadata, buildParseContext(charset));
+        TextDocument textDocument = boilerpipeHandler.getTextDocument();
+        newsArticle.setTitle(textDocument.getTitle() == null ? "" : textDocument.getTitle());
+        newsArticle.setContent(textDocument.getContent());
+      }
+    } catch (IOException | SAXException | TikaException e) {
+      newsArticle.setTitle("");
+      newsArticle.setContent("");
+    }
+  }
+
+  /**
+   * Extracts textual content from HTML with {@code boilerpipeHandler} and packages data into
+   * {@code NewsArticle}. This method is made default for testing purposes.
+   */
+  void extractContentFromHtml(BoilerpipeContentHandler boilerpipeHandler,
+      Metadata metadata, InputStream htmlFileStream, NewsArticle newsArticle)
+      throws IOException, SAXException, TikaException {
+    parser.parse(htmlFileStream, boilerpipeHandler, metadata);
+    TextDocument textDocument = boilerpipeHandler.getTextDocument();
+    newsArticle.setTitle(textDocument.getTitle() == null ? "" : textDocument.getTitle());
+    newsArticle.setContent(textDocument.getContent());
+  }
+
+  /**
+   * Extracts textual content from HTML in streaming mode, which bounds the work per webpage:
+   * Parses at most {@code MAX_STREAMED_BYTES}, skips the subtrees of {@code SKIPPED_ELEMENTS}
+   * while parsing, stops parsing once the article has ended, and reuses pooled handlers. Packages
+   * data into {@code NewsArticle}, and sets "content" to empty in the event of an exception.
+   */
+  private void streamAndExtractContentFromHtml(InputStream htmlFileStream, Charset charset,
+      NewsArticle newsArticle) {
+    BoilerpipeContentHandler boilerpipeHandler = idleHandlers.poll();
+    if (boilerpipeHandler == null) {
+      // The extracted text is read from {@code TextDocument}, so it needn't be written out.
+      boilerpipeHandler =
+          new BoilerpipeContentHandler(new DefaultHandler(), ArticleExtractor.INSTANCE);
+    }
+    ArticleEndDetector articleEndDetector = new ArticleEndDetector(boilerpipeHandler);
+    ParseContext parseContext = buildParseContext(charset);
+    parseContext.set(Schema.class, STREAMING_HTML_SCHEMA);
+    parseContext.set(HtmlMapper.class, STREAMING_HTML_MAPPER);
+    boolean isExtracted = false;
+    try {
+      try {
+        parser.parse(new BoundedInputStream(htmlFileStream, MAX_STREAMED_BYTES),
+                     articleEndDetector, new Metadata(), parseContext);
+      } catch (SAXException | TikaException e) {
+        if (!articleEndDetector.hasArticleEnded()) {
+          throw e;
+        }
+        boilerpipeHandler.endDocument();
+      }
+      TextDocument textDocument = boilerpipeHandler.getTextDocument();
+      newsArticle.setTitle(textDocument.getTitle() == null ? "" : textDocument.getTitle());
+      newsArticle.setContent(textDocument.getContent());
+      isExtracted = true;
+    } catch (IOException | SAXException | TikaException e) {
+      newsArticle.setTitle("");
+      newsArticle.setContent("");
+    } finally {
+      // A handler whose parsing failed partway may be left in any state, so only handlers that
+      // completed an extraction, including ones stopped once the article ended, are reused.
+      if (isExtracted) {
+        boilerpipeHandler.recycle();
+        boilerpipeHandler.setTitle(null);
+        idleHandlers.offer(boilerpipeHandler);
+      }
+    }
+  }
+
+  /**
+   * Builds a parse context that makes the HTML parser decode with {@code charset}, if it is
+   * non-null, rather than detect the encoding itself.
+   */
+  private static ParseContext buildParseContext(Charset charset) {
+    ParseContext parseContext = new ParseContext();
+    if (charset != null) {
+      parseContext.set(EncodingDetector.class, (input, metadata) -> charset);
+    }
+    return parseContext;
+  }
+
+  /**
+   * Builds an HTML schema that treats {@code HTML5_SECTIONING_ELEMENTS} like {@code <div>}, so
+   * that the HTML parser reports them.
+   */
+  private static Schema buildStreamingHtmlSchema() {
+    HTMLSchema schema = new HTMLSchema();
+    ElementType div = schema.getElementType("div");
+    for (String element : HTML5_SECTIONING_ELEMENTS) {
+      schema.elementType(element, div.model(), div.memberOf(), div.flags());
+      schema.parent(element, div.parent().name());
+    }
+    return schema;
+  }
+
+  /**
+   * An HTML mapper that discards the subtrees of {@code SKIPPED_ELEMENTS}, and passes through
+   * {@code <article>} elements for {@code ArticleEndDetector}.
+   */
+  private static class StreamingHtmlMapper extends DefaultHtmlMapper {
+    @Override
+    public String mapSafeElement(String name) {
+      if (name.equalsIgnoreCase("ARTICLE")) {
+        return "article";
+      }
+      return super.mapSafeElement(name);
+    }
+
+    @Override
+    public boolean isDiscardElement(String name) {
+      return super.isDiscardElement(name)
+          || SKIPPED_ELEMENTS.contains(name.toUpperCase(Locale.ENGLISH));
+    }
+  }
+
+  /**
+   * Stops parsing, by throwing {@code SAXException}, once an {@code <article>} element that holds
+   * an {@code <h1>} headline closes with at least {@code MIN_ARTICLE_CHARACTER_COUNT} characters of
+   * text, since the rest of the webpage is unlikely to contain the news article. Other {@code
+   * <article>} elements, such as teasers of related stories, don't stop parsing however long they
+   * are, so that they aren't mistaken for the news article.
+   */
+  private static class ArticleEndDetector extends ContentHandlerDecorator {
+    private int articleDepth = 0;
+    private int articleCharacterCount = 0;
+    private boolean hasArticleHeadline = false;
+    private boolean hasArticleEnded = false;
+
+    ArticleEndDetector(ContentHandler handler) {
+      super(handler);
+    }
+
+    boolean hasArticleEnded() {
+      return hasArticleEnded;
+    }
+
+    @Override
+    public void startElement(String uri, String localName, String name, Attributes attributes)
+        throws SAXException {
+      if (localName.equals("article")) {
+        if (articleDepth++ == 0) {
+          articleCharacterCount = 0;
+          hasArticleHeadline = false;
+        }
+      } else if (localName.equals("h1") && articleDepth > 0) {
+        hasArticleHeadline = true;
+      }
+      super.startElement(uri, localName, name, attributes);
+    }
+
+    @Override
+    public void characters(char[] characters, int start, int length) throws SAXException {
+      if (articleDepth > 0) {
+        articleCharacterCount += length;
+      }
+      super.characters(characters, start, length);
+    }
+
+    @Override
+    public void endElement(String uri, String localName, String name) throws SAXException {
+      super.endElement(uri, localName, name);
+      if (localName.equals("article") && articleDepth > 0 && --articleDepth == 0) {
+        if (hasArticleHeadline && articleCharacterCount >= MIN_ARTICLE_CHARACTER_COUNT) {
+          hasArticleEnded = true;
+          throw new SAXException("The article has ended.");
+        }
+      }
+    }
+  }
+}
@@ -19,9 +19,13 @@ import com.google.cloud.datastore.Datastore;
 import com.google.cloud.datastore.DatastoreOptions;
 import com.google.cloud.datastore.Entity;
 import com.google.cloud.datastore.Key;
+import com.google.cloud.datastore.Query;
+import com.google.cloud.datastore.QueryResults;
+import com.google.cloud.datastore.StructuredQuery.PropertyFilter;
 import com.google.cloud.datastore.StringValue;
 import com.google.cloud.datastore.TimestampValue;
 import com.google.cloud.Timestamp;
+import com.google.common.util.concurrent.RateLimiter;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
@@ -34,10 +38,10 @@ import com.google.sps.webcrawler.NewsContentProcessor;
 import com.google.sps.webcrawler.RelevancyChecker;
 import com.panforge.robotstxt.Grant;
 import com.panforge.robotstxt.RobotsTxt;
-import java.io.InputStream;
+import java.io.Closeable;
 import java.io.IOException;
+import java.net.MalformedURLException;
 import java.net.URL;
-import java.net.URLConnection;
 import java.net.URLEncoder;
 import java.time.DateTimeException;
 import java.time.format.DateTimeFormatter;
@@ -45,12 +49,28 @@ import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
 import org.apache.http.client.ClientProtocolException;
@@ -61,7 +81,7 @@ import org.apache.http.impl.client.HttpClients;
 import org.apache.http.util.EntityUtils;
 
 /** A web crawler for compiling candidate-specific news articles information. */
-public class WebCrawler {
+public class WebCrawler implements Closeable {
   static final String CUSTOM_SEARCH_URL_METATAG = "og:url";
   static final List<String> CUSTOM_SEARCH_PUBLISHER_METATAGS =
       Arrays.asList("article:publisher", "og:site_name", "twitter:app:name:googleplay",
@@ -75,15 +95,48 @@ public class WebCrawler {
                     DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ssX"),
                     DateTimeFormatter.ISO_OFFSET_DATE_TIME);
   public static final int CUSTOM_SEARCH_RESULT_COUNT = 10;
-  private static final int URL_CONNECT_TIMEOUT_MILLISECONDS = 1000;
-  private static final int URL_READ_TIMEOUT_MILLISECONDS = 1000;
+  // Custom Search returns at most 100 results per query.
+  public static final int MAX_CUSTOM_SEARCH_PAGE_COUNT = 10;
+  private static final int LOWEST_PRIORITY =
+      CUSTOM_SEARCH_RESULT_COUNT * MAX_CUSTOM_SEARCH_PAGE_COUNT;
   private static final int MAX_CRAWL_DELAY = 30 * 1000;
+  // Shared by all web crawlers, so that concurrent news compilations respect the Custom Search
+  // query rate limit together.
+  private static final RateLimiter customSearchLimiter =
+      RateLimiter.create(Config.CUSTOM_SEARCH_QUERIES_PER_SECOND);
+  // Mappings of (Custom Search request, its parsed results) for recent requests. Shared by all web
+  // crawlers, so that reruns and retries within the same process reuse the results.
+  private static final Map<String, CachedSearchResults> customSearchCache =
+      new ConcurrentHashMap<>();
   private Datastore datastore;
   private NewsContentExtractor newsContentExtractor;
   private RelevancyChecker relevancyChecker;
+  private SeenArticleFilter seenArticleFilter;
+  private CrawlHistory crawlHistory;
+  private PageFetcher pageFetcher;
+  // Starts webpage fetches that have to wait for the required crawl delay, without tying up a
+  // thread for the duration of the delay.
+  private ScheduledExecutorService crawlDelayScheduler =
+      Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "crawl-delay-scheduler");
+        thread.setDaemon(true);
+        return thread;
+      });
+  // Fetches the pages of Custom Search results after the first one.
+  private ExecutorService customSearchExecutor =
+      Executors.newFixedThreadPool(getCustomSearchPageCount(), runnable -> {
+        Thread thread = new Thread(runnable, "custom-search");
+        thread.setDaemon(true);
+        return thread;
+      });
   // Mappings of (website robots.txt URL, the next allowed time to access, in milliseconds) for
   // respecting the required crawl delay.
-  private Map<String, Long> nextAccessTimes = new HashMap<>();
+  private Map<String, Long> nextAccessTimes = new ConcurrentHashMap<>();
+  // In batch summarization mode: relevant news articles that await summarization and storage.
+  private Queue<PendingNewsArticle> pendingNewsArticles = new ConcurrentLinkedQueue<>();
+  // Whether news articles have been stored or re-ranked since the last call to {@link
+  // #getAndResetNewsArticlesModified()}.
+  private AtomicBoolean isNewsArticlesModified = new AtomicBoolean();
 
   /**
    * Constructs a {@code WebCrawler} instance.
@@ -92,7 +145,7 @@ public class WebCrawler {
    *     of permission to access required libraries.
    */
   public WebCrawler() throws IOException {
-    this(DatastoreOptions.getDefaultInstance().getService(), new NewsContentExtractor(),
+    this(DatastoreOptions.getDefaultInstance().getService(), NewsContentExtractor.create(),
          new RelevancyChecker());
   }
 
@@ -102,30 +155,354 @@ public class WebCrawler {
     this.datastore = datastore;
     this.newsContentExtractor = newsContentExtractor;
     this.relevancyChecker = relevancyChecker;
+    this.seenArticleFilter = new SeenArticleFilter(datastore);
+    this.crawlHistory = new CrawlHistory(datastore);
+    this.pageFetcher = new PageFetcher();
   }
 
   /**
    * Compiles news articles for the candidate with the specified {@code candidateName} and
    * {@code candidateId}:
-   * 1. Obtains news article URLs and metadata from Google Custom Search.
-   * 2. Checks for permission to web-scrape.
-   * 3. Web-scrapes if permitted.
-   * 4. Extracts content from HTML structure.
-   * 5. Checks content relevancy to the candidate of interest.
-   * 6. Processes content.
-   * 7. Stores processed content in the database.
+   * 1. Obtains news article URLs and metadata from Google Custom Search. In incremental search
+   *    mode, only news articles published since the candidate was last searched for are
+   *    obtained, and the candidate's stored news articles are kept and ranked after them.
+   * 2. Refreshes news articles that were compiled before and haven't changed since.
+   * 3. Checks for permission to web-scrape.
+   * 4. Web-scrapes if permitted, reusing previously extracted content if the webpage hasn't been
+   *    modified since it was last crawled.
+   * 5. Extracts content from HTML structure.
+   * 6. Checks content relevancy to the candidate of interest.
+   * 7. Processes content.
+   * 8. Stores processed content in the database.
+   * Steps 3 and 4 are started for all news articles at once without blocking, and the fetched
+   * webpages are handed to steps 5 - 8 in the order in which they arrive. In batch summarization
+   * mode, summarization and storage of newly extracted content are deferred until {@link
+   * #summarizeAndStorePendingNewsArticles()}.
    */
   public void compileNewsArticle(String candidateName, String candidateId, String partyName) {
-    List<NewsArticle> newsArticles = getUrlsFromCustomSearch(candidateName);
+    long searchTime = System.currentTimeMillis();
+    Key candidateKey =
+        datastore.newKeyFactory().setKind("Candidate").newKey(Long.parseLong(candidateId));
+    int dateRestrictDays = crawlHistory.getIncrementalSearchDays(candidateId, searchTime);
+    List<Entity> storedCandidateEntities =
+        (dateRestrictDays > 0) ? fetchStoredNewsArticles(candidateKey) : Arrays.asList();
+    if (storedCandidateEntities.isEmpty()) {
+      // The candidate's news articles have expired or were never found, so search from scratch.
+      dateRestrictDays = 0;
+    }
+    Optional<List<NewsArticle>> searchedNewsArticles =
+        searchCustomSearch(candidateName, dateRestrictDays);
+    if (!searchedNewsArticles.isPresent()) {
+      return;
+    }
+    if (dateRestrictDays > 0) {
+      rerankStoredNewsArticles(storedCandidateEntities, searchedNewsArticles.get());
+    }
+    List<NewsArticle> newsArticles =
+        refreshSeenNewsArticles(candidateId, searchedNewsArticles.get());
+    if (newsArticles.isEmpty()) {
+      crawlHistory.recordSearch(candidateId, searchTime, dateRestrictDays == 0);
+      return;
+    }
+    Map<Key, Entity> storedEntities = fetchStoredNewsArticles(newsArticles);
+    BlockingQueue<CrawledPage> crawledPages = new ArrayBlockingQueue<>(newsArticles.size());
     for (NewsArticle newsArticle : newsArticles) {
-      scrapeAndExtractFromHtml(newsArticle);
-      if (!relevancyChecker.isRelevant(newsArticle, candidateName, partyName)) {
+      restorePreviousCrawl(newsArticle, storedEntities.get(buildNewsArticleKey(newsArticle)),
+                           storedEntities.get(buildNewsArticleContentKey(newsArticle)));
+      crawlAsync(newsArticle).whenComplete(
+          (webpage, error) -> crawledPages.add(new CrawledPage(newsArticle, webpage, error)));
+    }
+    for (int i = 0; i < newsArticles.size(); i++) {
+      CrawledPage crawledPage;
+      try {
+        crawledPage = crawledPages.take();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+      NewsArticle newsArticle = crawledPage.newsArticle;
+      Entity storedEntity = storedEntities.get(buildNewsArticleKey(newsArticle));
+      boolean isContentReused =
+          extractFromFetchedPage(newsArticle, crawledPage.webpage, crawledPage.error);
+      // Content that was stored for this candidate has been deemed relevant already.
+      boolean isRelevancyKnown =
+          isContentReused
+              && storedEntity != null
+              && candidateKey.equals(storedEntity.getKey("candidateId"));
+      if (!isRelevancyKnown
+          && !relevancyChecker.isRelevant(newsArticle, candidateName, partyName)) {
         continue;
       }
-      NewsContentProcessor.abbreviate(newsArticle);
-      NewsContentProcessor.summarize(newsArticle);
+      if (!isContentReused && Config.BATCH_SUMMARIZATION_MODE) {
+        NewsContentProcessor.abbreviate(newsArticle);
+        pendingNewsArticles.add(new PendingNewsArticle(candidateId, newsArticle));
+        continue;
+      }
+      if (!isContentReused) {
+        NewsContentProcessor.abbreviateAndSummarize(newsArticle);
+      }
       storeInDatabase(candidateId, newsArticle);
+      seenArticleFilter.put(candidateId, newsArticle);
+    }
+    crawlHistory.recordSearch(candidateId, searchTime, dateRestrictDays == 0);
+  }
+
+  /**
+   * In batch summarization mode: summarizes all news articles that were compiled since the last
+   * call in a single PageRank job, and then stores them in the database. Does nothing otherwise.
+   */
+  public void summarizeAndStorePendingNewsArticles() {
+    List<PendingNewsArticle> pendingNewsArticleList = new ArrayList<>();
+    PendingNewsArticle pendingNewsArticle;
+    while ((pendingNewsArticle = pendingNewsArticles.poll()) != null) {
+      pendingNewsArticleList.add(pendingNewsArticle);
+    }
+    if (pendingNewsArticleList.isEmpty()) {
+      return;
+    }
+    List<NewsArticle> newsArticles = new ArrayList<>(pendingNewsArticleList.size());
+    for (PendingNewsArticle pendingArticle : pendingNewsArticleList) {
+      newsArticles.add(pendingArticle.newsArticle);
+    }
+    NewsContentProcessor.summarizeAll(newsArticles, Config.BATCH_SUMMARIZATION_PARALLELISM);
+    for (PendingNewsArticle pendingArticle : pendingNewsArticleList) {
+      storeInDatabase(pendingArticle.candidateId, pendingArticle.newsArticle);
+      seenArticleFilter.put(pendingArticle.candidateId, pendingArticle.newsArticle);
+    }
+  }
+
+  /** A relevant news article of a candidate that awaits summarization and storage. */
+  private static class PendingNewsArticle {
+    private String candidateId;
+    private NewsArticle newsArticle;
+
+    PendingNewsArticle(String candidateId, NewsArticle newsArticle) {
+      this.candidateId = candidateId;
+      this.newsArticle = newsArticle;
+    }
+  }
+
+  /** A news article and the outcome of fetching its webpage. */
+  private static class CrawledPage {
+    private NewsArticle newsArticle;
+    // Null if web-scraping isn't permitted or if {@code error} occurred.
+    private FetchedPage webpage;
+    private Throwable error;
+
+    CrawledPage(NewsArticle newsArticle, FetchedPage webpage, Throwable error) {
+      this.newsArticle = newsArticle;
+      this.webpage = webpage;
+      this.error = error;
+    }
+  }
+
+  /**
+   * Fetches the stored entities, if any, of {@code newsArticles} and of their content from the
+   * database in a single batch, keyed by their database keys.
+   */
+  private Map<Key, Entity> fetchStoredNewsArticles(List<NewsArticle> newsArticles) {
+    Set<Key> newsArticleKeys = new LinkedHashSet<>(newsArticles.size() * 2);
+    for (NewsArticle newsArticle : newsArticles) {
+      newsArticleKeys.add(buildNewsArticleKey(newsArticle));
+      newsArticleKeys.add(buildNewsArticleContentKey(newsArticle));
+    }
+    Map<Key, Entity> storedEntities = new HashMap<>(newsArticleKeys.size());
+    if (newsArticleKeys.isEmpty()) {
+      return storedEntities;
+    }
+    for (Entity storedEntity : datastore.fetch(newsArticleKeys)) {
+      if (storedEntity != null) {
+        storedEntities.put(storedEntity.getKey(), storedEntity);
+      }
+    }
+    return storedEntities;
+  }
+
+  /** Fetches all news article entities stored for the candidate with {@code candidateKey}. */
+  private List<Entity> fetchStoredNewsArticles(Key candidateKey) {
+    Query<Entity> query =
+        Query.newEntityQueryBuilder()
+            .setKind("NewsArticle")
+            .setFilter(PropertyFilter.eq("candidateId", candidateKey))
+            .build();
+    QueryResults<Entity> queryResults = datastore.run(query);
+    List<Entity> storedEntities = new ArrayList<>();
+    while (queryResults.hasNext()) {
+      storedEntities.add(queryResults.next());
+    }
+    return storedEntities;
+  }
+
+  /**
+   * Merges the results of an incremental search, {@code searchedNewsArticles}, which are ranked
+   * by date, with the candidate's {@code storedEntities}: stored news articles that weren't found
+   * again keep their relative order by priority, and then by date, and are ranked after the
+   * searched news articles. Refreshes their priority and last modified time in a single batch, so
+   * that they aren't cleared as outdated, and moves the content of legacy entities into their own
+   * {@code NewsArticleContent} entities. This method is made default for testing purposes.
+   */
+  void rerankStoredNewsArticles(
+      List<Entity> storedEntities, List<NewsArticle> searchedNewsArticles) {
+    Set<Key> searchedKeys = new HashSet<>(searchedNewsArticles.size());
+    for (NewsArticle newsArticle : searchedNewsArticles) {
+      searchedKeys.add(buildNewsArticleKey(newsArticle));
+    }
+    List<Entity> remainingEntities = new ArrayList<>(storedEntities.size());
+    for (Entity storedEntity : storedEntities) {
+      if (!searchedKeys.contains(storedEntity.getKey())) {
+        remainingEntities.add(storedEntity);
+      }
+    }
+    if (remainingEntities.isEmpty()) {
+      return;
+    }
+    remainingEntities.sort(
+        Comparator.comparingLong((Entity entity) -> entity.getLong("priority"))
+            .thenComparing(
+                (Entity entity) -> entity.getTimestamp("publishedDate"),
+                Comparator.reverseOrder()));
+    Timestamp now = Timestamp.now();
+    List<Entity> refreshedEntities = new ArrayList<>(remainingEntities.size());
+    int priority = searchedNewsArticles.size() + 1;
+    for (Entity remainingEntity : remainingEntities) {
+      addRefreshedEntities(
+          refreshedEntities, remainingEntity, Math.min(priority++, LOWEST_PRIORITY), now);
+    }
+    datastore.put(refreshedEntities.toArray(new Entity[0]));
+  }
+
+  /**
+   * Adds a copy of the stored news article {@code storedEntity}, with {@code priority} and the
+   * last modified time {@code now}, to {@code refreshedEntities}. News articles stored before
+   * their content was split into {@code NewsArticleContent} entities still carry their content,
+   * which is moved into a {@code NewsArticleContent} entity with the same ID that is added to
+   * {@code refreshedEntities} as well, so that refreshed news articles are loaded without their
+   * full content too.
+   */
+  private void addRefreshedEntities(
+      List<Entity> refreshedEntities, Entity storedEntity, int priority, Timestamp now) {
+    if (storedEntity.getLong("priority") != priority) {
+      isNewsArticlesModified.set(true);
+    }
+    Entity.Builder refreshedEntity =
+        Entity.newBuilder(storedEntity)
+            .set("priority", priority)
+            .set("lastModified", now);
+    if (storedEntity.contains("content")) {
+      refreshedEntities.add(
+          Entity.newBuilder(
+                  datastore.newKeyFactory()
+                      .setKind("NewsArticleContent")
+                      .newKey(storedEntity.getKey().getId()))
+              .set("content", excludeStringFromIndexes(storedEntity.getString("content")))
+              .set("lastModified", now)
+              .build());
+      refreshedEntity.remove("content");
+    }
+    refreshedEntities.add(refreshedEntity.build());
+  }
+
+  /**
+   * Puts the content and HTTP validators of the previous crawl of the same webpage, as stored in
+   * {@code storedEntity} and {@code storedContentEntity}, into {@code newsArticle}, so that the
+   * webpage can be re-fetched conditionally. Does nothing if either entity is null, if {@code
+   * storedEntity} belongs to a different URL or if it has no validators. This method is made
+   * default for testing purposes.
+   */
+  void restorePreviousCrawl(NewsArticle newsArticle, Entity storedEntity,
+      Entity storedContentEntity) {
+    if (storedEntity == null
+        || storedContentEntity == null
+        || !newsArticle.getUrl().equals(storedEntity.getString("url"))
+        || !storedEntity.contains("etag")
+        || !storedEntity.contains("httpLastModified")) {
+      return;
+    }
+    String etag = storedEntity.getString("etag");
+    String httpLastModified = storedEntity.getString("httpLastModified");
+    if (etag.isEmpty() && httpLastModified.isEmpty()) {
+      return;
+    }
+    newsArticle.setEtag(etag);
+    newsArticle.setHttpLastModified(httpLastModified);
+    newsArticle.setTitle(storedEntity.getString("title"));
+    newsArticle.setContent(storedContentEntity.getString("content"));
+    newsArticle.setAbbreviatedContent(storedEntity.getString("abbreviatedContent"));
+    newsArticle.setSummarizedContent(storedEntity.getString("summarizedContent"));
+  }
+
+  /**
+   * Returns whether news articles have been stored or re-ranked since the last call, and starts
+   * tracking anew. Refreshing the last modified time of stored news articles, or moving their
+   * content into {@code NewsArticleContent} entities, doesn't count, since the web app serves them
+   * unchanged.
+   */
+  public boolean getAndResetNewsArticlesModified() {
+    return isNewsArticlesModified.getAndSet(false);
+  }
+
+  /**
+   * Saves crawl state that should survive across runs, namely the seen article filter, in the
+   * database.
+   */
+  public void persistCrawlState() {
+    seenArticleFilter.persist();
+  }
+
+  /** Closes the pooled connections and stops the threads for fetching webpages. */
+  @Override
+  public void close() throws IOException {
+    crawlDelayScheduler.shutdownNow();
+    customSearchExecutor.shutdownNow();
+    pageFetcher.close();
+  }
+
+  /**
+   * Finds news articles in {@code newsArticles} that were compiled for the candidate before with
+   * the same URL and published date, as suggested by {@code seenArticleFilter} and confirmed by
+   * the stored entities. Refreshes the priority and last modified time of those entities in a
+   * single batch, without scraping them again, and moves the content of legacy entities into their
+   * own {@code NewsArticleContent} entities. Returns the remaining news articles, which need to
+   * be crawled. This method is made default for testing purposes.
+   */
+  List<NewsArticle> refreshSeenNewsArticles(String candidateId, List<NewsArticle> newsArticles) {
+    Map<Key, NewsArticle> seenNewsArticles = new LinkedHashMap<>();
+    List<NewsArticle> unseenNewsArticles = new ArrayList<>(newsArticles.size());
+    for (NewsArticle newsArticle : newsArticles) {
+      Key newsArticleKey = buildNewsArticleKey(newsArticle);
+      if (seenArticleFilter.mightContain(candidateId, newsArticle)
+          && !seenNewsArticles.containsKey(newsArticleKey)) {
+        seenNewsArticles.put(newsArticleKey, newsArticle);
+      } else {
+        unseenNewsArticles.add(newsArticle);
+      }
     }
+    if (seenNewsArticles.isEmpty()) {
+      return unseenNewsArticles;
+    }
+    Key candidateKey =
+        datastore.newKeyFactory().setKind("Candidate").newKey(Long.parseLong(candidateId));
+    List<Entity> storedEntities = datastore.fetch(seenNewsArticles.keySet());
+    List<Entity> refreshedEntities = new ArrayList<>(storedEntities.size());
+    Timestamp now = Timestamp.now();
+    int index = 0;
+    for (NewsArticle newsArticle : seenNewsArticles.values()) {
+      Entity storedEntity = storedEntities.get(index++);
+      if (storedEntity != null
+          && candidateKey.equals(storedEntity.getKey("candidateId"))
+          && newsArticle.getUrl().equals(storedEntity.getString("url"))
+          && newsArticle.getPublishedDate().equals(
+                 storedEntity.getTimestamp("publishedDate").toDate())) {
+        addRefreshedEntities(refreshedEntities, storedEntity, newsArticle.getPriority(), now);
+      } else {
+        // A false positive of the filter, or an article whose entity has expired.
+        unseenNewsArticles.add(newsArticle);
+      }
+    }
+    if (!refreshedEntities.isEmpty()) {
+      datastore.put(refreshedEntities.toArray(new Entity[0]));
+    }
+    return unseenNewsArticles;
   }
 
   // [Might adopt in {@code compileNewsArticle}.]
@@ -148,25 +525,114 @@ public class WebCrawler {
 
   /**
    * Searches for {@code candidateName} on News.google using the Google Custom Search engine and
-   * finds URLs and metadata of news articles. Returns an empty list if no valid URLs are found.
+   * finds URLs and metadata of news articles. Fetches {@code Config.CUSTOM_SEARCH_PAGE_COUNT}
+   * pages of results concurrently, and returns their news articles in the order of the results.
+   * Returns an empty list if no valid URLs are found.
+   */
+  public List<NewsArticle> getUrlsFromCustomSearch(String candidateName) {
+    return searchCustomSearch(candidateName, 0).orElseGet(ArrayList::new);
+  }
+
+  /**
+   * Same as {@link #getUrlsFromCustomSearch(String)}, but if {@code dateRestrictDays} is
+   * positive, only searches for news articles published in the past {@code dateRestrictDays}
+   * days, most recent first. Returns an empty {@code Optional} if the first page of results
+   * couldn't be fetched, as opposed to an empty list if no news articles were found.
+   */
+  Optional<List<NewsArticle>> searchCustomSearch(String candidateName, int dateRestrictDays) {
+    int pageCount = getCustomSearchPageCount();
+    List<CompletableFuture<List<NewsArticle>>> laterPages = new ArrayList<>(pageCount - 1);
+    for (int page = 1; page < pageCount; page++) {
+      int start = page * CUSTOM_SEARCH_RESULT_COUNT + 1;
+      laterPages.add(
+          CompletableFuture.supplyAsync(
+              () -> getUrlsFromCustomSearchPage(candidateName, dateRestrictDays, start),
+              customSearchExecutor));
+    }
+    List<NewsArticle> firstPage = getUrlsFromCustomSearchPage(candidateName, dateRestrictDays, 1);
+    if (firstPage == null) {
+      return Optional.empty();
+    }
+    List<NewsArticle> newsArticles = new ArrayList<>(pageCount * CUSTOM_SEARCH_RESULT_COUNT);
+    newsArticles.addAll(firstPage);
+    for (CompletableFuture<List<NewsArticle>> laterPage : laterPages) {
+      List<NewsArticle> pageNewsArticles = laterPage.join();
+      if (pageNewsArticles != null) {
+        newsArticles.addAll(pageNewsArticles);
+      }
+    }
+    return Optional.of(newsArticles);
+  }
+
+  private static int getCustomSearchPageCount() {
+    return Math.min(Math.max(Config.CUSTOM_SEARCH_PAGE_COUNT, 1), MAX_CUSTOM_SEARCH_PAGE_COUNT);
+  }
+
+  /**
+   * Finds URLs and metadata of news articles in the page of Custom Search results for {@code
+   * candidateName} that starts at the {@code start}-th result (1-based), restricted to the past
+   * {@code dateRestrictDays} days if positive. Reuses the results of the same request if they were
+   * cached less than {@code Config.CUSTOM_SEARCH_CACHE_SECONDS} ago. Failed requests aren't
+   * cached. Returns an empty list if no valid URLs are found, and null if the request failed.
    *
    * @see <a href="https://hc.apache.org/httpcomponents-client-ga/httpclient/examples/org/apache/"
    *    + "http/examples/client/ClientWithResponseHandler.java">Code reference</a>
    */
-  public List<NewsArticle> getUrlsFromCustomSearch(String candidateName) {
+  private List<NewsArticle> getUrlsFromCustomSearchPage(
+      String candidateName, int dateRestrictDays, int start) {
     String request =
         String.format(
-            "https://www.googleapis.com/customsearch/v1?key=%s&cx=%s&q=%s",
+            "https://www.googleapis.com/customsearch/v1?key=%s&cx=%s&q=%s&start=%d",
             Config.CUSTOM_SEARCH_KEY, Config.CUSTOM_SEARCH_ENGINE_ID,
-            URLEncoder.encode(candidateName));
-    CloseableHttpClient httpClient = HttpClients.createDefault();
-    try {
+            URLEncoder.encode(candidateName), start);
+    if (dateRestrictDays > 0) {
+      request += String.format("&dateRestrict=d%d&sort=date", dateRestrictDays);
+    }
+    long now = System.currentTimeMillis();
+    CachedSearchResults cachedResults = customSearchCache.get(request);
+    if (cachedResults != null && cachedResults.expirationTime > now) {
+      return copyNewsArticles(cachedResults.newsArticles);
+    }
+    customSearchLimiter.acquire();
+    try (CloseableHttpClient httpClient = HttpClients.createDefault()) {
       HttpGet httpGet = new HttpGet(request);
       JsonObject json = InfoCompiler.requestHttpAndBuildJsonResponse(httpClient, httpGet);
-      return extractUrlsAndMetadataFromCustomSearchJson(json);
+      List<NewsArticle> newsArticles = extractUrlsAndMetadataFromCustomSearchJson(json, start);
+      if (Config.CUSTOM_SEARCH_CACHE_SECONDS > 0) {
+        customSearchCache.values().removeIf(results -> results.expirationTime <= now);
+        customSearchCache.put(
+            request,
+            new CachedSearchResults(
+                copyNewsArticles(newsArticles),
+                now + TimeUnit.SECONDS.toMillis(Config.CUSTOM_SEARCH_CACHE_SECONDS)));
+      }
+      return newsArticles;
     } catch (IOException e) {
       System.out.println("[ERROR] Error occurred with fetching URLs from Custom Search: " + e);
-      return Arrays.asList();
+      return null;
+    }
+  }
+
+  /**
+   * Copies {@code newsArticles}, so that cached search results aren't affected by the content
+   * later set on the news articles being compiled.
+   */
+  private static List<NewsArticle> copyNewsArticles(List<NewsArticle> newsArticles) {
+    List<NewsArticle> copies = new ArrayList<>(newsArticles.size());
+    for (NewsArticle newsArticle : newsArticles) {
+      copies.add(new NewsArticle(newsArticle));
+    }
+    return copies;
+  }
+
+  /** The parsed results of a Custom Search request, and when they expire, in milliseconds. */
+  private static class CachedSearchResults {
+    private List<NewsArticle> newsArticles;
+    private long expirationTime;
+
+    CachedSearchResults(List<NewsArticle> newsArticles, long expirationTime) {
+      this.newsArticles = newsArticles;
+      this.expirationTime = expirationTime;
     }
   }
 
@@ -177,12 +643,21 @@ public class WebCrawler {
    * Set news articles' priority based on the order in which they are returned by Custom Search.
    */
   List<NewsArticle> extractUrlsAndMetadataFromCustomSearchJson(JsonObject json) {
+    return extractUrlsAndMetadataFromCustomSearchJson(json, 1);
+  }
+
+  /**
+   * Same as {@link #extractUrlsAndMetadataFromCustomSearchJson(JsonObject)}, for a page of
+   * results that starts at the {@code start}-th result (1-based), so that priorities continue
+   * from those of the previous pages.
+   */
+  List<NewsArticle> extractUrlsAndMetadataFromCustomSearchJson(JsonObject json, int start) {
     List<NewsArticle> newsArticles = new ArrayList<>(CUSTOM_SEARCH_RESULT_COUNT);
     JsonArray searchResults = json.getAsJsonArray("items");
     if (searchResults == null) {
       return Arrays.asList();
     }
-    int priority = 1;
+    int priority = start;
     for (JsonElement result : searchResults) {
       JsonObject metadata;
       String url;
@@ -252,118 +727,199 @@ public class WebCrawler {
   /**
    * Checks robots.txt for permission to web-scrape, scrapes webpage if permitted and extracts
    * textual content to put into {@code newsArticle}. Sets "content" to empty in the event of an
-   * exception.
+   * exception. Returns true if the webpage hasn't been modified since the previous crawl, whose
+   * content in {@code newsArticle} is then kept as is.
    */
-  public void scrapeAndExtractFromHtml(NewsArticle newsArticle) {
+  public boolean scrapeAndExtractFromHtml(NewsArticle newsArticle) {
+    return extractFromCompletedFetch(newsArticle, crawlAsync(newsArticle));
+  }
+
+  /**
+   * Checks robots.txt for permission to web-scrape, scrapes webpage if permitted and extracts
+   * textual content to put into {@code newsArticle}. If {@code newsArticle} carries HTTP
+   * validators from the previous crawl, re-fetches the webpage conditionally. Sets "content" to
+   * empty in the event of an exception. Returns true if the webpage hasn't been modified since the
+   * previous crawl, whose content in {@code newsArticle} is then kept as is.
+   */
+  boolean politelyScrapeAndExtractFromHtml(Grant grant, URL robotsUrl,
+      NewsArticle newsArticle) {
+    return extractFromCompletedFetch(
+        newsArticle, politelyFetchAsync(grant, robotsUrl, newsArticle));
+  }
+
+  /** Waits for {@code fetch} to complete and extracts its webpage into {@code newsArticle}. */
+  private boolean extractFromCompletedFetch(NewsArticle newsArticle,
+      CompletableFuture<FetchedPage> fetch) {
     try {
-      URL url = new URL(newsArticle.getUrl());
-      URL robotsUrl = new URL(url.getProtocol(), url.getHost(), "/robots.txt");
-      InputStream robotsTxtStream = setTimeoutAndOpenStream(robotsUrl);
-      RobotsTxt robotsTxt = RobotsTxt.read(robotsTxtStream);
-      robotsTxtStream.close();
-      String webpagePath = url.getPath();
-      Grant grant = robotsTxt.ask("*", webpagePath);
-      politelyScrapeAndExtractFromHtml(grant, robotsUrl, newsArticle);
-    } catch (Exception e) {
-      System.out.println("[ERROR] Error occured in scrapeAndExtractHtml(): " + e);
-      newsArticle.setTitle("");
-      newsArticle.setContent("");
+      return extractFromFetchedPage(newsArticle, fetch.join(), null);
+    } catch (CompletionException e) {
+      return extractFromFetchedPage(newsArticle, null, e);
     }
   }
 
   /**
-   * Checks robots.txt for permission to web-scrape, scrapes webpage if permitted and extracts
-   * textual content to put into {@code newsArticle}. Sets "content" to empty in the event of an
-   * exception.
+   * Fetches robots.txt of the website of {@code newsArticle} and, if permitted, the webpage
+   * itself, without blocking. The returned future completes with null if web-scraping isn't
+   * permitted, and fails if either fetch fails.
    */
-  void politelyScrapeAndExtractFromHtml(Grant grant, URL robotsUrl,
+  CompletableFuture<FetchedPage> crawlAsync(NewsArticle newsArticle) {
+    URL url;
+    URL robotsUrl;
+    try {
+      url = new URL(newsArticle.getUrl());
+      robotsUrl = new URL(url.getProtocol(), url.getHost(), "/robots.txt");
+    } catch (MalformedURLException e) {
+      CompletableFuture<FetchedPage> failedCrawl = new CompletableFuture<>();
+      failedCrawl.completeExceptionally(e);
+      return failedCrawl;
+    }
+    return pageFetcher.fetchAsync(robotsUrl).thenCompose(robotsTxtPage -> {
+      Grant grant;
+      try {
+        grant = RobotsTxt.read(robotsTxtPage.getBodyStream()).ask("*", url.getPath());
+      } catch (IOException e) {
+        throw new CompletionException(e);
+      }
+      return politelyFetchAsync(grant, robotsUrl, newsArticle);
+    });
+  }
+
+  /**
+   * Fetches the webpage of {@code newsArticle} without blocking, if {@code grant} permits access,
+   * once the required crawl delay has passed. If {@code newsArticle} carries HTTP validators from
+   * the previous crawl, re-fetches the webpage conditionally. The returned future completes with
+   * null if web-scraping isn't permitted or the crawl delay is too long.
+   */
+  private CompletableFuture<FetchedPage> politelyFetchAsync(Grant grant, URL robotsUrl,
       NewsArticle newsArticle) {
+    long delay = 0;
+    // Check permission to access and respect the required crawl delay.
+    if (grant != null) {
+      if (!grant.hasAccess()) {
+        return CompletableFuture.completedFuture(null);
+      }
+      delay = reserveCrawlDelay(grant, robotsUrl.toString());
+      if (delay < 0) {
+        return CompletableFuture.completedFuture(null);
+      }
+    }
+    URL url;
     try {
-      // Check permission to access and respect the required crawl delay.
-      if (grant == null
-          || (grant.hasAccess()
-              && waitForAndSetCrawlDelay(grant, robotsUrl.toString()))) {
-        InputStream webpageStream = setTimeoutAndOpenStream(new URL(newsArticle.getUrl()));
-        newsContentExtractor.extractContentFromHtml(webpageStream, newsArticle);
-        webpageStream.close();
-      } else {
-        newsArticle.setTitle("");
-        newsArticle.setContent("");
-        return;
+      url = new URL(newsArticle.getUrl());
+    } catch (MalformedURLException e) {
+      CompletableFuture<FetchedPage> failedFetch = new CompletableFuture<>();
+      failedFetch.completeExceptionally(e);
+      return failedFetch;
+    }
+    if (delay == 0) {
+      return pageFetcher.fetchAsync(
+          url, newsArticle.getEtag(), newsArticle.getHttpLastModified());
+    }
+    CompletableFuture<FetchedPage> delayedFetch = new CompletableFuture<>();
+    crawlDelayScheduler.schedule(
+        () -> pageFetcher.fetchAsync(url, newsArticle.getEtag(), newsArticle.getHttpLastModified())
+                  .whenComplete((webpage, error) -> {
+                    if (error != null) {
+                      delayedFetch.completeExceptionally(error);
+                    } else {
+                      delayedFetch.complete(webpage);
+                    }
+                  }),
+        delay, TimeUnit.MILLISECONDS);
+    return delayedFetch;
+  }
+
+  /**
+   * Extracts textual content from {@code webpage} to put into {@code newsArticle}, along with the
+   * HTTP validators of {@code webpage}. Sets "content" to empty if {@code webpage} is null, which
+   * means web-scraping isn't permitted, or in the event of an exception, including {@code error}
+   * from fetching. Returns true if the webpage hasn't been modified since the previous crawl, whose
+   * content in {@code newsArticle} is then kept as is. A "not modified" response is only trusted
+   * if {@code newsArticle} carries the validators and content restored from the previous crawl,
+   * and is treated as a failed fetch otherwise.
+   */
+  private boolean extractFromFetchedPage(NewsArticle newsArticle, FetchedPage webpage,
+      Throwable error) {
+    if (error != null) {
+      Throwable cause = (error instanceof CompletionException) ? error.getCause() : error;
+      System.out.println("[ERROR] Error occured in scrapeAndExtractHtml(): " + cause);
+      newsArticle.setTitle("");
+      newsArticle.setContent("");
+      return false;
+    }
+    if (webpage == null) {
+      newsArticle.setTitle("");
+      newsArticle.setContent("");
+      return false;
+    }
+    if (webpage.isNotModified()) {
+      if (hasRestoredCrawl(newsArticle)) {
+        return true;
       }
+      System.out.println(
+          "[ERROR] Webpage not modified, but there is no previous crawl to reuse: "
+              + newsArticle.getUrl());
+      newsArticle.setTitle("");
+      newsArticle.setContent("");
+      return false;
+    }
+    try {
+      newsArticle.setEtag(webpage.getEtag());
+      newsArticle.setHttpLastModified(webpage.getLastModified());
+      newsContentExtractor.extractContentFromPage(webpage, newsArticle);
     } catch (Exception e) {
       System.out.println("[ERROR] Error occured in politelyScrapeAndExtractHtml(): " + e);
       newsArticle.setTitle("");
       newsArticle.setContent("");
     }
+    return false;
   }
 
   /**
-   * Opens a readable {@code InputStream} from {@code url}, while setting a connect and read
-   * timeout so that opening stream wouldn't hang. Timeout will trigger exceptions.
+   * Returns true if {@code newsArticle} carries HTTP validators and content restored from the
+   * previous crawl of its webpage, as put there by {@code restorePreviousCrawl}.
    */
-  private InputStream setTimeoutAndOpenStream(URL url) throws IOException {
-    URLConnection connection = url.openConnection();
-    connection.setConnectTimeout(URL_CONNECT_TIMEOUT_MILLISECONDS);
-    connection.setReadTimeout(URL_READ_TIMEOUT_MILLISECONDS);
-    return connection.getInputStream();
+  private static boolean hasRestoredCrawl(NewsArticle newsArticle) {
+    boolean hasValidators =
+        (newsArticle.getEtag() != null && !newsArticle.getEtag().isEmpty())
+            || (newsArticle.getHttpLastModified() != null
+                && !newsArticle.getHttpLastModified().isEmpty());
+    return hasValidators && newsArticle.getContent() != null;
   }
 
   /**
-   * Waits for the required crawl delay to pass if necessary and makes a note of the required crawl
-   * delay. Returns true if the aforementioned process succeeded. {@code grant} is expected to be
-   * non-null. This method is made default for testing purposes.
+   * Makes a note of the required crawl delay and reserves the next allowed time to access the
+   * website of {@code url}, which is the website's robots.txt URL. Returns the number of
+   * milliseconds to wait until then, or -1 if that would exceed {@code MAX_CRAWL_DELAY}. {@code
+   * grant} is expected to be non-null.
    */
-  boolean waitForAndSetCrawlDelay(Grant grant, String url) {
+  private synchronized long reserveCrawlDelay(Grant grant, String url) {
     if (grant.getCrawlDelay() == null) {
-      return true;
-    }
-    if (nextAccessTimes.containsKey(url)) {
-      if (!waitIfNecessary(url)) {
-        return false;
-      }
-      nextAccessTimes.replace(url, System.currentTimeMillis() + grant.getCrawlDelay() * 1000);
-    } else {
-      nextAccessTimes.put(url, System.currentTimeMillis() + grant.getCrawlDelay() * 1000);
+      return 0;
     }
-    return true;
-  }
-
-  /**
-   * Waits for {@code timeToDelay} milliseconds if necessary and returns true if the pause
-   * succeeded or if the pause was unnecessary. Waits for a maximum of {@code MAX_CRAWL_DELAY}
-   * milliseconds.
-   */
-  private boolean waitIfNecessary(String url) {
-    if (System.currentTimeMillis() < nextAccessTimes.get(url)) {
-      try {
-        long sleepDuration = nextAccessTimes.get(url) - System.currentTimeMillis();
-        if (sleepDuration > MAX_CRAWL_DELAY) {
-          return false;
-        }
-        TimeUnit.MILLISECONDS.sleep(sleepDuration);
-      } catch (InterruptedException e) {
-        return false;
-      }
+    long now = System.currentTimeMillis();
+    long accessTime = Math.max(now, nextAccessTimes.getOrDefault(url, now));
+    if (accessTime - now > MAX_CRAWL_DELAY) {
+      return -1;
     }
-    return true;
+    nextAccessTimes.put(url, accessTime + grant.getCrawlDelay() * 1000);
+    return accessTime - now;
   }
 
   /**
    * Stores {@code NewsArticle}'s metadata and content into the database, following a predesigned
-   * database schema. Requires "gcloud config set project project-ID" to be set correctly. {@code
-   * content} and {@code abbreviatedContent} are excluded form database indexes, which are
-   * additional data structures built to enable efficient lookup on non-keyed properties. Because
-   * we will not query {@code NewsArticle} Datastore entities via {@code content} or
-   * {@code abbreviatedContent}, we will not use indexes regardless. Set the last modified time
-   * for deletion purposes.
+   * database schema. Requires "gcloud config set project project-ID" to be set correctly. The full
+   * {@code content} is stored separately, in a {@code NewsArticleContent} entity with the same ID,
+   * so that the candidate page can load news articles without their full content, and fetch it
+   * only when it is shown. {@code content} and {@code abbreviatedContent} are excluded from
+   * database indexes, which are additional data structures built to enable efficient lookup on
+   * non-keyed properties. Because we will not query {@code NewsArticle} Datastore entities via
+   * {@code content} or {@code abbreviatedContent}, we will not use indexes regardless. The same
+   * goes for the HTTP validators {@code etag} and {@code httpLastModified}, which are kept for
+   * conditionally re-fetching the webpage. Set the last modified time for deletion purposes.
    */
   public void storeInDatabase(String candidateId, NewsArticle newsArticle) {
-    Key newsArticleKey =
-        datastore
-            .newKeyFactory()
-            .setKind("NewsArticle")
-            .newKey((long) newsArticle.getUrl().hashCode());
+    Key newsArticleKey = buildNewsArticleKey(newsArticle);
     Entity newsArticleEntity =
         Entity.newBuilder(newsArticleKey)
             .set("candidateId", datastore.newKeyFactory()
@@ -371,7 +927,6 @@ public class WebCrawler {
                                     .newKey(Long.parseLong(candidateId)))
             .set("title", newsArticle.getTitle())
             .set("url", newsArticle.getUrl())
-            .set("content", excludeStringFromIndexes(newsArticle.getContent()))
             .set(
                 "abbreviatedContent", excludeStringFromIndexes(newsArticle.getAbbreviatedContent()))
             .set("summarizedContent", excludeStringFromIndexes(newsArticle.getSummarizedContent()))
@@ -380,9 +935,36 @@ public class WebCrawler {
                                       Timestamp.of(
                                           newsArticle.getPublishedDate())).build())
             .set("priority", newsArticle.getPriority())
+            .set("etag", excludeStringFromIndexes(newsArticle.getEtag()))
+            .set("httpLastModified", excludeStringFromIndexes(newsArticle.getHttpLastModified()))
+            .set("lastModified", Timestamp.now())
+            .build();
+    Entity newsArticleContentEntity =
+        Entity.newBuilder(buildNewsArticleContentKey(newsArticle))
+            .set("content", excludeStringFromIndexes(newsArticle.getContent()))
             .set("lastModified", Timestamp.now())
             .build();
-    datastore.put(newsArticleEntity);
+    datastore.put(newsArticleEntity, newsArticleContentEntity);
+    isNewsArticlesModified.set(true);
+  }
+
+  /** Builds the database key of {@code newsArticle}, which is derived from its URL. */
+  private Key buildNewsArticleKey(NewsArticle newsArticle) {
+    return datastore
+        .newKeyFactory()
+        .setKind("NewsArticle")
+        .newKey((long) newsArticle.getUrl().hashCode());
+  }
+
+  /**
+   * Builds the database key of the full content of {@code newsArticle}, which has the same ID as
+   * the news article.
+   */
+  private Key buildNewsArticleContentKey(NewsArticle newsArticle) {
+    return datastore
+        .newKeyFactory()
+        .setKind("NewsArticleContent")
+        .newKey((long) newsArticle.getUrl().hashCode());
   }
 
   /**
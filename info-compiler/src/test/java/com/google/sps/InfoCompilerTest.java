@@ -171,6 +171,8 @@ public final class InfoCompilerTest {
     datastoreHelper.start();
     datastore = datastoreHelper.getOptions().getService();
     infoCompiler = new InfoCompiler(datastore);
+    // The election in {@code electionJson} was held on 2013-06-06. Keep it within the horizon.
+    InfoCompiler.ELECTION_HORIZON_DAYS = 365 * 100;
   }
 
   /**
@@ -303,6 +305,30 @@ public final class InfoCompilerTest {
         .isTrue();
   }
 
+  @Test
+  public void storeBaseElectionInDatabase_skipElectionBeyondHorizon() throws IOException {
+    // Parse base election information from {@code electionJson}'s "elections" section, whose
+    // election was held on 2013-06-06, with a horizon that excludes past elections. No entity
+    // should be stored, and the election shouldn't be queried for contests.
+    JsonObject election =
+        ((JsonObject) electionJson.getAsJsonArray("elections").get(0)).deepCopy();
+    election.addProperty("ocdDivisionId", DIVISION + "/state:" + STATE.toLowerCase());
+    long horizonDays = InfoCompiler.ELECTION_HORIZON_DAYS;
+    InfoCompiler.ELECTION_HORIZON_DAYS = 0;
+    try {
+      infoCompiler.electionQueryIds = new ArrayList<>();
+      infoCompiler.storeBaseElectionInDatabase(election);
+    } finally {
+      InfoCompiler.ELECTION_HORIZON_DAYS = horizonDays;
+    }
+    Query<Entity> query =
+        Query.newEntityQueryBuilder()
+            .setKind("Election")
+            .build();
+    assertThat(datastore.run(query).hasNext()).isFalse();
+    assertThat(infoCompiler.electionQueryIds).isEmpty();
+  }
+
   @Test
   public void capitalizeFirstLetterOfEachWord_checkDifferentNames()
       throws IOException {
@@ -563,6 +589,25 @@ public final class InfoCompilerTest {
     assertThat(queryResult.hasNext()).isFalse();
   }
 
+  @Test
+  public void compileInfo_keepDatasetGenerationIfNothingChanged() throws IOException {
+    // Execute the entire information compilation process when no elections are found and no
+    // information is outdated. Nothing is stored or deleted, so the dataset generation shouldn't
+    // be bumped, and the web app's caches stay valid.
+    InfoCompiler infoCompilerSpy = spy(new InfoCompiler(this.datastore));
+    infoCompilerSpy.addresses = Arrays.asList(ADDRESS);
+    infoCompilerSpy.webCrawler = mock(WebCrawler.class);
+    JsonObject noElectionsJson = new JsonObject();
+    noElectionsJson.add("elections", new JsonArray());
+    doReturn(noElectionsJson).when(infoCompilerSpy).queryCivicInformation(eq(ELECTION_QUERY_URL));
+
+    infoCompilerSpy.compileInfo();
+
+    Key generationKey =
+        datastore.newKeyFactory().setKind("DatasetGeneration").newKey("current");
+    assertThat(datastore.get(generationKey)).isNull();
+  }
+
   @Test
   public void compileInfo_infoExpires()
       throws IOException {
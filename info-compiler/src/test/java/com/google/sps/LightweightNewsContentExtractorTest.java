@@ -0,0 +1,202 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.webcrawler;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.Mockito.*;
+
+import com.google.sps.data.NewsArticle;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * A tester for news article content extraction with the lightweight extractor, which should
+ * extract the same content as the Tika-based extractor.
+ */
+@RunWith(JUnit4.class)
+public final class LightweightNewsContentExtractorTest {
+  private static final String URL =
+    "https://www.cnn.com/2020/06/23/politics/aoc-ny-primary-14th-district/index.html";
+  private static final String TITLE = "News Article Title";
+  private static final String ARTICLE_SENTENCE =
+      "The candidate spoke about the new infrastructure plan at the town hall meeting on Monday. ";
+  private static final String ACCENTED_SENTENCE =
+      "The café on Señora Street hosted the debate about the municipal budget for next year. ";
+  private static final String SCRIPT_TEXT = "trackVisitor";
+  private static final int ARTICLE_SENTENCE_COUNT = 12;
+  private static final int PRIORITY = 1;
+
+  private LightweightNewsContentExtractor lightweightNewsContentExtractor =
+      new LightweightNewsContentExtractor();
+
+  @Test
+  public void extractContentFromHtml_matchesTikaExtraction() {
+    // Extract content from the same webpage with both extractors. The title and content should be
+    // the same.
+    String webpage =
+        buildWebpage("<meta charset=\"utf-8\">",
+                     "<nav><a href=\"/\">Home</a> <a href=\"/politics\">Politics</a></nav>",
+                     ARTICLE_SENTENCE);
+    NewsArticle tikaNewsArticle = new NewsArticle(URL, null, null, PRIORITY);
+    new TikaNewsContentExtractor().extractContentFromHtml(
+        toStream(webpage, StandardCharsets.UTF_8), tikaNewsArticle);
+    NewsArticle newsArticle = new NewsArticle(URL, null, null, PRIORITY);
+    lightweightNewsContentExtractor.extractContentFromHtml(
+        toStream(webpage, StandardCharsets.UTF_8), newsArticle);
+    assertThat(newsArticle.getTitle()).isEqualTo(TITLE);
+    assertThat(newsArticle.getTitle()).isEqualTo(tikaNewsArticle.getTitle());
+    assertThat(newsArticle.getContent()).contains(ARTICLE_SENTENCE.trim());
+    assertThat(newsArticle.getContent()).isEqualTo(tikaNewsArticle.getContent());
+  }
+
+  @Test
+  public void extractContentFromHtml_metaCharsetIsRespected() {
+    // Extract content from a webpage encoded in ISO-8859-1, as declared in a meta tag. Accented
+    // characters should be decoded correctly.
+    String webpage =
+        buildWebpage("<meta http-equiv=\"Content-Type\" content=\"text/html; charset=ISO-8859-1\">",
+                     "", ACCENTED_SENTENCE);
+    NewsArticle newsArticle = new NewsArticle(URL, null, null, PRIORITY);
+    lightweightNewsContentExtractor.extractContentFromHtml(
+        toStream(webpage, StandardCharsets.ISO_8859_1), newsArticle);
+    assertThat(newsArticle.getContent()).contains(ACCENTED_SENTENCE.trim());
+  }
+
+  @Test
+  public void extractContentFromHtml_scriptsSkippedAndEntitiesDecoded() {
+    // Extract content from a webpage with an inline script and character references. The script
+    // should be skipped and the references decoded.
+    String webpage =
+        buildWebpage("<script>var tag = '<p>' + trackVisitor();</script>", "",
+                     "The mayor&#39;s plan &amp; the council&rsquo;s vote were discussed at "
+                         + "length during the town hall meeting on Monday. ");
+    NewsArticle newsArticle = new NewsArticle(URL, null, null, PRIORITY);
+    lightweightNewsContentExtractor.extractContentFromHtml(
+        toStream(webpage, StandardCharsets.UTF_8), newsArticle);
+    assertThat(newsArticle.getContent()).contains("The mayor's plan & the council’s vote");
+    assertThat(newsArticle.getContent()).doesNotContain(SCRIPT_TEXT);
+  }
+
+  @Test
+  public void extractContentFromPage_fetchedCharsetIsUsed() {
+    // Extract content from a fetched page encoded in ISO-8859-1, as detected from its headers
+    // rather than its markup. Accented characters should be decoded correctly.
+    byte[] body =
+        buildWebpage("", "", ACCENTED_SENTENCE).getBytes(StandardCharsets.ISO_8859_1);
+    FetchedPage webpage =
+        new FetchedPage(200, body, false, "text/html; charset=ISO-8859-1", null, null);
+    NewsArticle newsArticle = new NewsArticle(URL, null, null, PRIORITY);
+    lightweightNewsContentExtractor.extractContentFromPage(webpage, newsArticle);
+    assertThat(newsArticle.getTitle()).isEqualTo(TITLE);
+    assertThat(newsArticle.getContent()).contains(ACCENTED_SENTENCE.trim());
+  }
+
+  @Test
+  public void extractContentFromHtml_IOExceptionStream() throws IOException {
+    // The webpage stream throws {@code IOException} when being read. This exception should be
+    // caught and an empty content should be set.
+    InputStream webpageStream = mock(InputStream.class);
+    when(webpageStream.read(anyObject(), anyInt(), anyInt())).thenThrow(new IOException());
+    NewsArticle newsArticle = new NewsArticle(URL, null, null, PRIORITY);
+    lightweightNewsContentExtractor.extractContentFromHtml(webpageStream, newsArticle);
+    assertThat(newsArticle.getContent()).isEmpty();
+  }
+
+  @Test
+  public void extractContentFromHtml_NullWebpageStream() {
+    // The webpage stream is null. An empty content should be set.
+    NewsArticle newsArticle = new NewsArticle(URL, null, null, PRIORITY);
+    lightweightNewsContentExtractor.extractContentFromHtml(null, newsArticle);
+    assertThat(newsArticle.getContent()).isEmpty();
+  }
+
+  @Test
+  public void extractContentFromHtml_largeWebpageFollowedBySmallWebpage() {
+    // Extract content from a webpage larger than the initial read buffer, and then from a small
+    // webpage with the same extractor, which reuses the grown buffer. Nothing of the large
+    // webpage should be left over in the content of the small webpage.
+    StringBuilder longTrailer = new StringBuilder("<footer>");
+    for (int i = 0; i < 500; i++) {
+      longTrailer.append("Footer link ").append(i).append(' ');
+    }
+    longTrailer.append("</footer>");
+    String largeWebpage =
+        buildWebpage("<meta charset=\"utf-8\">", "", ARTICLE_SENTENCE)
+            .replace("</body>", longTrailer + "</body>");
+    assertThat(largeWebpage.length()).isGreaterThan(8192);
+    NewsArticle largeNewsArticle = new NewsArticle(URL, null, null, PRIORITY);
+    lightweightNewsContentExtractor.extractContentFromHtml(
+        toStream(largeWebpage, StandardCharsets.UTF_8), largeNewsArticle);
+    assertThat(largeNewsArticle.getContent()).contains(ARTICLE_SENTENCE.trim());
+    NewsArticle smallNewsArticle = new NewsArticle(URL, null, null, PRIORITY);
+    lightweightNewsContentExtractor.extractContentFromHtml(
+        toStream(buildWebpage("<meta charset=\"utf-8\">", "", ACCENTED_SENTENCE),
+                 StandardCharsets.UTF_8),
+        smallNewsArticle);
+    assertThat(smallNewsArticle.getContent()).contains(ACCENTED_SENTENCE.trim());
+    assertThat(smallNewsArticle.getContent()).doesNotContain(ARTICLE_SENTENCE.trim());
+  }
+
+  @Test
+  public void read_growBufferUpToMaxLength() throws IOException {
+    // Read a stream in small chunks, longer than the maximum length. Exactly the maximum length
+    // should be read, into a buffer that is grown past its initial size.
+    byte[] bytes = new byte[20000];
+    for (int i = 0; i < bytes.length; i++) {
+      bytes[i] = (byte) i;
+    }
+    InputStream chunkedStream =
+        new ByteArrayInputStream(bytes) {
+          @Override
+          public synchronized int read(byte[] buffer, int offset, int length) {
+            return super.read(buffer, offset, Math.min(length, 1000));
+          }
+        };
+    PageDecoder pageDecoder = new PageDecoder();
+    int maxLength = 15000;
+    assertThat(pageDecoder.read(chunkedStream, maxLength)).isEqualTo(maxLength);
+    for (int i = 0; i < maxLength; i++) {
+      assertThat(pageDecoder.getReadBytes()[i]).isEqualTo(bytes[i]);
+    }
+    assertThat(pageDecoder.read(new ByteArrayInputStream(bytes, 0, 10), maxLength)).isEqualTo(10);
+  }
+
+  /**
+   * Builds a webpage with {@code head} in its head, followed in its body by {@code header} and an
+   * {@code <article>} element of {@code ARTICLE_SENTENCE_COUNT} paragraphs of {@code sentence}.
+   * End tags of paragraphs are omitted, as is common in the wild.
+   */
+  private String buildWebpage(String head, String header, String sentence) {
+    StringBuilder webpage = new StringBuilder("<!DOCTYPE html>\n<!-- Served by the CMS -->\n");
+    webpage.append(String.format("<html><head>%s<title>%s</title></head><body>", head, TITLE));
+    webpage.append(header);
+    webpage.append("<article><h1>").append(TITLE).append("</h1>");
+    for (int i = 0; i < ARTICLE_SENTENCE_COUNT; i++) {
+      webpage.append("<p>").append(sentence);
+    }
+    webpage.append("</article></body></html>");
+    return webpage.toString();
+  }
+
+  private InputStream toStream(String webpage, Charset charset) {
+    return new ByteArrayInputStream(webpage.getBytes(charset));
+  }
+}
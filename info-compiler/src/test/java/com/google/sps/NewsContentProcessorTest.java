@@ -19,6 +19,9 @@ import static com.google.common.truth.Truth8.assertThat;
 import static org.mockito.Mockito.*;
 
 import com.google.sps.data.NewsArticle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -115,6 +118,27 @@ public final class NewsContentProcessorTest {
     assertThat(newsArticle).isEqualTo(expectedArticle);
   }
 
+  @Test
+  public void abbreviate_irregularSpacing() {
+    // Process content with consecutive, leading and trailing spaces. The abbreviated content
+    // should match splitting the content on spaces and joining the first {@code MAX_WORD_COUNT}
+    // elements.
+    String[] contents = {
+      " " + LONG_CONTENT, LONG_CONTENT.replace(" ", "  "), MAX_CONTENT + "   ", "   ", " "
+    };
+    for (String content : contents) {
+      NewsArticle newsArticle = new NewsArticle(URL, null, null, PRIORITY);
+      newsArticle.setContent(content);
+      NewsContentProcessor.abbreviate(newsArticle);
+      String[] splitContent = content.split(" ");
+      String expectedContent =
+          String.join(" ", Arrays.asList(splitContent)
+                               .subList(0, Math.min(splitContent.length,
+                                                    NewsContentProcessor.MAX_WORD_COUNT)));
+      assertThat(newsArticle.getAbbreviatedContent()).isEqualTo(expectedContent);
+    }
+  }
+
   @Test
   public void summarize_regularContent() throws Exception {
     // Summarize {@code REGULAR_CONTENT} and extract content as {@code SUMMARIZED_CONTENT}.
@@ -127,6 +151,51 @@ public final class NewsContentProcessorTest {
     assertThat(newsArticle).isEqualTo(expectedArticle);
   }
 
+  @Test
+  public void summarizeAll_emptyContents() {
+    // Summarize several news articles with {@code EMPTY_CONTENT} together and extract content as
+    // {@code EMPTY_CONTENT} for each of them. The other data remain the same.
+    List<NewsArticle> newsArticles = new ArrayList<>();
+    List<NewsArticle> expectedArticles = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      NewsArticle newsArticle = new NewsArticle(URL + "?page=" + i, null, null, PRIORITY);
+      newsArticle.setContent(EMPTY_CONTENT);
+      NewsArticle expectedArticle = new NewsArticle(newsArticle);
+      expectedArticle.setSummarizedContent(EMPTY_CONTENT);
+      newsArticles.add(newsArticle);
+      expectedArticles.add(expectedArticle);
+    }
+    NewsContentProcessor.summarizeAll(newsArticles, 1);
+    assertThat(newsArticles).isEqualTo(expectedArticles);
+  }
+
+  @Test
+  public void summarizeAll_matchesSummarizingEachArticle() {
+    // Summarize news articles with {@code REGULAR_CONTENT}, {@code EMPTY_CONTENT} and content
+    // too short to rank together, in a single PageRank job over the disjoint union of their
+    // similarity graphs. Each news article should get the same summary as if it were summarized
+    // alone, and the regular content should get {@code SUMMARIZED_CONTENT}, which also ensures
+    // that the models were loaded rather than every summary being left empty.
+    String[] contents = {
+      REGULAR_CONTENT, EMPTY_CONTENT, "A short news article. It has two sentences.",
+      REGULAR_CONTENT
+    };
+    List<NewsArticle> newsArticles = new ArrayList<>();
+    List<NewsArticle> expectedArticles = new ArrayList<>();
+    for (int i = 0; i < contents.length; i++) {
+      NewsArticle newsArticle = new NewsArticle(URL + "?page=" + i, null, null, PRIORITY);
+      newsArticle.setContent(contents[i]);
+      NewsArticle expectedArticle = new NewsArticle(newsArticle);
+      NewsContentProcessor.summarize(expectedArticle);
+      newsArticles.add(newsArticle);
+      expectedArticles.add(expectedArticle);
+    }
+    NewsContentProcessor.summarizeAll(newsArticles, 2);
+    assertThat(newsArticles).isEqualTo(expectedArticles);
+    assertThat(newsArticles.get(0).getSummarizedContent()).isEqualTo(SUMMARIZED_CONTENT);
+    assertThat(newsArticles.get(3).getSummarizedContent()).isEqualTo(SUMMARIZED_CONTENT);
+  }
+
   @Test
   public void summarize_emptyContent() throws Exception {
     // Summarize {@code EMPTY_CONTENT} and extract content as {@code EMPTY_CONTENT}.
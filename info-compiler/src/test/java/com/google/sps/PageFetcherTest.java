@@ -0,0 +1,270 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.webcrawler;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPOutputStream;
+import org.apache.http.client.ClientProtocolException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * A tester for fetching webpages, against an HTTP server running locally.
+ */
+@RunWith(JUnit4.class)
+public final class PageFetcherTest {
+  private static final String CONTENT = "<html><body><p>News article content.</p></body></html>";
+  private static final String ETAG = "\"version-1\"";
+  private static final int MAX_BODY_BYTES = 16;
+  private static final int REQUEST_COUNT = 5;
+  private static final String ACCENTED_CONTENT = "<html><body><p>Café Señora</p></body></html>";
+  private static final long SLOW_RESPONSE_MILLISECONDS = 250;
+
+  private HttpServer server;
+  // Serves as many requests at once as {@code PageFetcher} opens connections to one host.
+  private ExecutorService serverExecutor =
+      Executors.newFixedThreadPool(PageFetcher.MAX_CONNECTIONS_PER_HOST);
+  private String baseUrl;
+  private PageFetcher pageFetcher;
+  // Remote ports of the connections that requests arrived on.
+  private Set<Integer> connectionPorts = ConcurrentHashMap.newKeySet();
+
+  @Before
+  public void startServer() throws IOException {
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext("/plain", exchange -> respond(exchange, 200, CONTENT.getBytes()));
+    server.createContext("/gzip", exchange -> {
+      ByteArrayOutputStream compressedContent = new ByteArrayOutputStream();
+      try (GZIPOutputStream gzipStream = new GZIPOutputStream(compressedContent)) {
+        gzipStream.write(CONTENT.getBytes(StandardCharsets.UTF_8));
+      }
+      exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+      respond(exchange, 200, compressedContent.toByteArray());
+    });
+    server.createContext("/conditional", exchange -> {
+      if (ETAG.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+        exchange.sendResponseHeaders(304, -1);
+        exchange.close();
+      } else {
+        exchange.getResponseHeaders().set("ETag", ETAG);
+        respond(exchange, 200, CONTENT.getBytes());
+      }
+    });
+    server.createContext("/latin1", exchange -> {
+      exchange.getResponseHeaders().set("Content-Type", "text/html; charset=ISO-8859-1");
+      respond(exchange, 200, ACCENTED_CONTENT.getBytes(StandardCharsets.ISO_8859_1));
+    });
+    server.createContext("/large", exchange -> respond(exchange, 200, buildLargeContent()));
+    server.createContext("/large-gzip", exchange -> {
+      ByteArrayOutputStream compressedContent = new ByteArrayOutputStream();
+      try (GZIPOutputStream gzipStream = new GZIPOutputStream(compressedContent)) {
+        gzipStream.write(buildLargeContent());
+      }
+      exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+      respond(exchange, 200, compressedContent.toByteArray());
+    });
+    server.createContext("/loop", exchange -> {
+      exchange.getResponseHeaders().set("Location", baseUrl + "/loop?" + System.nanoTime());
+      respond(exchange, 302, "Moved".getBytes());
+    });
+    server.createContext("/slow", exchange -> {
+      try {
+        Thread.sleep(SLOW_RESPONSE_MILLISECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      respond(exchange, 200, CONTENT.getBytes());
+    });
+    server.setExecutor(serverExecutor);
+    server.start();
+    baseUrl = "http://localhost:" + server.getAddress().getPort();
+    pageFetcher = new PageFetcher(MAX_BODY_BYTES);
+  }
+
+  private void respond(HttpExchange exchange, int status, byte[] body) throws IOException {
+    connectionPorts.add(exchange.getRemoteAddress().getPort());
+    exchange.sendResponseHeaders(status, body.length);
+    try (OutputStream responseBody = exchange.getResponseBody()) {
+      responseBody.write(body);
+    }
+  }
+
+  @Test
+  public void fetch_gzipResponseIsDecoded() throws IOException {
+    // The fetched body of a gzip-compressed response should be the decompressed content.
+    PageFetcher unlimitedPageFetcher = new PageFetcher();
+    FetchedPage page = unlimitedPageFetcher.fetch(new URL(baseUrl + "/gzip"));
+    assertThat(page.getStatusCode()).isEqualTo(200);
+    assertThat(page.isTruncated()).isFalse();
+    assertThat(new String(page.getBody(), StandardCharsets.UTF_8)).isEqualTo(CONTENT);
+    unlimitedPageFetcher.close();
+  }
+
+  @Test
+  public void fetch_largeResponseIsTruncated() throws IOException {
+    // The fetched body should be cut off at {@code MAX_BODY_BYTES}.
+    FetchedPage page = pageFetcher.fetch(new URL(baseUrl + "/plain"));
+    assertThat(page.getStatusCode()).isEqualTo(200);
+    assertThat(page.isTruncated()).isTrue();
+    assertThat(page.getBody())
+        .isEqualTo(Arrays.copyOf(CONTENT.getBytes(StandardCharsets.UTF_8), MAX_BODY_BYTES));
+  }
+
+  @Test
+  public void fetchAsync_concurrentFetchesAllComplete() throws Exception {
+    // Fetches issued at once should all complete with the full content.
+    PageFetcher unlimitedPageFetcher = new PageFetcher();
+    List<CompletableFuture<FetchedPage>> pages = new ArrayList<>(REQUEST_COUNT);
+    for (int i = 0; i < REQUEST_COUNT; i++) {
+      pages.add(unlimitedPageFetcher.fetchAsync(new URL(baseUrl + "/plain")));
+    }
+    for (CompletableFuture<FetchedPage> page : pages) {
+      assertThat(new String(page.get().getBody(), StandardCharsets.UTF_8)).isEqualTo(CONTENT);
+    }
+    unlimitedPageFetcher.close();
+  }
+
+  @Test
+  public void fetchAsync_latencyExcludesWaitForPooledConnection() throws Exception {
+    // Fetches beyond the connection limit per host wait for a pooled connection, which shouldn't
+    // count towards the response latency of the host. The adapted timeout should then stay close
+    // to four times the response time of the server, well below what waiting fetches would add.
+    PageFetcher unlimitedPageFetcher = new PageFetcher();
+    List<CompletableFuture<FetchedPage>> pages = new ArrayList<>();
+    for (int i = 0; i < PageFetcher.MAX_CONNECTIONS_PER_HOST * 4; i++) {
+      pages.add(unlimitedPageFetcher.fetchAsync(new URL(baseUrl + "/slow")));
+    }
+    for (CompletableFuture<FetchedPage> page : pages) {
+      assertThat(page.get().getStatusCode()).isEqualTo(200);
+    }
+    assertThat(unlimitedPageFetcher.getTimeout("localhost"))
+        .isLessThan(2 * PageFetcher.MIN_TIMEOUT_MILLISECONDS);
+    unlimitedPageFetcher.close();
+  }
+
+  @Test
+  public void fetch_conditionalRequestWithMatchingEtag() throws IOException {
+    // The first fetch should record the ETag, and re-fetching with that ETag should be answered
+    // with 304 and no body.
+    FetchedPage page = pageFetcher.fetch(new URL(baseUrl + "/conditional"));
+    assertThat(page.isNotModified()).isFalse();
+    assertThat(page.getEtag()).isEqualTo(ETAG);
+    FetchedPage unmodifiedPage =
+        pageFetcher.fetch(new URL(baseUrl + "/conditional"), page.getEtag(), null);
+    assertThat(unmodifiedPage.isNotModified()).isTrue();
+    assertThat(unmodifiedPage.getBody()).isEmpty();
+  }
+
+  @Test
+  public void fetch_connectionsToTheSameHostAreReused() throws IOException {
+    // Sequential requests to the same host should be served over one kept-alive connection.
+    PageFetcher unlimitedPageFetcher = new PageFetcher();
+    for (int i = 0; i < REQUEST_COUNT; i++) {
+      unlimitedPageFetcher.fetch(new URL(baseUrl + "/plain"));
+    }
+    assertThat(connectionPorts).hasSize(1);
+    unlimitedPageFetcher.close();
+  }
+
+  @Test
+  public void fetch_charsetIsDetectedFromHeader() throws IOException {
+    // The character encoding declared in the "Content-Type" header should be recorded with the
+    // fetched page.
+    PageFetcher unlimitedPageFetcher = new PageFetcher();
+    FetchedPage page = unlimitedPageFetcher.fetch(new URL(baseUrl + "/latin1"));
+    assertThat(page.getCharset()).isEqualTo(StandardCharsets.ISO_8859_1);
+    assertThat(new String(page.getBody(), page.getCharset())).isEqualTo(ACCENTED_CONTENT);
+    unlimitedPageFetcher.close();
+  }
+
+  @Test
+  public void fetch_bodySpanningPooledChunksIsIntact() throws IOException {
+    // A body longer than several pooled chunks should be reassembled intact, also when the chunks
+    // are reused for a second fetch.
+    PageFetcher unlimitedPageFetcher = new PageFetcher();
+    for (int i = 0; i < 2; i++) {
+      FetchedPage page = unlimitedPageFetcher.fetch(new URL(baseUrl + "/large"));
+      assertThat(page.isTruncated()).isFalse();
+      assertThat(page.getBody()).isEqualTo(buildLargeContent());
+    }
+    unlimitedPageFetcher.close();
+  }
+
+  @Test
+  public void fetch_gzipBodySpanningPooledChunksIsIntact() throws IOException {
+    // A gzip-compressed body that decompresses into several pooled chunks should be reassembled
+    // intact, also when the chunks are reused for a second fetch.
+    PageFetcher unlimitedPageFetcher = new PageFetcher();
+    for (int i = 0; i < 2; i++) {
+      FetchedPage page = unlimitedPageFetcher.fetch(new URL(baseUrl + "/large-gzip"));
+      assertThat(page.isTruncated()).isFalse();
+      assertThat(page.getBody()).isEqualTo(buildLargeContent());
+    }
+    unlimitedPageFetcher.close();
+  }
+
+  @Test
+  public void fetch_largeGzipResponseIsTruncated() throws IOException {
+    // The compressed body should be cut off at {@code MAX_BODY_BYTES}, and decompressed up to
+    // the last byte that could be decoded, which is at most {@code MAX_BODY_BYTES} too.
+    FetchedPage page = pageFetcher.fetch(new URL(baseUrl + "/large-gzip"));
+    assertThat(page.isTruncated()).isTrue();
+    assertThat(page.getBody().length).isAtMost(MAX_BODY_BYTES);
+    assertThat(page.getBody())
+        .isEqualTo(Arrays.copyOf(buildLargeContent(), page.getBody().length));
+  }
+
+  /** Builds a body of distinct bytes that spans three and a half pooled chunks. */
+  private static byte[] buildLargeContent() {
+    byte[] content = new byte[PageFetcher.CHUNK_BYTES * 7 / 2];
+    for (int i = 0; i < content.length; i++) {
+      content[i] = (byte) (i % 251);
+    }
+    return content;
+  }
+
+  @Test(expected = ClientProtocolException.class)
+  public void fetch_endlessRedirectsAreCutOff() throws IOException {
+    // Redirecting beyond {@code PageFetcher.MAX_REDIRECTS} times should fail.
+    pageFetcher.fetch(new URL(baseUrl + "/loop"));
+  }
+
+  @After
+  public void stopServer() throws IOException {
+    pageFetcher.close();
+    server.stop(0);
+    serverExecutor.shutdownNow();
+  }
+}
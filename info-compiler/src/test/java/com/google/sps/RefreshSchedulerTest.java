@@ -0,0 +1,82 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.infocompiler;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.Mockito.*;
+
+import com.google.cloud.datastore.Datastore;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * A tester for the refresh intervals and due decisions of the refresh scheduler.
+ */
+@RunWith(JUnit4.class)
+public final class RefreshSchedulerTest {
+  private static final long NOW = 1595413800000L;
+  private static final long DAY = TimeUnit.DAYS.toMillis(1);
+  private static final long MIN_INTERVAL =
+      TimeUnit.SECONDS.toMillis(Config.MIN_REFRESH_INTERVAL_SECONDS);
+  private static final long MAX_INTERVAL =
+      TimeUnit.SECONDS.toMillis(
+          Math.min(Config.MAX_REFRESH_INTERVAL_SECONDS, Config.DATA_EXPIRATION_SECONDS / 2));
+  private static final String ELECTION_NAME = "Election";
+  private static final String CANDIDATE_ID = "1";
+
+  @Test
+  public void getElectionRefreshInterval_closerElectionsAreRefreshedMoreOften() {
+    // An election within a week is refreshed at the minimum interval, and elections further away
+    // are refreshed less often, up to the maximum interval.
+    long nextWeek = RefreshScheduler.getElectionRefreshInterval(NOW + 3 * DAY, NOW);
+    long nextMonth = RefreshScheduler.getElectionRefreshInterval(NOW + 30 * DAY, NOW);
+    long nextYear = RefreshScheduler.getElectionRefreshInterval(NOW + 365 * DAY, NOW);
+    assertThat(nextWeek).isEqualTo(MIN_INTERVAL);
+    assertThat(nextMonth).isGreaterThan(nextWeek);
+    assertThat(nextYear).isAtLeast(nextMonth);
+    assertThat(nextYear).isAtMost(MAX_INTERVAL);
+  }
+
+  @Test
+  public void getElectionRefreshInterval_pastElectionsAreRefreshedLeastOften() {
+    assertThat(RefreshScheduler.getElectionRefreshInterval(NOW - 30 * DAY, NOW))
+        .isEqualTo(MAX_INTERVAL);
+  }
+
+  @Test
+  public void getNewsRefreshInterval_popularCandidatesAreRefreshedMoreOften() {
+    // Candidates without views follow their election, and more views shorten the interval down
+    // to the minimum interval.
+    assertThat(RefreshScheduler.getNewsRefreshInterval(MAX_INTERVAL, 0)).isEqualTo(MAX_INTERVAL);
+    assertThat(RefreshScheduler.getNewsRefreshInterval(MAX_INTERVAL, 1000))
+        .isLessThan(RefreshScheduler.getNewsRefreshInterval(MAX_INTERVAL, 10));
+    assertThat(RefreshScheduler.getNewsRefreshInterval(MAX_INTERVAL, Long.MAX_VALUE))
+        .isAtLeast(Math.min(MIN_INTERVAL, MAX_INTERVAL));
+  }
+
+  @Test
+  public void isElectionDue_onlyOncePerInterval() {
+    // An election is due the first time it is seen, and not again until its interval has passed.
+    RefreshScheduler refreshScheduler = new RefreshScheduler(null, mock(Datastore.class));
+    Date electionDate = new Date(System.currentTimeMillis() + 3 * DAY);
+    assertThat(refreshScheduler.isElectionDue(ELECTION_NAME, electionDate)).isTrue();
+    assertThat(refreshScheduler.isElectionDue(ELECTION_NAME, electionDate)).isFalse();
+    assertThat(refreshScheduler.isCandidateNewsDue(CANDIDATE_ID, ELECTION_NAME)).isTrue();
+    assertThat(refreshScheduler.isCandidateNewsDue(CANDIDATE_ID, ELECTION_NAME)).isFalse();
+  }
+}
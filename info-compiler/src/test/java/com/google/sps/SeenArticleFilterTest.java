@@ -0,0 +1,157 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.webcrawler;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.Mockito.*;
+
+import com.google.cloud.datastore.Datastore;
+import com.google.cloud.datastore.Entity;
+import com.google.cloud.datastore.Key;
+import com.google.cloud.datastore.KeyFactory;
+import com.google.cloud.datastore.Query;
+import com.google.cloud.datastore.QueryResults;
+import com.google.cloud.Timestamp;
+import com.google.sps.data.NewsArticle;
+import com.google.sps.infocompiler.Config;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.ArgumentCaptor;
+
+/**
+ * A tester for the seen article filter's rebuilding, against a mocked database.
+ */
+@RunWith(JUnit4.class)
+public final class SeenArticleFilterTest {
+  private static final String PROJECT_ID = "project";
+  private static final String CANDIDATE_ID = "1";
+  private static final String URL = "https://www.cnn.com/2020/06/23/politics/article-";
+  private static final Date PUBLISHED_DATE = new Date(1595413800000L);
+  private static final int PRIORITY = 1;
+  private static final int ARTICLE_COUNT = 3;
+
+  @Test
+  public void mightContain_rebuildOverfullStoredFilter() {
+    // A stored filter that holds more elements than it was sized for should be rebuilt from the
+    // stored news articles upon loading, forgetting news articles that are no longer stored.
+    List<NewsArticle> clearedNewsArticles = buildNewsArticles("cleared-");
+    Entity filterEntity =
+        Entity.newBuilder(storeFilter(clearedNewsArticles))
+            .set("expectedInsertions", ARTICLE_COUNT - 1)
+            .build();
+    NewsArticle storedNewsArticle =
+        new NewsArticle(URL + "stored", null, PUBLISHED_DATE, PRIORITY);
+    Datastore datastore =
+        mockDatastore(filterEntity, Arrays.asList(buildNewsArticleEntity(storedNewsArticle)));
+    SeenArticleFilter seenArticleFilter = new SeenArticleFilter(datastore);
+    assertThat(seenArticleFilter.mightContain(CANDIDATE_ID, storedNewsArticle)).isTrue();
+    for (NewsArticle newsArticle : clearedNewsArticles) {
+      assertThat(seenArticleFilter.mightContain(CANDIDATE_ID, newsArticle)).isFalse();
+    }
+  }
+
+  @Test
+  public void persist_rebuildFilterOnceOverfull() {
+    // A filter that outgrows its expected insertions during a run should be rebuilt from the
+    // stored news articles, and sized anew, before being stored.
+    Entity filterEntity =
+        Entity.newBuilder(storeFilter(Collections.emptyList()))
+            .set("expectedInsertions", ARTICLE_COUNT - 1)
+            .build();
+    List<NewsArticle> newsArticles = buildNewsArticles("compiled-");
+    List<Entity> newsArticleEntities = new ArrayList<>(ARTICLE_COUNT);
+    for (NewsArticle newsArticle : newsArticles) {
+      newsArticleEntities.add(buildNewsArticleEntity(newsArticle));
+    }
+    Datastore datastore = mockDatastore(filterEntity, newsArticleEntities);
+    SeenArticleFilter seenArticleFilter = new SeenArticleFilter(datastore);
+    for (NewsArticle newsArticle : newsArticles) {
+      seenArticleFilter.put(CANDIDATE_ID, newsArticle);
+    }
+    seenArticleFilter.persist();
+    ArgumentCaptor<Entity> persistedEntity = ArgumentCaptor.forClass(Entity.class);
+    verify(datastore).put(persistedEntity.capture());
+    assertThat(persistedEntity.getValue().getLong("expectedInsertions"))
+        .isEqualTo(Config.SEEN_ARTICLE_FILTER_EXPECTED_INSERTIONS);
+    verify(datastore).run(any(Query.class));
+    for (NewsArticle newsArticle : newsArticles) {
+      assertThat(seenArticleFilter.mightContain(CANDIDATE_ID, newsArticle)).isTrue();
+    }
+  }
+
+  /**
+   * Builds a filter that holds {@code newsArticles}, and returns the entity it would be stored as.
+   */
+  private static Entity storeFilter(List<NewsArticle> newsArticles) {
+    Datastore datastore = mockDatastore(null, Collections.emptyList());
+    SeenArticleFilter seenArticleFilter = new SeenArticleFilter(datastore);
+    // Loads the filter, so that it is persisted even if {@code newsArticles} is empty.
+    seenArticleFilter.mightContain(CANDIDATE_ID, new NewsArticle(URL, null, null, PRIORITY));
+    for (NewsArticle newsArticle : newsArticles) {
+      seenArticleFilter.put(CANDIDATE_ID, newsArticle);
+    }
+    seenArticleFilter.persist();
+    ArgumentCaptor<Entity> filterEntity = ArgumentCaptor.forClass(Entity.class);
+    verify(datastore).put(filterEntity.capture());
+    return filterEntity.getValue();
+  }
+
+  /**
+   * Mocks a database that holds {@code filterEntity}, if it is non-null, and {@code
+   * newsArticleEntities}.
+   */
+  private static Datastore mockDatastore(Entity filterEntity, List<Entity> newsArticleEntities) {
+    Datastore datastore = mock(Datastore.class);
+    when(datastore.newKeyFactory()).thenAnswer(invocation -> new KeyFactory(PROJECT_ID));
+    when(datastore.get(any(Key.class))).thenReturn(filterEntity);
+    doAnswer(invocation -> toQueryResults(newsArticleEntities))
+        .when(datastore).run(any(Query.class));
+    return datastore;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static QueryResults<Entity> toQueryResults(List<Entity> entities) {
+    Iterator<Entity> iterator = entities.iterator();
+    QueryResults<Entity> queryResults = mock(QueryResults.class);
+    when(queryResults.hasNext()).thenAnswer(invocation -> iterator.hasNext());
+    when(queryResults.next()).thenAnswer(invocation -> iterator.next());
+    return queryResults;
+  }
+
+  private static List<NewsArticle> buildNewsArticles(String urlSuffix) {
+    List<NewsArticle> newsArticles = new ArrayList<>(ARTICLE_COUNT);
+    for (int i = 0; i < ARTICLE_COUNT; i++) {
+      newsArticles.add(new NewsArticle(URL + urlSuffix + i, null, PUBLISHED_DATE, PRIORITY));
+    }
+    return newsArticles;
+  }
+
+  private static Entity buildNewsArticleEntity(NewsArticle newsArticle) {
+    Key newsArticleKey = Key.newBuilder(PROJECT_ID, "NewsArticle", newsArticle.getUrl()).build();
+    return Entity.newBuilder(newsArticleKey)
+        .set("candidateId",
+             Key.newBuilder(PROJECT_ID, "Candidate", Long.parseLong(CANDIDATE_ID)).build())
+        .set("url", newsArticle.getUrl())
+        .set("publishedDate", Timestamp.of(newsArticle.getPublishedDate()))
+        .build();
+  }
+}
@@ -0,0 +1,311 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.webcrawler;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth8.assertThat;
+import static org.mockito.Mockito.*;
+
+import com.google.sps.data.NewsArticle;
+import de.l3s.boilerpipe.document.TextBlock;
+import de.l3s.boilerpipe.document.TextDocument;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.IOException;
+import java.io.SequenceInputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import org.apache.tika.exception.TikaException;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.parser.html.BoilerpipeContentHandler;
+import org.apache.tika.parser.html.HtmlParser;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.xml.sax.SAXException;
+
+/**
+ * A tester for news article content extraction.
+ */
+@RunWith(JUnit4.class)
+public final class TikaNewsContentExtractorTest {
+  private static final String URL =
+    "https://www.cnn.com/2020/06/23/politics/aoc-ny-primary-14th-district/index.html";
+  private static final String EMPTY = "";
+  private static final String TITLE = "News Article Title";
+  private static final String CONTENT = "News article content.";
+  private static final TextBlock TEXT_BLOCK = new TextBlock(CONTENT);
+  private static final TextDocument TEXT_DOC_REGULAR =
+      new TextDocument(TITLE, Arrays.asList(TEXT_BLOCK));
+  private static final TextDocument TEXT_DOC_WITHOUT_TITLE =
+      new TextDocument(Arrays.asList(TEXT_BLOCK));
+  private static final int PRIORITY = 1;
+  private static final String ARTICLE_SENTENCE =
+      "The candidate spoke about the new infrastructure plan at the town hall meeting on Monday. ";
+  private static final String NAVIGATION_TEXT = "Navigation menu entry that is not news";
+  private static final String TRAILING_TEXT = "Trailing comment section text. ";
+  private static final int ARTICLE_SENTENCE_COUNT = 12;
+  private static final int TRAILING_TEXT_COUNT = 10000;
+
+  private InputStream webpageStream;
+  private HtmlParser parser;
+  private TikaNewsContentExtractor realNewsContentExtractor = new TikaNewsContentExtractor();
+  private TikaNewsContentExtractor newsContentExtractor;
+  private BoilerpipeContentHandler boilerpipeHandler;
+
+  @Before
+  public void createInputStream() {
+    webpageStream = mock(InputStream.class);
+    parser = mock(HtmlParser.class);
+    newsContentExtractor = new TikaNewsContentExtractor(parser);
+    boilerpipeHandler = mock(BoilerpipeContentHandler.class);
+  }
+
+  @Test
+  public void extractContentFromHtml_regularTextDoc() throws IOException, SAXException,
+      TikaException {
+    // Extract content from a {@code BoilerpipeContentHandler} that returns {@code
+    // TEXT_DOC_REGULAR}. Content processing hasn't occurred so the abbreivated content is null.
+    when(boilerpipeHandler.getTextDocument()).thenReturn(TEXT_DOC_REGULAR);
+    Metadata metadata = new Metadata();
+    NewsArticle newsArticle = new NewsArticle(URL, null, null, PRIORITY);
+    NewsArticle expectedNewsArticle = new NewsArticle(newsArticle);
+    newsContentExtractor.extractContentFromHtml(boilerpipeHandler, metadata, webpageStream,
+                                                newsArticle);
+    expectedNewsArticle.setTitle(TITLE);
+    expectedNewsArticle.setContent(CONTENT);
+    assertThat(newsArticle).isEqualTo(expectedNewsArticle);
+  }
+
+  @Test
+  public void extractContentFromHtml_textDocWithoutTitle() throws IOException, SAXException,
+      TikaException {
+    // Extract content from a {@code BoilerpipeContentHandler} that returns {@code
+    // TEXT_DOC_WITHOUT_TITLE}. Content processing hasn't occurred so the abbreivated content is
+    // null.
+    when(boilerpipeHandler.getTextDocument()).thenReturn(TEXT_DOC_WITHOUT_TITLE);
+    Metadata metadata = new Metadata();
+    NewsArticle newsArticle = new NewsArticle(URL, null, null, PRIORITY);
+    NewsArticle expectedNewsArticle = new NewsArticle(newsArticle);
+    newsContentExtractor.extractContentFromHtml(boilerpipeHandler, metadata, webpageStream,
+                                                newsArticle);
+    expectedNewsArticle.setTitle(EMPTY);
+    expectedNewsArticle.setContent(CONTENT);
+    assertThat(newsArticle).isEqualTo(expectedNewsArticle);
+  }
+
+  @Test
+  public void extractContentFromHtml_emptyDocParser() throws IOException, SAXException,
+      TikaException {
+    // Extract content and meta data using a parser that modifies the content handler to
+    // receive an end-of-document notification via {@code endDocument()}. Therefore, an empty
+    // article will be extracted. Content processing hasn't occurred so the abbreivated content is
+    // null.
+    doAnswer(parseInvocation -> {
+               BoilerpipeContentHandler boilerpipeHandler =
+                   (BoilerpipeContentHandler) parseInvocation.getArguments()[1];
+               boilerpipeHandler.endDocument();
+               return null;
+            }).when(parser).parse(anyObject(), anyObject(), anyObject());
+    NewsArticle newsArticle = new NewsArticle(URL, null, null, PRIORITY);
+    NewsArticle expectedNewsArticle = new NewsArticle(newsArticle);
+    newsContentExtractor.extractContentFromHtml(webpageStream, newsArticle);
+    expectedNewsArticle.setTitle(EMPTY);
+    expectedNewsArticle.setContent(EMPTY);
+    assertThat(newsArticle).isEqualTo(expectedNewsArticle);
+  }
+
+  @Test
+  public void extractContentFromHtml_IOExceptionStream() throws IOException {
+    // The webpage stream throws {@code IOException} when being read. This exception should be
+    // caught and an empty content should be set.
+    when(webpageStream.read(anyObject(), anyInt(), anyInt())).thenThrow(new IOException());
+    NewsArticle newsArticle = new NewsArticle(URL, null, null, PRIORITY);
+    realNewsContentExtractor.extractContentFromHtml(webpageStream, newsArticle);
+    assertThat(newsArticle.getContent()).isEqualTo(EMPTY);
+  }
+
+  @Test
+  public void extractContentFromHtml_NullWebpageStream() {
+    // The webpage stream is null, and it will cause a {@code NullPointerException}. An empty
+    // content should be set.
+    NewsArticle newsArticle = new NewsArticle(URL, null, null, PRIORITY);
+    realNewsContentExtractor.extractContentFromHtml(null, newsArticle);
+    assertThat(newsArticle.getContent()).isEmpty();
+  }
+
+  @Test
+  public void extractContentFromHtml_streamingModeSkipsNavigation() {
+    // Extract content in streaming mode from a webpage with navigation links around the article.
+    // The navigation text should be skipped, while the article content is kept.
+    TikaNewsContentExtractor streamingNewsContentExtractor =
+        new TikaNewsContentExtractor(new HtmlParser(), true);
+    NewsArticle newsArticle = new NewsArticle(URL, null, null, PRIORITY);
+    streamingNewsContentExtractor.extractContentFromHtml(
+        buildWebpageStream(String.format("<nav><ul><li>%s</li></ul></nav>", NAVIGATION_TEXT), ""),
+        newsArticle);
+    assertThat(newsArticle.getTitle()).isEqualTo(TITLE);
+    assertThat(newsArticle.getContent()).contains(ARTICLE_SENTENCE.trim());
+    assertThat(newsArticle.getContent()).doesNotContain(NAVIGATION_TEXT);
+  }
+
+  @Test
+  public void extractContentFromHtml_streamingModeStopsAfterArticle() {
+    // Extract content in streaming mode from a webpage with a long comment section after the
+    // article. Parsing should stop once the article has ended, before most of the webpage is read.
+    // Handlers are pooled, so a second webpage should be extracted independently of the first.
+    TikaNewsContentExtractor streamingNewsContentExtractor =
+        new TikaNewsContentExtractor(new HtmlParser(), true);
+    StringBuilder trailingSection = new StringBuilder("<div>");
+    for (int i = 0; i < TRAILING_TEXT_COUNT; i++) {
+      trailingSection.append(TRAILING_TEXT);
+    }
+    trailingSection.append("</div>");
+    for (int i = 0; i < 2; i++) {
+      CountingInputStream webpageStream =
+          new CountingInputStream(buildWebpageStream("", trailingSection.toString()));
+      NewsArticle newsArticle = new NewsArticle(URL, null, null, PRIORITY);
+      streamingNewsContentExtractor.extractContentFromHtml(webpageStream, newsArticle);
+      assertThat(newsArticle.getTitle()).isEqualTo(TITLE);
+      assertThat(newsArticle.getContent()).contains(ARTICLE_SENTENCE.trim());
+      assertThat(newsArticle.getContent()).doesNotContain(TRAILING_TEXT.trim());
+      assertThat(webpageStream.getBytesRead()).isLessThan(webpageStream.getLength() / 2);
+    }
+  }
+
+  @Test
+  public void extractContentFromHtml_streamingModeRecoversFromFailedParse() {
+    // Extract content in streaming mode from a webpage whose stream fails partway through the
+    // article, and then from a regular webpage. The failed extraction should set empty content,
+    // and none of its text should leak into the second extraction.
+    TikaNewsContentExtractor streamingNewsContentExtractor =
+        new TikaNewsContentExtractor(new HtmlParser(), true);
+    InputStream failingWebpageStream =
+        new SequenceInputStream(
+            new ByteArrayInputStream(
+                String.format("<html><body><article><p>%s</p><p>", NAVIGATION_TEXT)
+                    .getBytes(StandardCharsets.UTF_8)),
+            new InputStream() {
+              @Override
+              public int read() throws IOException {
+                throw new IOException("Connection reset.");
+              }
+            });
+    NewsArticle failedNewsArticle = new NewsArticle(URL, null, null, PRIORITY);
+    streamingNewsContentExtractor.extractContentFromHtml(failingWebpageStream, failedNewsArticle);
+    assertThat(failedNewsArticle.getContent()).isEmpty();
+    NewsArticle newsArticle = new NewsArticle(URL, null, null, PRIORITY);
+    streamingNewsContentExtractor.extractContentFromHtml(buildWebpageStream("", ""), newsArticle);
+    assertThat(newsArticle.getTitle()).isEqualTo(TITLE);
+    assertThat(newsArticle.getContent()).contains(ARTICLE_SENTENCE.trim());
+    assertThat(newsArticle.getContent()).doesNotContain(NAVIGATION_TEXT);
+  }
+
+  @Test
+  public void extractContentFromHtml_streamingModeKeepsArticleInForm() {
+    // Extract content in streaming mode from a webpage whose body is wrapped in a single form, as
+    // ASP.NET WebForms pages are. The article content in the form should be kept.
+    TikaNewsContentExtractor streamingNewsContentExtractor =
+        new TikaNewsContentExtractor(new HtmlParser(), true);
+    NewsArticle newsArticle = new NewsArticle(URL, null, null, PRIORITY);
+    streamingNewsContentExtractor.extractContentFromHtml(
+        buildWebpageStream("<form method=\"post\">", "</form>"), newsArticle);
+    assertThat(newsArticle.getTitle()).isEqualTo(TITLE);
+    assertThat(newsArticle.getContent()).contains(ARTICLE_SENTENCE.trim());
+  }
+
+  @Test
+  public void extractContentFromHtml_streamingModeDoesNotStopAfterTeaserArticle() {
+    // Extract content in streaming mode from a webpage with a long teaser of a related story, in
+    // an {@code <article>} element without a headline, before the news article. Parsing should
+    // not stop after the teaser, so that the news article is extracted.
+    TikaNewsContentExtractor streamingNewsContentExtractor =
+        new TikaNewsContentExtractor(new HtmlParser(), true);
+    StringBuilder teaser = new StringBuilder("<article><h2>Related story</h2>");
+    while (teaser.length() < TikaNewsContentExtractor.MIN_ARTICLE_CHARACTER_COUNT * 2) {
+      teaser.append("<p>").append(TRAILING_TEXT).append("</p>");
+    }
+    teaser.append("</article>");
+    NewsArticle newsArticle = new NewsArticle(URL, null, null, PRIORITY);
+    streamingNewsContentExtractor.extractContentFromHtml(
+        buildWebpageStream(teaser.toString(), ""), newsArticle);
+    assertThat(newsArticle.getContent()).contains(ARTICLE_SENTENCE.trim());
+  }
+
+  /**
+   * Builds a webpage that contains {@code ARTICLE_SENTENCE_COUNT} sentences in an {@code
+   * <article>} element, preceded by {@code header} and followed by {@code trailer}.
+   */
+  private InputStream buildWebpageStream(String header, String trailer) {
+    StringBuilder webpage = new StringBuilder();
+    webpage.append(String.format("<html><head><title>%s</title></head><body>", TITLE));
+    webpage.append(header);
+    webpage.append("<article><h1>").append(TITLE).append("</h1>");
+    for (int i = 0; i < ARTICLE_SENTENCE_COUNT; i++) {
+      webpage.append("<p>").append(ARTICLE_SENTENCE).append("</p>");
+    }
+    webpage.append("</article>");
+    webpage.append(trailer);
+    webpage.append("</body></html>");
+    return new ByteArrayInputStream(webpage.toString().getBytes(StandardCharsets.UTF_8));
+  }
+
+  /** An input stream that keeps track of how many bytes have been read from it. */
+  private static class CountingInputStream extends InputStream {
+    private InputStream stream;
+    private int length;
+    private int bytesRead = 0;
+
+    CountingInputStream(InputStream stream) throws IllegalStateException {
+      this.stream = stream;
+      try {
+        this.length = stream.available();
+      } catch (IOException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+
+    int getLength() {
+      return length;
+    }
+
+    int getBytesRead() {
+      return bytesRead;
+    }
+
+    @Override
+    public int read() throws IOException {
+      int value = stream.read();
+      if (value != -1) {
+        bytesRead++;
+      }
+      return value;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+      int count = stream.read(buffer, offset, length);
+      if (count > 0) {
+        bytesRead += count;
+      }
+      return count;
+    }
+  }
+}
@@ -29,8 +29,13 @@ import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 import com.google.sps.data.NewsArticle;
 import com.panforge.robotstxt.Grant;
+import com.sun.net.httpserver.HttpServer;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.concurrent.TimeoutException;
 import java.util.Date;
 import java.util.List;
@@ -79,6 +84,7 @@ public final class WebCrawlerTest {
   private static final String EMPTY_SUMMARIZED_CONTENT = "";
   private static final int PRIORITY = 1;
   private static final int DELAY = 1;
+  private static final String ETAG = "\"version-1\"";
 
   private static WebCrawler webCrawler;
   private static LocalDatastoreHelper datastoreHelper;
@@ -312,6 +318,22 @@ public final class WebCrawlerTest {
         new NewsArticle(VALID_URL, null, null, PRIORITY + 1));
   }
 
+  @Test
+  public void extractUrlsAndMetadataFromCustomSearchJson_laterPageWithTwoArticles()
+      throws IOException {
+    // Extract news article URL and metadata from {@code jsonWithTwoArticles}, which is the second
+    // page of results and contains two news articles. Their priorities should continue from those
+    // of the first page.
+    JsonObject jsonWithTwoArticles = customSearchJson.deepCopy();
+    jsonWithTwoArticles.getAsJsonArray("items").add(constructABasicNewsArticle());
+    int start = WebCrawler.CUSTOM_SEARCH_RESULT_COUNT + 1;
+    List<NewsArticle> newsArticles =
+        webCrawler.extractUrlsAndMetadataFromCustomSearchJson(jsonWithTwoArticles, start);
+    assertThat(newsArticles).containsExactly(
+        new NewsArticle(VALID_URL, null, null, start),
+        new NewsArticle(VALID_URL, null, null, start + 1));
+  }
+
   @Test
   public void extractUrlsAndMetadataFromCustomSearchJson_jsonWithoutUrl()
       throws IOException {
@@ -369,6 +391,99 @@ public final class WebCrawlerTest {
     assertThat(webCrawler.getNextAccessTimes()).containsKey(VALID_URL_ROBOTS_TXT);
   }
 
+  @Test
+  public void politelyScrapeAndExtractFromHtml_reuseRestoredCrawlIfNotModified()
+      throws IOException {
+    // Restore the previous crawl of a webpage from its stored entities, and re-fetch it from a
+    // local server that responds "not modified" to its ETag. The restored content should be
+    // reused, without extracting content again.
+    HttpServer server = startConditionalServer();
+    try {
+      URL url = new URL("http://localhost:" + server.getAddress().getPort() + "/conditional");
+      NewsArticle newsArticle =
+          new NewsArticle(url.toString(), PUBLISHER, PUBLISHED_DATE, PRIORITY);
+      Key newsArticleKey =
+          datastore.newKeyFactory().setKind("NewsArticle").newKey((long) url.hashCode());
+      Entity storedEntity =
+          Entity.newBuilder(newsArticleKey)
+              .set("url", url.toString())
+              .set("title", TITLE)
+              .set("abbreviatedContent", CONTENT)
+              .set("summarizedContent", CONTENT)
+              .set("etag", ETAG)
+              .set("httpLastModified", "")
+              .build();
+      Entity storedContentEntity =
+          Entity.newBuilder(
+                  datastore.newKeyFactory()
+                      .setKind("NewsArticleContent")
+                      .newKey(newsArticleKey.getId()))
+              .set("content", CONTENT)
+              .build();
+      webCrawler.restorePreviousCrawl(newsArticle, storedEntity, storedContentEntity);
+      boolean isContentReused =
+          webCrawler.politelyScrapeAndExtractFromHtml(
+              null, new URL(url.getProtocol(), url.getHost(), url.getPort(), "/robots.txt"),
+              newsArticle);
+      assertThat(isContentReused).isTrue();
+      assertThat(newsArticle.getTitle()).isEqualTo(TITLE);
+      assertThat(newsArticle.getContent()).isEqualTo(CONTENT);
+      verify(newsContentExtractor, never()).extractContentFromPage(any(), eq(newsArticle));
+    } finally {
+      server.stop(0);
+    }
+  }
+
+  @Test
+  public void politelyScrapeAndExtractFromHtml_notModifiedWithoutRestoredCrawlFails()
+      throws IOException {
+    // Re-fetch a webpage without a restored previous crawl from a local server that responds "not
+    // modified" regardless. There is no content to reuse, so the fetch should count as failed.
+    HttpServer server = startConditionalServer();
+    try {
+      URL url = new URL("http://localhost:" + server.getAddress().getPort() + "/not-modified");
+      NewsArticle newsArticle =
+          new NewsArticle(url.toString(), PUBLISHER, PUBLISHED_DATE, PRIORITY);
+      boolean isContentReused =
+          webCrawler.politelyScrapeAndExtractFromHtml(
+              null, new URL(url.getProtocol(), url.getHost(), url.getPort(), "/robots.txt"),
+              newsArticle);
+      assertThat(isContentReused).isFalse();
+      assertThat(newsArticle.getContent()).isEqualTo(EMPTY_CONTENT);
+    } finally {
+      server.stop(0);
+    }
+  }
+
+  /**
+   * Starts a local HTTP server, whose "/conditional" webpage responds "not modified" to requests
+   * with {@code ETAG}, and whose "/not-modified" webpage always responds "not modified".
+   */
+  private static HttpServer startConditionalServer() throws IOException {
+    HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext("/conditional", exchange -> {
+      if (ETAG.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+        exchange.sendResponseHeaders(304, -1);
+        exchange.close();
+        return;
+      }
+      byte[] body =
+          String.format("<html><body><p>%s</p></body></html>", CONTENT)
+              .getBytes(StandardCharsets.UTF_8);
+      exchange.getResponseHeaders().set("ETag", ETAG);
+      exchange.sendResponseHeaders(200, body.length);
+      try (OutputStream responseBody = exchange.getResponseBody()) {
+        responseBody.write(body);
+      }
+    });
+    server.createContext("/not-modified", exchange -> {
+      exchange.sendResponseHeaders(304, -1);
+      exchange.close();
+    });
+    server.start();
+    return server;
+  }
+
   @Test
   public void storeInDatabase_checkDatastoreEntityConstructionFromNewsArticle()
       throws IOException {
@@ -404,7 +519,7 @@ public final class WebCrawlerTest {
     assertThat(newsArticleEntity.getKey("candidateId")).isEqualTo(candidateKey);
     assertThat(newsArticleEntity.getString("title")).isEqualTo(expectedNewsArticle.getTitle());
     assertThat(newsArticleEntity.getString("url")).isEqualTo(expectedNewsArticle.getUrl());
-    assertThat(newsArticleEntity.getString("content")).isEqualTo(expectedNewsArticle.getContent());
+    assertThat(newsArticleEntity.contains("content")).isFalse();
     assertThat(newsArticleEntity.getString("abbreviatedContent"))
         .isEqualTo(EMPTY_ABBREVIATED_CONTENT);
     assertThat(newsArticleEntity.getString("abbreviatedContent"))
@@ -414,6 +529,100 @@ public final class WebCrawlerTest {
     assertThat(((Timestamp) newsArticleEntity.getValue("lastModified").get()).getSeconds()
                     >= past.getSeconds())
         .isTrue();
+    // The full content is stored separately, with the same ID as the news article.
+    Entity newsArticleContentEntity =
+        datastore.get(datastore.newKeyFactory()
+                          .setKind("NewsArticleContent")
+                          .newKey((long) expectedNewsArticle.getUrl().hashCode()));
+    assertThat(newsArticleContentEntity.getString("content"))
+        .isEqualTo(expectedNewsArticle.getContent());
+  }
+
+  @Test
+  public void refreshSeenNewsArticles_skipStoredArticleAndCrawlNewArticle() throws IOException {
+    // Store a news article, and then refresh a list of news articles that contains the stored
+    // news article and a new one. The seen article filter has never been persisted, so it should
+    // be rebuilt from the database and recognize the stored news article, which should have its
+    // last modified time refreshed instead of being crawled again. Only the new news article
+    // should be returned for crawling.
+    NewsArticle storedNewsArticle = new NewsArticle(VALID_URL, PUBLISHER, PUBLISHED_DATE, PRIORITY);
+    storedNewsArticle.setTitle(TITLE);
+    storedNewsArticle.setContent(CONTENT);
+    webCrawler.storeInDatabase(CANDIDATE_ID, storedNewsArticle);
+    Timestamp past = Timestamp.now();
+    NewsArticle newNewsArticle =
+        new NewsArticle(VALID_URL + "?page=2", PUBLISHER, PUBLISHED_DATE, PRIORITY + 1);
+    List<NewsArticle> newsArticlesToCrawl =
+        webCrawler.refreshSeenNewsArticles(
+            CANDIDATE_ID,
+            Arrays.asList(new NewsArticle(VALID_URL, PUBLISHER, PUBLISHED_DATE, PRIORITY),
+                          newNewsArticle));
+    assertThat(newsArticlesToCrawl).containsExactly(newNewsArticle);
+    Entity newsArticleEntity =
+        datastore.get(datastore.newKeyFactory()
+                          .setKind("NewsArticle")
+                          .newKey((long) VALID_URL.hashCode()));
+    Entity newsArticleContentEntity =
+        datastore.get(datastore.newKeyFactory()
+                          .setKind("NewsArticleContent")
+                          .newKey((long) VALID_URL.hashCode()));
+    assertThat(newsArticleContentEntity.getString("content")).isEqualTo(CONTENT);
+    assertThat(newsArticleEntity.getTimestamp("lastModified").compareTo(past) >= 0).isTrue();
+  }
+
+  @Test
+  public void rerankStoredNewsArticles_rankStoredArticlesAfterSearchedArticles()
+      throws IOException {
+    // Store two news articles, and then merge them with the results of an incremental search,
+    // which contain a new news article and the first stored news article. The second stored news
+    // article wasn't found again, so it should be ranked after both searched news articles and
+    // have its last modified time refreshed. The first stored news article should be left to be
+    // refreshed as a search result.
+    String otherUrl = VALID_URL + "?page=2";
+    webCrawler.storeInDatabase(
+        CANDIDATE_ID, new NewsArticle(VALID_URL, PUBLISHER, PUBLISHED_DATE, PRIORITY));
+    webCrawler.storeInDatabase(
+        CANDIDATE_ID, new NewsArticle(otherUrl, PUBLISHER, PUBLISHED_DATE, PRIORITY + 1));
+    Key storedKey =
+        datastore.newKeyFactory().setKind("NewsArticle").newKey((long) VALID_URL.hashCode());
+    Key otherStoredKey =
+        datastore.newKeyFactory().setKind("NewsArticle").newKey((long) otherUrl.hashCode());
+    List<Entity> storedEntities = datastore.fetch(storedKey, otherStoredKey);
+    Timestamp past = Timestamp.now();
+    webCrawler.rerankStoredNewsArticles(
+        storedEntities,
+        Arrays.asList(new NewsArticle(VALID_URL + "?page=3", PUBLISHER, PUBLISHED_DATE, PRIORITY),
+                      new NewsArticle(VALID_URL, PUBLISHER, PUBLISHED_DATE, PRIORITY + 1)));
+    Entity otherStoredEntity = datastore.get(otherStoredKey);
+    assertThat(otherStoredEntity.getLong("priority")).isEqualTo((long) PRIORITY + 2);
+    assertThat(otherStoredEntity.getTimestamp("lastModified").compareTo(past) >= 0).isTrue();
+    assertThat(datastore.get(storedKey).getLong("priority")).isEqualTo((long) PRIORITY);
+  }
+
+  @Test
+  public void rerankStoredNewsArticles_moveLegacyContentIntoContentEntity() throws IOException {
+    // Store a news article with its content in its {@code NewsArticle} entity, as stored before
+    // content was split, and then merge it with the results of an incremental search that don't
+    // contain it. Its content should be moved into its own {@code NewsArticleContent} entity.
+    Key storedKey =
+        datastore.newKeyFactory().setKind("NewsArticle").newKey((long) VALID_URL.hashCode());
+    datastore.put(
+        Entity.newBuilder(storedKey)
+            .set("url", VALID_URL)
+            .set("content", CONTENT)
+            .set("publishedDate", Timestamp.of(PUBLISHED_DATE))
+            .set("priority", PRIORITY)
+            .build());
+    webCrawler.rerankStoredNewsArticles(
+        datastore.fetch(storedKey),
+        Arrays.asList(new NewsArticle(VALID_URL + "?page=2", PUBLISHER, PUBLISHED_DATE, PRIORITY)));
+    Entity newsArticleContentEntity =
+        datastore.get(datastore.newKeyFactory()
+                          .setKind("NewsArticleContent")
+                          .newKey((long) VALID_URL.hashCode()));
+    assertThat(newsArticleContentEntity.getString("content")).isEqualTo(CONTENT);
+    assertThat(datastore.get(storedKey).contains("content")).isFalse();
+    assertThat(datastore.get(storedKey).getLong("priority")).isEqualTo((long) PRIORITY + 1);
   }
 
   @AfterClass
@@ -17,28 +17,29 @@ package com.google.sps.data;
 import java.util.Date;
 
 /** 
- * Represents a news article, including its metadata and content.
+ * Represents a news article, including its metadata and shortened content. The full content is
+ * served separately, by its ID, since the candidate page only loads it when it is shown.
  */
 public class NewsArticle {
+  private String id;
   private String title;
   private String url;
   private String publisher;
   private Date publishedDate;
-  private String content;
-  // The first 100 words of {@code content}.
+  // The first 100 words of the content.
   private String abbreviatedContent;
-  // The 5 most important sentences extracted from {@code content}.
+  // The 5 most important sentences extracted from the content.
   private String summarizedContent;
   private int priority;
   private NewsArticleCategory category;
 
-  public NewsArticle(String title, String url, String publisher, Date publishedDate,
-      String content, String abbreviatedContent, String summarizedContent, int priority) {
+  public NewsArticle(String id, String title, String url, String publisher, Date publishedDate,
+      String abbreviatedContent, String summarizedContent, int priority) {
+    this.id = id;
     this.title = title;
     this.url = url;
     this.publisher = publisher;
     this.publishedDate = publishedDate;
-    this.content = content;
     this.abbreviatedContent = abbreviatedContent;
     this.summarizedContent = summarizedContent;
     this.priority = priority;
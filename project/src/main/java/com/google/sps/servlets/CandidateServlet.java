@@ -17,17 +17,26 @@ package com.google.sps.servlets;
 import com.google.appengine.api.datastore.DatastoreService;
 import com.google.appengine.api.datastore.DatastoreServiceFactory;
 import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.EntityNotFoundException;
 import com.google.appengine.api.datastore.FetchOptions;
+import com.google.appengine.api.datastore.Key;
 import com.google.appengine.api.datastore.KeyFactory;
 import com.google.appengine.api.datastore.PreparedQuery;
 import com.google.appengine.api.datastore.Query;
 import com.google.appengine.api.datastore.Query.FilterOperator;
 import com.google.appengine.api.datastore.Query.FilterPredicate;
+import com.google.appengine.api.datastore.Transaction;
+import com.google.appengine.api.memcache.MemcacheService;
+import com.google.appengine.api.memcache.MemcacheServiceFactory;
 import com.google.gson.Gson;
 import com.google.sps.data.Candidate;
 import com.google.sps.data.NewsArticle;
+import com.google.sps.util.HttpCaching;
 import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
 import java.util.Date;
 import java.util.List;
 import javax.servlet.annotation.WebServlet;
@@ -40,26 +49,45 @@ import javax.servlet.http.HttpServletResponse;
  */
 @WebServlet("/candidate")
 public class CandidateServlet extends HttpServlet {
+  // Views of a candidate page are buffered in Memcache and added to the database in batches of
+  // this size.
+  private static final long VIEW_COUNT_BATCH_SIZE = 10;
+  // Serializes responses, and is shared by all requests since it is thread-safe.
+  private static final Gson gson = new Gson();
 
   @Override
   public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
     // Extract candidate ID.
     String candidateId = request.getParameter("candidateId");
     String electionName = request.getParameter("electionName");
+    // Candidate pages only change with the dataset generation, so let browsers reuse them until it
+    // changes. Views are still counted when a browser revalidates its copy.
+    Long generation = DatasetGeneration.get();
+    if (generation != null) {
+      String etag = HttpCaching.buildEtag(generation, "candidate", candidateId, electionName);
+      if (HttpCaching.validate(request, response, etag, Config.HTTP_CACHE_MAX_AGE_SECONDS,
+                               Config.HTTP_CACHE_STALE_WHILE_REVALIDATE_SECONDS)) {
+        countView(candidateId);
+        return;
+      }
+    }
     // @TODO [Get (1) official election/candidate information.]
     Candidate candidateData = getCandidateData(candidateId, electionName);
     // Get (2) news article information.
     List<NewsArticle> newsArticlesData = findNewsArticles(candidateId);
     // @TODO [Get (3) social media feed.]
+    countView(candidateId);
     // Find candidate-specific information. Package and convert the data to JSON.
     CandidatePageDataPackage dataPackage =
         new CandidatePageDataPackage(candidateData, newsArticlesData);
-    Gson gson = new Gson();
-    String dataPackageJson = gson.toJson(dataPackage);
 
-    // Send data in JSON format as the servlet response for the directory page.
+    // Send data in JSON format as the servlet response for the directory page, streaming it
+    // rather than building the whole response as a string first.
     response.setContentType("application/json;");
-    response.getWriter().println(dataPackageJson);
+    response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+    PrintWriter responseWriter = response.getWriter();
+    gson.toJson(dataPackage, CandidatePageDataPackage.class, gson.newJsonWriter(responseWriter));
+    responseWriter.println();
   }
 
   // @TODO [Function for getting (1) official election/candidate information from the database.]
@@ -107,6 +135,8 @@ public class CandidateServlet extends HttpServlet {
 
   /**
    * Queries the database for news articles about the candidate represented by {@code candidateId}.
+   * Their full content is stored in separate {@code NewsArticleContent} entities, which aren't read
+   * here, and is served by {@code NewsArticleContentServlet} when the candidate page shows it.
    */
   private List<NewsArticle> findNewsArticles(String candidateId) {
     DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
@@ -123,11 +153,11 @@ public class CandidateServlet extends HttpServlet {
     for (Entity newsArticle : newsArticles) {
       NewsArticle newsArticleData =
           new NewsArticle(
+              Long.toString(newsArticle.getKey().getId()),
               (String) newsArticle.getProperty("title"),
               (String) newsArticle.getProperty("url"),
               (String) newsArticle.getProperty("publisher"),
               (Date) newsArticle.getProperty("publishedDate"),
-              (String) newsArticle.getProperty("content"),
               (String) newsArticle.getProperty("abbreviatedContent"),
               (String) newsArticle.getProperty("summarizedContent"),
               ((Long) newsArticle.getProperty("priority")).intValue());
@@ -136,6 +166,46 @@ public class CandidateServlet extends HttpServlet {
     return newsArticlesData;
   }
 
+  /**
+   * Counts a view of the candidate page, so that the information compiler can refresh popular
+   * candidates more often. Views are buffered in Memcache and added to the candidate's {@code
+   * CandidateViewCount} entity every {@code VIEW_COUNT_BATCH_SIZE} views, instead of turning every
+   * page view into a contended database write. Counts are approximate: buffered views are lost if
+   * Memcache evicts them, and a batch is dropped if the entity is being updated concurrently.
+   */
+  private void countView(String candidateId) {
+    MemcacheService memcache = MemcacheServiceFactory.getMemcacheService();
+    String bufferKey = "CandidateViewCount:" + candidateId;
+    Long bufferedViews = memcache.increment(bufferKey, 1, 0L);
+    // Exactly one request reaches each multiple of the batch size, and flushes one batch.
+    if (bufferedViews == null || bufferedViews % VIEW_COUNT_BATCH_SIZE != 0) {
+      return;
+    }
+    memcache.increment(bufferKey, -VIEW_COUNT_BATCH_SIZE);
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    Key viewCountKey = KeyFactory.createKey("CandidateViewCount", Long.parseLong(candidateId));
+    Transaction transaction = datastore.beginTransaction();
+    try {
+      Entity viewCount;
+      try {
+        viewCount = datastore.get(transaction, viewCountKey);
+      } catch (EntityNotFoundException e) {
+        viewCount = new Entity(viewCountKey);
+        viewCount.setProperty("count", 0L);
+      }
+      viewCount.setProperty("count", (Long) viewCount.getProperty("count") + VIEW_COUNT_BATCH_SIZE);
+      viewCount.setProperty("lastModified", new Date());
+      datastore.put(transaction, viewCount);
+      transaction.commit();
+    } catch (ConcurrentModificationException e) {
+      // Drop the batch rather than delaying the response.
+    } finally {
+      if (transaction.isActive()) {
+        transaction.rollback();
+      }
+    }
+  }
+
   // Class to package together different types of data as a HTTP response.
   class CandidatePageDataPackage {
     private Candidate candidateData;
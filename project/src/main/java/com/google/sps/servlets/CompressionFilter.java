@@ -0,0 +1,318 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.google.sps.servlets;
+
+import com.google.sps.util.CompressingOutputStream;
+import com.google.sps.util.CompressionFormat;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.WriteListener;
+import javax.servlet.annotation.WebFilter;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+/**
+ * Compresses the JSON responses of the data, candidate and news article content servlets with
+ * gzip or deflate, as negotiated from the request's {@code Accept-Encoding} header. Responses are
+ * compressed as they are written, and ones smaller than {@code Config.COMPRESSION_MIN_SIZE_BYTES}
+ * are sent as is.
+ * Servlets that already have a compressed response can find the negotiated {@code
+ * CompressionFormat} in the {@code COMPRESSION_FORMAT_ATTRIBUTE} request attribute, and send the
+ * response directly by setting its {@code Content-Encoding} header.
+ */
+@WebFilter(urlPatterns = {"/data", "/candidate", "/news-article-content"})
+public class CompressionFilter implements Filter {
+  public static final String COMPRESSION_FORMAT_ATTRIBUTE = "compressionFormat";
+
+  @Override
+  public void init(FilterConfig filterConfig) {}
+
+  @Override
+  public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+      throws IOException, ServletException {
+    HttpServletResponse httpResponse = (HttpServletResponse) response;
+    httpResponse.addHeader("Vary", "Accept-Encoding");
+    CompressionFormat compressionFormat =
+        negotiateCompressionFormat(((HttpServletRequest) request).getHeader("Accept-Encoding"));
+    if (compressionFormat == null) {
+      chain.doFilter(request, response);
+      return;
+    }
+    request.setAttribute(COMPRESSION_FORMAT_ATTRIBUTE, compressionFormat);
+    CompressingResponse compressingResponse =
+        new CompressingResponse(httpResponse, compressionFormat,
+                                Config.COMPRESSION_MIN_SIZE_BYTES);
+    try {
+      chain.doFilter(request, compressingResponse);
+    } finally {
+      compressingResponse.finish();
+    }
+  }
+
+  @Override
+  public void destroy() {}
+
+  /**
+   * Returns the compression format preferred by {@code acceptEncoding}, favoring gzip over deflate
+   * when both are equally acceptable, or null if neither is acceptable. This method is given
+   * default visibility for testing purposes.
+   */
+  static CompressionFormat negotiateCompressionFormat(String acceptEncoding) {
+    if (acceptEncoding == null) {
+      return null;
+    }
+    double gzipQuality = 0;
+    double deflateQuality = 0;
+    double wildcardQuality = 0;
+    boolean isGzipListed = false;
+    boolean isDeflateListed = false;
+    for (String encoding : acceptEncoding.split(",")) {
+      String[] encodingParts = encoding.trim().split(";");
+      String encodingName = encodingParts[0].trim().toLowerCase();
+      double quality = 1;
+      for (int i = 1; i < encodingParts.length; i++) {
+        String parameter = encodingParts[i].trim();
+        if (parameter.startsWith("q=")) {
+          try {
+            quality = Double.parseDouble(parameter.substring(2));
+          } catch (NumberFormatException e) {
+            quality = 0;
+          }
+        }
+      }
+      if (encodingName.equals("gzip") || encodingName.equals("x-gzip")) {
+        gzipQuality = quality;
+        isGzipListed = true;
+      } else if (encodingName.equals("deflate")) {
+        deflateQuality = quality;
+        isDeflateListed = true;
+      } else if (encodingName.equals("*")) {
+        wildcardQuality = quality;
+      }
+    }
+    if (!isGzipListed) {
+      gzipQuality = wildcardQuality;
+    }
+    if (!isDeflateListed) {
+      deflateQuality = wildcardQuality;
+    }
+    if (gzipQuality > 0 && gzipQuality >= deflateQuality) {
+      return CompressionFormat.GZIP;
+    }
+    return (deflateQuality > 0) ? CompressionFormat.DEFLATE : null;
+  }
+
+  /**
+   * Buffers a response until it reaches the size threshold, and then compresses it, and the rest
+   * of it, on the fly. A response whose {@code Content-Encoding} was set by the servlet is passed
+   * through as is.
+   */
+  static class CompressingResponse extends HttpServletResponseWrapper {
+    private final CompressionFormat compressionFormat;
+    private final int minSizeBytes;
+    private boolean isPreencoded;
+    private CompressingServletOutputStream outputStream;
+    private PrintWriter writer;
+
+    CompressingResponse(HttpServletResponse response, CompressionFormat compressionFormat,
+        int minSizeBytes) {
+      super(response);
+      this.compressionFormat = compressionFormat;
+      this.minSizeBytes = minSizeBytes;
+    }
+
+    @Override
+    public void setHeader(String name, String value) {
+      checkPreencoded(name);
+      if (isPreencoded || !name.equalsIgnoreCase("Content-Length")) {
+        super.setHeader(name, value);
+      }
+    }
+
+    @Override
+    public void addHeader(String name, String value) {
+      checkPreencoded(name);
+      if (isPreencoded || !name.equalsIgnoreCase("Content-Length")) {
+        super.addHeader(name, value);
+      }
+    }
+
+    @Override
+    public void setContentLength(int length) {
+      if (isPreencoded) {
+        super.setContentLength(length);
+      }
+    }
+
+    @Override
+    public void setContentLengthLong(long length) {
+      if (isPreencoded) {
+        super.setContentLengthLong(length);
+      }
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() throws IOException {
+      if (writer != null) {
+        throw new IllegalStateException("getWriter() has already been called.");
+      }
+      return getCompressingOutputStream();
+    }
+
+    @Override
+    public PrintWriter getWriter() throws IOException {
+      if (writer == null) {
+        if (outputStream != null) {
+          throw new IllegalStateException("getOutputStream() has already been called.");
+        }
+        writer =
+            new PrintWriter(
+                new OutputStreamWriter(getCompressingOutputStream(), getCharacterEncoding()));
+      }
+      return writer;
+    }
+
+    @Override
+    public void flushBuffer() throws IOException {
+      if (writer != null) {
+        writer.flush();
+      } else if (outputStream != null) {
+        outputStream.flush();
+      }
+      super.flushBuffer();
+    }
+
+    /** Writes out the rest of the response, compressed or not. */
+    void finish() throws IOException {
+      if (writer != null) {
+        writer.flush();
+      }
+      if (outputStream != null) {
+        outputStream.finish();
+      }
+    }
+
+    private void checkPreencoded(String headerName) {
+      if (headerName.equalsIgnoreCase("Content-Encoding")) {
+        isPreencoded = true;
+      }
+    }
+
+    private CompressingServletOutputStream getCompressingOutputStream() throws IOException {
+      if (outputStream == null) {
+        outputStream = new CompressingServletOutputStream(this, super.getOutputStream());
+      }
+      return outputStream;
+    }
+  }
+
+  /**
+   * Buffers the response until it reaches the size threshold, and then sends it through a
+   * compressing stream.
+   */
+  private static class CompressingServletOutputStream extends ServletOutputStream {
+    private final CompressingResponse response;
+    private final ServletOutputStream responseStream;
+    private ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    // The stream the response is written to once it is no longer buffered.
+    private OutputStream targetStream;
+    private CompressingOutputStream compressingStream;
+    private boolean isFinished;
+
+    CompressingServletOutputStream(CompressingResponse response,
+        ServletOutputStream responseStream) {
+      this.response = response;
+      this.responseStream = responseStream;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      write(new byte[] {(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      if (targetStream == null) {
+        if (!response.isPreencoded && buffer.size() + len < response.minSizeBytes) {
+          buffer.write(b, off, len);
+          return;
+        }
+        startStreaming();
+      }
+      targetStream.write(b, off, len);
+    }
+
+    @Override
+    public void flush() throws IOException {
+      if (targetStream != null) {
+        targetStream.flush();
+      }
+    }
+
+    @Override
+    public boolean isReady() {
+      return responseStream.isReady();
+    }
+
+    @Override
+    public void setWriteListener(WriteListener writeListener) {
+      responseStream.setWriteListener(writeListener);
+    }
+
+    /** Writes out the buffered response uncompressed, or completes the compressed response. */
+    void finish() throws IOException {
+      if (isFinished) {
+        return;
+      }
+      isFinished = true;
+      if (targetStream == null) {
+        if (buffer.size() > 0) {
+          if (!response.isPreencoded) {
+            response.getResponse().setContentLength(buffer.size());
+          }
+          buffer.writeTo(responseStream);
+        }
+        buffer = null;
+        return;
+      }
+      if (compressingStream != null) {
+        compressingStream.finish();
+      }
+    }
+
+    private void startStreaming() throws IOException {
+      if (response.isPreencoded) {
+        targetStream = responseStream;
+      } else {
+        ((HttpServletResponse) response.getResponse())
+            .setHeader("Content-Encoding", response.compressionFormat.getContentEncoding());
+        compressingStream = response.compressionFormat.newOutputStream(responseStream);
+        targetStream = compressingStream;
+      }
+      buffer.writeTo(targetStream);
+      buffer = null;
+    }
+  }
+}
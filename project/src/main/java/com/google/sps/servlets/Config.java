@@ -15,8 +15,33 @@
 package com.google.sps.servlets;
 
 /**
- * A configuration class for keeping hidden API keys.
+ * A configuration class for keeping hidden API keys and tuning the servlets.
  */
 public class Config {
   public static final String CIVIC_INFO_API_KEY = "";
+  // The time a directory search waits for the Civic Information API to tell which elections are
+  // relevant to the address, in milliseconds.
+  public static final long RELEVANCY_CHECK_DEADLINE_MILLIS = 3000;
+  // Whether elections whose relevancy couldn't be checked by the deadline, or whose check failed,
+  // are listed as possibly relevant. Otherwise they are left out.
+  public static final boolean INCLUDE_UNCHECKED_ELECTIONS = false;
+  // Whether the elections relevant to each address are cached in Memcache, which is shared by all
+  // instances, rather than in each instance's memory.
+  public static final boolean USE_MEMCACHE_ADDRESS_CACHE = false;
+  // The maximum number of addresses cached in each instance's memory.
+  public static final int ADDRESS_CACHE_SIZE = 1000;
+  // How long the elections relevant to an address are cached, and how long an address that no
+  // election is relevant to, such as an address that couldn't be resolved, is cached.
+  public static final long ADDRESS_CACHE_TTL_SECONDS = 60 * 60;
+  public static final long UNRESOLVABLE_ADDRESS_CACHE_TTL_SECONDS = 5 * 60;
+  // How long browsers and proxies may reuse responses that only change when the information
+  // compiler runs, and how much longer they may keep using them while revalidating them. Responses
+  // are revalidated with ETags derived from the dataset generation.
+  public static final long HTTP_CACHE_MAX_AGE_SECONDS = 5 * 60;
+  public static final long HTTP_CACHE_STALE_WHILE_REVALIDATE_SECONDS = 60 * 60;
+  // Responses smaller than this aren't compressed, since compression barely shrinks them.
+  public static final int COMPRESSION_MIN_SIZE_BYTES = 1024;
+  // The maximum number of news articles whose full content is served by a single request, as the
+  // candidate page loads it on demand.
+  public static final int NEWS_ARTICLE_CONTENT_PAGE_SIZE = 20;
 }
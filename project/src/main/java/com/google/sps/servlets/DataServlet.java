@@ -14,6 +14,9 @@
 
 package com.google.sps.servlets;
 
+import com.google.appengine.api.ThreadManager;
+import com.google.appengine.api.datastore.AsyncDatastoreService;
+import com.google.appengine.api.datastore.DatastoreFailureException;
 import com.google.appengine.api.datastore.DatastoreService;
 import com.google.appengine.api.datastore.DatastoreServiceFactory;
 import com.google.appengine.api.datastore.Entity;
@@ -22,8 +25,6 @@ import com.google.appengine.api.datastore.Key;
 import com.google.appengine.api.datastore.KeyFactory;
 import com.google.appengine.api.datastore.PreparedQuery;
 import com.google.appengine.api.datastore.Query;
-import com.google.appengine.api.datastore.Query.FilterOperator;
-import com.google.appengine.api.datastore.Query.FilterPredicate;
 import com.google.gson.Gson;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
@@ -32,17 +33,42 @@ import com.google.gson.JsonParser;
 import com.google.sps.data.DirectoryCandidate;
 import com.google.sps.data.Election;
 import com.google.sps.data.Position;
+import com.google.sps.util.AddressNormalizer;
+import com.google.sps.util.CompressionFormat;
+import com.google.sps.util.HttpCaching;
+import com.google.sps.util.LocalResultCache;
+import com.google.sps.util.MemcacheResultCache;
+import com.google.sps.util.ResultCache;
+import com.google.sps.util.SnapshotCache;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Serializable;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
 import java.lang.Boolean;
 import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
@@ -51,6 +77,7 @@ import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
 import org.apache.http.client.ClientProtocolException;
 import org.apache.http.client.ResponseHandler;
+import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClients;
@@ -67,7 +94,54 @@ public class DataServlet extends HttpServlet {
   private final static String RELEVANT_NONSPECIFIC_ADDRESS_ALERT =
       "Your input address was not specific enough or was not a residential address.\n" + 
       "We are providing all possible elections that may be relevant.";
-  boolean isAddressRelevantButNotSpecificOrResidential;
+  // Serializes responses, and is shared by all requests since it is thread-safe.
+  private final static Gson gson = new Gson();
+  // Fixed JSON fragments that responses are spliced together from, in the same shape as a
+  // serialized {@code DirectoryPageDataPackage}.
+  private final static byte[] ELECTIONS_DATA_START_JSON =
+      "{\"electionsData\":[".getBytes(StandardCharsets.UTF_8);
+  private final static byte[] ELECTIONS_DATA_SEPARATOR_JSON = ",".getBytes(StandardCharsets.UTF_8);
+  private final static byte[] ELECTIONS_DATA_END_JSON = "]".getBytes(StandardCharsets.UTF_8);
+  private final static byte[] RELEVANT_NONSPECIFIC_ADDRESS_ALERT_JSON =
+      (",\"alert\":" + gson.toJson(RELEVANT_NONSPECIFIC_ADDRESS_ALERT))
+          .getBytes(StandardCharsets.UTF_8);
+  private final static byte[] PACKAGE_END_JSON =
+      ("}" + System.lineSeparator()).getBytes(StandardCharsets.UTF_8);
+  // The maximum number of entities that Datastore gets in a single batch.
+  private final static int MAX_BATCH_GET_SIZE = 1000;
+  // The directory only changes when the information compiler runs, which bumps the dataset
+  // generation. Check the generation at most every minute, and rebuild the directory every ten
+  // minutes if the generation is unknown.
+  private final static long DIRECTORY_CHECK_INTERVAL_MILLIS = 60 * 1000;
+  private final static long DIRECTORY_MAX_AGE_MILLIS = 10 * 60 * 1000;
+  private final static SnapshotCache<List<DirectoryElection>> directoryCache =
+      new SnapshotCache<>("election directory", DataServlet::loadDirectory,
+                          DatasetGeneration::get, DIRECTORY_CHECK_INTERVAL_MILLIS,
+                          DIRECTORY_MAX_AGE_MILLIS);
+  // The maximum number of relevancy checks that run at the same time for a single request.
+  private final static int MAX_CONCURRENT_RELEVANCY_CHECKS = 16;
+  // Queries to the Civic Information API give up within the relevancy check deadline, so that a
+  // hung query doesn't hold on to its thread past the request it was made for.
+  private final static RequestConfig CIVIC_INFO_REQUEST_CONFIG =
+      RequestConfig.custom()
+          .setConnectTimeout((int) Config.RELEVANCY_CHECK_DEADLINE_MILLIS)
+          .setConnectionRequestTimeout((int) Config.RELEVANCY_CHECK_DEADLINE_MILLIS)
+          .setSocketTimeout((int) Config.RELEVANCY_CHECK_DEADLINE_MILLIS)
+          .build();
+  // Mappings of (directory generation and normalized address, the elections relevant to the
+  // address), so that cached lookups are dropped along with the directory they were made against.
+  private static volatile ResultCache<AddressElections> addressCache = newAddressCache();
+  // Mappings of (directory generation and normalized address, the lookup of its relevant elections
+  // in progress), so that concurrent searches for the same address share a single lookup.
+  private final static ConcurrentHashMap<String, CompletableFuture<AddressElections>>
+      addressLookups = new ConcurrentHashMap<>();
+  // Mappings of (compression format, directory generation and state filter, the compressed listing
+  // of all elections for them), which is served as is to every request for the listing that
+  // accepts the format.
+  private final static int COMPRESSED_LISTING_CACHE_SIZE = 128;
+  private final static long COMPRESSED_LISTING_CACHE_TTL_MILLIS = 24 * 60 * 60 * 1000;
+  private static volatile ResultCache<byte[]> compressedListingCache =
+      new LocalResultCache<>(COMPRESSED_LISTING_CACHE_SIZE);
 
   @Override
   public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
@@ -75,48 +149,307 @@ public class DataServlet extends HttpServlet {
     boolean listAllElections = Boolean.parseBoolean(request.getParameter("listAllElections"));
     String stateFilter = request.getParameter("stateFilter");
 
-    // Find election/candidate information. Package and convert the data to JSON.
-    List<Election> elections = extractElectionInformation(address, listAllElections, stateFilter);
+    // Listings of all elections only change with the dataset generation, so let browsers reuse
+    // them until it changes. Address searches also depend on the Civic Information API. The ETag
+    // is built from the generation of the directory snapshot that the listing is built from,
+    // which may lag behind the dataset generation until the snapshot is next checked.
+    SnapshotCache.Snapshot<List<DirectoryElection>> directory = directoryCache.getSnapshot();
+    Long generation = directory.getGeneration();
+    String etag = null;
+    if (listAllElections && generation != null) {
+      etag = HttpCaching.buildEtag(generation, "data", stateFilter);
+      if (HttpCaching.validate(request, response, etag, Config.HTTP_CACHE_MAX_AGE_SECONDS,
+                               Config.HTTP_CACHE_STALE_WHILE_REVALIDATE_SECONDS)) {
+        return;
+      }
+    }
+    response.setContentType("application/json;");
+    response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+
+    // Listings of all elections are the same for every request with the same generation and state
+    // filter, so they are compressed once and then sent as is, if the compression filter
+    // negotiated a format.
+    CompressionFormat compressionFormat =
+        (CompressionFormat) request.getAttribute(CompressionFilter.COMPRESSION_FORMAT_ATTRIBUTE);
+    if (etag != null && compressionFormat != null) {
+      String listingKey = buildListingKey(compressionFormat, generation, stateFilter);
+      byte[] compressedListing = compressedListingCache.get(listingKey);
+      if (compressedListing == null) {
+        ByteArrayOutputStream listing = new ByteArrayOutputStream();
+        extractElectionInformation(directory, address, listAllElections, stateFilter)
+            .writeJson(listing);
+        compressedListing = compressionFormat.compress(listing.toByteArray());
+        compressedListingCache.put(listingKey, compressedListing,
+                                   COMPRESSED_LISTING_CACHE_TTL_MILLIS);
+      }
+      response.setHeader("Content-Encoding", compressionFormat.getContentEncoding());
+      response.setContentLength(compressedListing.length);
+      response.getOutputStream().write(compressedListing);
+      return;
+    }
+
+    // Find election/candidate information. Package the data.
     DirectoryPageDataPackage dataPackage =
-        new DirectoryPageDataPackage(elections,
-                                     isAddressRelevantButNotSpecificOrResidential
-                                     ? RELEVANT_NONSPECIFIC_ADDRESS_ALERT
-                                     : null);
-    Gson gson = new Gson();
-    String dataPackageJson = gson.toJson(dataPackage);
+        extractElectionInformation(directory, address, listAllElections, stateFilter);
 
     // Send data in JSON format as the servlet response for the directory page.
-    response.setContentType("application/json;");
-    response.getWriter().println(dataPackageJson);
+    dataPackage.writeJson(response.getOutputStream());
+  }
+
+  /**
+   * Builds the key of the compressed listing of all elections that match {@code stateFilter} in
+   * the directory of {@code generation}, compressed with {@code compressionFormat}. The state
+   * filter is kept as is, and a missing filter is told apart from any filter value.
+   */
+  static String buildListingKey(CompressionFormat compressionFormat, long generation,
+      String stateFilter) {
+    return String.format("%s:%x:%s", compressionFormat.name(), generation,
+                         (stateFilter == null) ? "*" : "=" + stateFilter);
+  }
+
+  private static ResultCache<AddressElections> newAddressCache() {
+    return Config.USE_MEMCACHE_ADDRESS_CACHE
+        ? new MemcacheResultCache<>("AddressElections:")
+        : new LocalResultCache<>(Config.ADDRESS_CACHE_SIZE);
   }
 
   /**
-   * Resets the flag for whether the user input address is relevant but nonspecific.
+   * Drops everything cached by the data servlet, which is shared by all instances of the servlet
+   * in the same JVM, so that each test starts from an empty directory. Memcache entries are only
+   * dropped along with the local Memcache service of the test. For testing purposes.
    */
-  private void resetRelevantNonspecificFlag() {
-    this.isAddressRelevantButNotSpecificOrResidential = false;
+  static void clearCaches() {
+    DatasetGeneration.clear();
+    directoryCache.clear();
+    addressCache = newAddressCache();
+    addressLookups.clear();
+    compressedListingCache = new LocalResultCache<>(COMPRESSED_LISTING_CACHE_SIZE);
   }
 
   @Override
   public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {}
 
   /**
-   * Queries the database for (brief version) official election/position/candidate information and
-   * formats the data as {@code Election} objects. Correlates one {@code Election} with one or more
-   * {@code Position}.
+   * Finds the elections in {@code directorySnapshot}, a snapshot of the cached election directory,
+   * that are relevant to {@code address}, or that match {@code stateFilter} if {@code
+   * listAllElections} is true, and packages them with an alert if the address is relevant but not
+   * specific enough or not residential. The relevancy of all elections to {@code address} is
+   * checked concurrently, so the search takes about as long as a single check, and is cached by
+   * the snapshot's generation and normalized address. Elections are listed in the directory's
+   * order either way. All state is kept per request, so that requests can be served concurrently.
    */
-  private List<Election> extractElectionInformation(String address, boolean listAllElections,
-      String stateFilter) {
-    List<Election> elections = new ArrayList<>();
+  private DirectoryPageDataPackage extractElectionInformation(
+      SnapshotCache.Snapshot<List<DirectoryElection>> directorySnapshot, String address,
+      boolean listAllElections, String stateFilter) {
+    List<DirectoryElection> directory = directorySnapshot.getValue();
+    List<byte[]> elections = new ArrayList<>();
+    if (listAllElections) {
+      for (DirectoryElection directoryElection : directory) {
+        if (isRelevantElection(directoryElection.entity, address, listAllElections, stateFilter)) {
+          elections.add(directoryElection.electionJson);
+        }
+      }
+      return new DirectoryPageDataPackage(elections, null);
+    }
+    AddressElections addressElections =
+        lookUpAddressElections(directory, directorySnapshot.getGeneration(), address);
+    Set<String> relevantElectionNames = new HashSet<>(addressElections.electionNames);
+    for (DirectoryElection directoryElection : directory) {
+      if (relevantElectionNames.contains(directoryElection.entity.getKey().getName())) {
+        elections.add(directoryElection.electionJson);
+      }
+    }
+    byte[] alert =
+        addressElections.isAddressRelevantButNotSpecificOrResidential
+            ? RELEVANT_NONSPECIFIC_ADDRESS_ALERT_JSON
+            : null;
+    return new DirectoryPageDataPackage(elections, alert);
+  }
+
+  /**
+   * Looks up the elections in {@code directory}, built from {@code generation}, that are relevant
+   * to {@code address}, first in the address cache and otherwise by checking them, unless an
+   * identical lookup is already in progress, whose result is then shared. Results are cached for
+   * {@code Config.ADDRESS_CACHE_TTL_SECONDS}, or for {@code
+   * Config.UNRESOLVABLE_ADDRESS_CACHE_TTL_SECONDS} if no election is relevant, but not if some
+   * elections couldn't be checked. Results are only reused for the same generation, so a new data
+   * set invalidates them. If the generation is unknown, results are only bounded by their TTL.
+   */
+  private AddressElections lookUpAddressElections(List<DirectoryElection> directory,
+      Long generation, String address) {
+    String addressKey = buildAddressKey(generation, AddressNormalizer.normalize(address));
+    AddressElections cachedAddressElections = addressCache.get(addressKey);
+    if (cachedAddressElections != null) {
+      return cachedAddressElections;
+    }
+    CompletableFuture<AddressElections> addressLookup = new CompletableFuture<>();
+    CompletableFuture<AddressElections> ongoingAddressLookup =
+        addressLookups.putIfAbsent(addressKey, addressLookup);
+    if (ongoingAddressLookup != null) {
+      try {
+        return ongoingAddressLookup.get();
+      } catch (ExecutionException e) {
+        // Fall through to look up the address independently.
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return new AddressElections(Collections.emptyList(), false);
+      }
+    }
+    try {
+      List<Entity> electionEntities = new ArrayList<>(directory.size());
+      for (DirectoryElection directoryElection : directory) {
+        electionEntities.add(directoryElection.entity);
+      }
+      List<ElectionRelevancy> checkedRelevancies =
+          runRelevancyChecks(electionEntities, address, Config.RELEVANCY_CHECK_DEADLINE_MILLIS);
+      boolean isComplete = !checkedRelevancies.contains(ElectionRelevancy.UNCHECKED);
+      List<ElectionRelevancy> relevancies = applyUncheckedElectionPolicy(checkedRelevancies);
+      ArrayList<String> electionNames = new ArrayList<>();
+      boolean isAddressRelevantButNotSpecificOrResidential = false;
+      for (int i = 0; i < directory.size(); i++) {
+        if (relevancies.get(i) != ElectionRelevancy.IRRELEVANT) {
+          electionNames.add(directory.get(i).entity.getKey().getName());
+        }
+        if (relevancies.get(i) == ElectionRelevancy.RELEVANT_BUT_NOT_SPECIFIC) {
+          isAddressRelevantButNotSpecificOrResidential = true;
+        }
+      }
+      AddressElections addressElections =
+          new AddressElections(electionNames, isAddressRelevantButNotSpecificOrResidential);
+      if (isComplete) {
+        long timeToLiveSeconds =
+            electionNames.isEmpty()
+                ? Config.UNRESOLVABLE_ADDRESS_CACHE_TTL_SECONDS
+                : Config.ADDRESS_CACHE_TTL_SECONDS;
+        addressCache.put(addressKey, addressElections,
+                         TimeUnit.SECONDS.toMillis(timeToLiveSeconds));
+      }
+      addressLookup.complete(addressElections);
+      return addressElections;
+    } catch (RuntimeException e) {
+      addressLookup.completeExceptionally(e);
+      throw e;
+    } finally {
+      addressLookups.remove(addressKey, addressLookup);
+    }
+  }
+
+  /**
+   * Builds the key of the elections relevant to {@code normalizedAddress} in the directory of
+   * {@code generation}, which is null if unknown.
+   */
+  static String buildAddressKey(Long generation, String normalizedAddress) {
+    return String.format("%s:%s", (generation == null) ? "*" : Long.toHexString(generation),
+                         normalizedAddress);
+  }
+
+  /**
+   * Checks whether each of {@code elections} is relevant to {@code address}, with all checks
+   * running concurrently on a bounded pool of request threads, which App Engine requires for
+   * threads started while serving a request, and returns the results in the same order as {@code
+   * elections}. Checks that haven't completed within {@code deadlineMillis} are cancelled, and the
+   * pool is shut down before returning.
+   * Elections whose check was cancelled or couldn't reach the Civic Information API are deemed
+   * relevant, but not specifically to {@code address}, if {@code
+   * Config.INCLUDE_UNCHECKED_ELECTIONS} is set, and irrelevant otherwise. This method is given
+   * default visibility for testing purposes.
+   */
+  List<ElectionRelevancy> checkElectionsRelevancy(List<Entity> elections, String address,
+      long deadlineMillis) {
+    return applyUncheckedElectionPolicy(runRelevancyChecks(elections, address, deadlineMillis));
+  }
+
+  /**
+   * Same as {@link #checkElectionsRelevancy}, but returns {@code ElectionRelevancy.UNCHECKED} for
+   * elections that couldn't be checked. Elections for which the Civic Information API returned an
+   * error are irrelevant.
+   */
+  private List<ElectionRelevancy> runRelevancyChecks(List<Entity> elections, String address,
+      long deadlineMillis) {
+    if (elections.isEmpty()) {
+      return new ArrayList<>();
+    }
+    List<Callable<ElectionRelevancy>> relevancyChecks = new ArrayList<>(elections.size());
+    for (Entity election : elections) {
+      relevancyChecks.add(() -> checkElectionRelevancy(election, address));
+    }
+    ExecutorService relevancyCheckExecutor =
+        Executors.newFixedThreadPool(Math.min(elections.size(), MAX_CONCURRENT_RELEVANCY_CHECKS),
+                                     getRelevancyCheckThreadFactory());
+    List<Future<ElectionRelevancy>> relevancyCheckResults;
+    try {
+      relevancyCheckResults =
+          relevancyCheckExecutor.invokeAll(relevancyChecks, deadlineMillis, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      relevancyCheckResults = Collections.emptyList();
+    } finally {
+      relevancyCheckExecutor.shutdownNow();
+    }
+    List<ElectionRelevancy> relevancies = new ArrayList<>(elections.size());
+    for (int i = 0; i < elections.size(); i++) {
+      ElectionRelevancy relevancy = ElectionRelevancy.UNCHECKED;
+      if (i < relevancyCheckResults.size() && !relevancyCheckResults.get(i).isCancelled()) {
+        try {
+          relevancy = relevancyCheckResults.get(i).get();
+        } catch (ExecutionException e) {
+          if (e.getCause() instanceof ClientProtocolException) {
+            relevancy = ElectionRelevancy.IRRELEVANT;
+          }
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+      relevancies.add(relevancy);
+    }
+    return relevancies;
+  }
+
+  /**
+   * Returns the factory of the threads that check the relevancy of elections for the current
+   * request. App Engine only lets a request start threads through its request thread factory, and
+   * those threads can't outlive the request. This method is given default visibility for testing
+   * purposes.
+   */
+  ThreadFactory getRelevancyCheckThreadFactory() {
+    return ThreadManager.currentRequestThreadFactory();
+  }
+
+  /**
+   * Decides the relevancy of elections that couldn't be checked in {@code relevancies} according
+   * to {@code Config.INCLUDE_UNCHECKED_ELECTIONS}.
+   */
+  private static List<ElectionRelevancy> applyUncheckedElectionPolicy(
+      List<ElectionRelevancy> relevancies) {
+    List<ElectionRelevancy> decidedRelevancies = new ArrayList<>(relevancies.size());
+    for (ElectionRelevancy relevancy : relevancies) {
+      if (relevancy == ElectionRelevancy.UNCHECKED) {
+        relevancy =
+            Config.INCLUDE_UNCHECKED_ELECTIONS
+                ? ElectionRelevancy.RELEVANT_BUT_NOT_SPECIFIC
+                : ElectionRelevancy.IRRELEVANT;
+      }
+      decidedRelevancies.add(relevancy);
+    }
+    return decidedRelevancies;
+  }
+
+  /**
+   * Queries the database for (brief version) official election/position/candidate information of
+   * all elections and formats the data as {@code Election} objects, which are serialized to JSON
+   * once and shared by all requests until the directory is rebuilt. Correlates one {@code
+   * Election} with one or more {@code Position}. The candidates of all elections are fetched
+   * together, in batches. Throws if any batch fails, rather than building a directory with
+   * candidates missing, so that the directory cache keeps its previous snapshot and retries.
+   */
+  private static List<DirectoryElection> loadDirectory() {
     DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
     Query electionQuery = new Query("Election");
     PreparedQuery electionQueryResult = datastore.prepare(electionQuery);
     List<Entity> electionsData = electionQueryResult.asList(FetchOptions.Builder.withDefaults());
-    resetRelevantNonspecificFlag();
+    List<Entity> completeElections = new ArrayList<>(electionsData.size());
+    Set<Key> candidateKeys = new LinkedHashSet<>();
     for (Entity election : electionsData) {
-      if (!isRelevantElection(election, address, listAllElections, stateFilter)) {
-        continue;
-      }
       List<String> candidatePositionsData = 
           (List<String>) election.getProperty("candidatePositions");
       List<String> candidateIdsData = 
@@ -127,13 +460,63 @@ public class DataServlet extends HttpServlet {
           || candidateIncumbencyData == null) {
         continue;
       }
+      completeElections.add(election);
+      for (String candidateId : candidateIdsData) {
+        candidateKeys.add(KeyFactory.createKey("Candidate", Long.parseLong(candidateId)));
+      }
+    }
+    Map<Key, Entity> candidates = getCandidateEntities(candidateKeys);
+    List<DirectoryElection> directory = new ArrayList<>(completeElections.size());
+    for (Entity election : completeElections) {
       List<Position> positions =
-          extractPositionInformation(candidatePositionsData, candidateIdsData,
-                                     candidateIncumbencyData);
-      elections.add(new Election(election.getKey().getName(),
-                                 (Date) election.getProperty("date"), positions));
+          extractPositionInformation((List<String>) election.getProperty("candidatePositions"),
+                                     (List<String>) election.getProperty("candidateIds"),
+                                     (List<Boolean>) election.getProperty("candidateIncumbency"),
+                                     candidates);
+      Election electionData =
+          new Election(election.getKey().getName(), (Date) election.getProperty("date"),
+                       positions);
+      directory.add(
+          new DirectoryElection(election,
+                                gson.toJson(electionData).getBytes(StandardCharsets.UTF_8)));
     }
-    return elections;
+    return Collections.unmodifiableList(directory);
+  }
+
+  /**
+   * Gets the candidate entities with {@code candidateKeys} from the database, keyed by their keys.
+   * Batches of up to {@code MAX_BATCH_GET_SIZE} keys are all issued before any of them is waited
+   * for, so the number of candidates barely affects latency. Candidates that don't exist are left
+   * out. This method is given default visibility for testing purposes.
+   *
+   * @throws DatastoreFailureException if any batch fails or is interrupted.
+   */
+  static Map<Key, Entity> getCandidateEntities(Set<Key> candidateKeys) {
+    AsyncDatastoreService datastore = DatastoreServiceFactory.getAsyncDatastoreService();
+    List<Future<Map<Key, Entity>>> batches = new ArrayList<>();
+    List<Key> batchKeys = new ArrayList<>(Math.min(candidateKeys.size(), MAX_BATCH_GET_SIZE));
+    for (Key candidateKey : candidateKeys) {
+      batchKeys.add(candidateKey);
+      if (batchKeys.size() == MAX_BATCH_GET_SIZE) {
+        batches.add(datastore.get(batchKeys));
+        batchKeys = new ArrayList<>(MAX_BATCH_GET_SIZE);
+      }
+    }
+    if (!batchKeys.isEmpty()) {
+      batches.add(datastore.get(batchKeys));
+    }
+    Map<Key, Entity> candidates = new HashMap<>(candidateKeys.size());
+    for (Future<Map<Key, Entity>> batch : batches) {
+      try {
+        candidates.putAll(batch.get());
+      } catch (ExecutionException e) {
+        throw new DatastoreFailureException("Failed to get a batch of candidates", e.getCause());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new DatastoreFailureException("Interrupted while getting candidates", e);
+      }
+    }
+    return candidates;
   }
 
   /**
@@ -149,25 +532,37 @@ public class DataServlet extends HttpServlet {
       String state = (String) election.getProperty("state");
       return (stateFilter == null || state.isEmpty()) ? true : state.equals(stateFilter);
     } else {
-      // Query the Civic Information API for whether {@code election} is relevant to
-      // {@code address}.
-      String queryUrl =
-        String.format("%s&address=%s&electionId=%s&officialOnly=true", VOTER_INFO_QUERY_URL,
-                      URLEncoder.encode(address),
-                      (String) election.getProperty("queryId"));
-      String addressElectionResponse;
       try {
-        addressElectionResponse = queryCivicInformation(queryUrl);
+        ElectionRelevancy relevancy = checkElectionRelevancy(election, address);
+        return relevancy == ElectionRelevancy.RELEVANT
+            || relevancy == ElectionRelevancy.RELEVANT_BUT_NOT_SPECIFIC;
       } catch (Exception e) {
         return false;
       }
-      parseResponseForRelevancy(addressElectionResponse);
-      return true;
     }
   }
 
   /**
-   * Queries the Civic Information API and retrieves JSON response as a String.
+   * Queries the Civic Information API for whether {@code election} is relevant to {@code address},
+   * and whether the address is specific enough. This method is given default visibility for
+   * testing purposes.
+   *
+   * @throws IOException if the query fails, which happens if {@code election} is irrelevant.
+   */
+  ElectionRelevancy checkElectionRelevancy(Entity election, String address) throws IOException {
+    String queryUrl =
+      String.format("%s&address=%s&electionId=%s&officialOnly=true", VOTER_INFO_QUERY_URL,
+                    URLEncoder.encode(address),
+                    (String) election.getProperty("queryId"));
+    String addressElectionResponse = queryCivicInformation(queryUrl);
+    return parseResponseForRelevancy(addressElectionResponse)
+        ? ElectionRelevancy.RELEVANT_BUT_NOT_SPECIFIC
+        : ElectionRelevancy.RELEVANT;
+  }
+
+  /**
+   * Queries the Civic Information API and retrieves JSON response as a String. The query times out
+   * within {@code Config.RELEVANCY_CHECK_DEADLINE_MILLIS}.
    *
    * @throws ClientProtocolException if the GET request to the Civic Information API fails.
    * @throws SocketException if {@code queryUrl} is ill-constructed, such as with a null value
@@ -175,11 +570,20 @@ public class DataServlet extends HttpServlet {
    *     to fail.
    */
   String queryCivicInformation(String queryUrl) throws IOException, SocketException {
-    CloseableHttpClient httpClient = HttpClients.createDefault();
+    try (CloseableHttpClient httpClient = HttpClients.createDefault()) {
+      return requestHttpAndBuildCivicInfoResponse(httpClient, buildCivicInfoRequest(queryUrl));
+    }
+  }
+
+  /**
+   * Builds the GET request of {@code queryUrl} to the Civic Information API, with connect and
+   * socket timeouts no longer than the relevancy check deadline. This method is given default
+   * visibility for testing purposes.
+   */
+  static HttpGet buildCivicInfoRequest(String queryUrl) {
     HttpGet httpGet = new HttpGet(queryUrl);
-    String responseBody = requestHttpAndBuildCivicInfoResponse(httpClient, httpGet);
-    httpClient.close();
-    return responseBody;
+    httpGet.setConfig(CIVIC_INFO_REQUEST_CONFIG);
+    return httpGet;
   }
 
   /**
@@ -215,64 +619,123 @@ public class DataServlet extends HttpServlet {
    * Parses JSON {@code addressElectionResponse} and checks if the input address is specific enough
    * and counts as a residential address so that contests information is available: @see <a href=
    * "https://developers.google.com/civic-information/docs/using_api#voterinfoquery-response:">
-   * response structure</a>. This method is given default visibility for testing purposes.
+   * response structure</a>. Returns true if the address is relevant but not specific enough or
+   * not residential. This method is given default visibility for testing purposes.
    */
-  void parseResponseForRelevancy(String addressElectionResponse) {
+  boolean parseResponseForRelevancy(String addressElectionResponse) {
     JsonObject responseJson = new JsonParser().parse(addressElectionResponse).getAsJsonObject();
-    if (!responseJson.has("contests")) {
-      isAddressRelevantButNotSpecificOrResidential = true;
-    }
+    return !responseJson.has("contests");
   }
 
   /**
-   * Formats a list of positions and their associated candidates' information. Correlates
-   * a {@code Position} object with one or more {@code DirectoryCandidate}. Candidates running
-   * for the same position are assumed to be consecutive in {@code candidateIds} and
-   * {@code candidateIncumbency}.
+   * Formats a list of positions and their associated candidates' information, taken from {@code
+   * candidates}. Correlates a {@code Position} object with one or more {@code DirectoryCandidate}.
+   * Candidates are grouped by position in a single pass over the parallel {@code
+   * candidatePositions}, {@code candidateIds} and {@code candidateIncumbency}, so candidates
+   * running for the same position needn't be consecutive. Positions are listed in the order they
+   * first appear in. This method is given default visibility for testing purposes.
    */
-  private List<Position> extractPositionInformation(List<String> candidatePositions,
-      List<String> candidateIds, List<Boolean> candidateIncumbency) {
-    Set<String> distinctPositions = new HashSet<>(candidatePositions);
-    List<Position> positions = new ArrayList<>(distinctPositions.size());
-    for (String positionName : distinctPositions) {
-      int startIndex = candidatePositions.indexOf(positionName);
-      int endIndex = candidatePositions.lastIndexOf(positionName);
-      List<DirectoryCandidate> candidates = new ArrayList<>(endIndex - startIndex + 1);
-      for (int i = startIndex; i <= endIndex; i++) {
-        candidates.add(extractCandidateInformation(candidateIds.get(i),
-                                                   candidateIncumbency.get(i)));
+  static List<Position> extractPositionInformation(List<String> candidatePositions,
+      List<String> candidateIds, List<Boolean> candidateIncumbency, Map<Key, Entity> candidates) {
+    Map<String, List<DirectoryCandidate>> positionCandidates = new LinkedHashMap<>();
+    for (int i = 0; i < candidatePositions.size(); i++) {
+      List<DirectoryCandidate> candidatesOfPosition =
+          positionCandidates.computeIfAbsent(candidatePositions.get(i),
+                                             positionName -> new ArrayList<>());
+      String candidateId = candidateIds.get(i);
+      Entity candidate =
+          candidates.get(KeyFactory.createKey("Candidate", Long.parseLong(candidateId)));
+      if (candidate == null) {
+        continue;
       }
-      positions.add(new Position(positionName, candidates));
+      candidatesOfPosition.add(extractCandidateInformation(candidateId, candidate,
+                                                           candidateIncumbency.get(i)));
+    }
+    List<Position> positions = new ArrayList<>(positionCandidates.size());
+    for (Map.Entry<String, List<DirectoryCandidate>> position : positionCandidates.entrySet()) {
+      positions.add(new Position(position.getKey(), position.getValue()));
     }
     return positions;
   }
 
   /**
-   * Queries the database for (brief version) candidate information based on ID and formats the
-   * data as a {@code DirectoryCandidate} object.
+   * Formats (brief version) candidate information from the {@code candidate} entity as a {@code
+   * DirectoryCandidate} object.
    */
-  private DirectoryCandidate extractCandidateInformation(String candidateId,
-      boolean isIncumbent) {
-    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
-    Query candidateQuery = new Query("Candidate")
-        .setFilter(new FilterPredicate("__key__", FilterOperator.EQUAL,
-                   KeyFactory.createKey("Candidate", Long.parseLong(candidateId))));
-    PreparedQuery candidateQueryResult = datastore.prepare(candidateQuery);
-    Entity candidate = candidateQueryResult.asSingleEntity();
+  private static DirectoryCandidate extractCandidateInformation(String candidateId,
+      Entity candidate, boolean isIncumbent) {
     return new DirectoryCandidate(candidateId, 
                                   (String) candidate.getProperty("name"),
                                   (String) candidate.getProperty("party"),
                                   isIncumbent);
   }
 
-  // Class to package together different types of data as a HTTP response.
+  /** The relevancy of an election to an address, as checked with the Civic Information API. */
+  enum ElectionRelevancy {
+    IRRELEVANT,
+    RELEVANT,
+    // The address is relevant but not specific enough or not residential.
+    RELEVANT_BUT_NOT_SPECIFIC,
+    // The relevancy couldn't be checked in time, or at all.
+    UNCHECKED
+  }
+
+  /**
+   * An election in the directory, serialized as JSON in UTF-8, and its stored entity for checking
+   * its relevancy. The serialized election must not be modified.
+   */
+  private static class DirectoryElection {
+    private final Entity entity;
+    private final byte[] electionJson;
+
+    DirectoryElection(Entity entity, byte[] electionJson) {
+      this.entity = entity;
+      this.electionJson = electionJson;
+    }
+  }
+
+  /**
+   * The names of the elections relevant to an address, and whether the address was relevant but
+   * not specific enough or not residential, as cached by normalized address.
+   */
+  private static class AddressElections implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private final List<String> electionNames;
+    private final boolean isAddressRelevantButNotSpecificOrResidential;
+
+    AddressElections(List<String> electionNames,
+        boolean isAddressRelevantButNotSpecificOrResidential) {
+      this.electionNames = electionNames;
+      this.isAddressRelevantButNotSpecificOrResidential =
+          isAddressRelevantButNotSpecificOrResidential;
+    }
+  }
+
+  // Class to package together different types of data as a HTTP response. The data is already
+  // serialized as JSON, and is spliced together without any further serialization.
   class DirectoryPageDataPackage {
-    private List<Election> electionsData;
-    private String alert;
+    private List<byte[]> electionsData;
+    private byte[] alert;
 
-    DirectoryPageDataPackage(List<Election> electionsData, String alert) {
+    DirectoryPageDataPackage(List<byte[]> electionsData, byte[] alert) {
       this.electionsData = electionsData;
       this.alert = alert;
     }
+
+    /** Writes the package to {@code outputStream} as a JSON object, followed by a line break. */
+    void writeJson(OutputStream outputStream) throws IOException {
+      outputStream.write(ELECTIONS_DATA_START_JSON);
+      for (int i = 0; i < electionsData.size(); i++) {
+        if (i > 0) {
+          outputStream.write(ELECTIONS_DATA_SEPARATOR_JSON);
+        }
+        outputStream.write(electionsData.get(i));
+      }
+      outputStream.write(ELECTIONS_DATA_END_JSON);
+      if (alert != null) {
+        outputStream.write(alert);
+      }
+      outputStream.write(PACKAGE_END_JSON);
+    }
   }
 }
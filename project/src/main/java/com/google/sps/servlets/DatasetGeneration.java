@@ -0,0 +1,59 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.google.sps.servlets;
+
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.datastore.EntityNotFoundException;
+import com.google.appengine.api.datastore.KeyFactory;
+import com.google.sps.util.SnapshotCache;
+
+/**
+ * Tracks the generation of the data set, which the information compiler bumps every time it
+ * updates the database. Responses built from the database only change with the generation, so it
+ * is used both to rebuild cached data and to validate browsers' cached responses. The generation
+ * is read from the database at most every {@code CHECK_INTERVAL_MILLIS}, however many requests
+ * need it.
+ */
+class DatasetGeneration {
+  private final static long CHECK_INTERVAL_MILLIS = 60 * 1000;
+  // Only used if the generation hasn't been recorded, in which case it is read again this often.
+  private final static long MAX_AGE_MILLIS = 60 * 1000;
+  private final static SnapshotCache<Long> generationCache =
+      new SnapshotCache<>("dataset generation", DatasetGeneration::read, DatasetGeneration::read,
+                          CHECK_INTERVAL_MILLIS, MAX_AGE_MILLIS);
+
+  private DatasetGeneration() {}
+
+  /** Returns the current generation of the data set, or null if it hasn't been recorded. */
+  static Long get() {
+    return generationCache.get();
+  }
+
+  /** Drops the cached generation, so that it is read again. For testing purposes. */
+  static void clear() {
+    generationCache.clear();
+  }
+
+  /** Reads the generation of the data set from the database. */
+  private static Long read() {
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    try {
+      return (Long) datastore.get(KeyFactory.createKey("DatasetGeneration", "current"))
+          .getProperty("generation");
+    } catch (EntityNotFoundException e) {
+      return null;
+    }
+  }
+}
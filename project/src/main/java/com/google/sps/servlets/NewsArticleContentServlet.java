@@ -0,0 +1,132 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.datastore.KeyFactory;
+import com.google.gson.Gson;
+import com.google.sps.util.HttpCaching;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Serves the full content of news articles, which the candidate page only loads when it is shown,
+ * so that candidate pages don't carry the full content of all their news articles. Takes the IDs
+ * of up to {@code Config.NEWS_ARTICLE_CONTENT_PAGE_SIZE} news articles as the comma-separated
+ * "ids" parameter, and responds with a JSON object that maps each ID to its news article's
+ * content. News articles that don't exist are left out.
+ */
+@WebServlet("/news-article-content")
+public class NewsArticleContentServlet extends HttpServlet {
+  // Serializes responses, and is shared by all requests since it is thread-safe.
+  private static final Gson gson = new Gson();
+
+  @Override
+  public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    List<Long> ids = parseIds(request.getParameter("ids"));
+    if (ids == null) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST,
+                         String.format("Expected 1 to %d comma-separated news article IDs.",
+                                       Config.NEWS_ARTICLE_CONTENT_PAGE_SIZE));
+      return;
+    }
+    // News articles' content only changes with the dataset generation.
+    Long generation = DatasetGeneration.get();
+    if (generation != null) {
+      String etag = HttpCaching.buildEtag(generation, "newsArticleContent", ids.toString());
+      if (HttpCaching.validate(request, response, etag, Config.HTTP_CACHE_MAX_AGE_SECONDS,
+                               Config.HTTP_CACHE_STALE_WHILE_REVALIDATE_SECONDS)) {
+        return;
+      }
+    }
+    Map<String, String> contents = findNewsArticleContents(ids);
+    response.setContentType("application/json;");
+    response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+    PrintWriter responseWriter = response.getWriter();
+    gson.toJson(contents, Map.class, gson.newJsonWriter(responseWriter));
+    responseWriter.println();
+  }
+
+  /**
+   * Parses the comma-separated news article IDs in {@code idsParameter}, without duplicates.
+   * Returns null if {@code idsParameter} is missing, contains an invalid ID, or contains no IDs or
+   * more than {@code Config.NEWS_ARTICLE_CONTENT_PAGE_SIZE} IDs.
+   */
+  static List<Long> parseIds(String idsParameter) {
+    if (idsParameter == null) {
+      return null;
+    }
+    Set<Long> ids = new LinkedHashSet<>();
+    for (String id : idsParameter.split(",")) {
+      try {
+        ids.add(Long.parseLong(id.trim()));
+      } catch (NumberFormatException e) {
+        return null;
+      }
+    }
+    if (ids.isEmpty() || ids.size() > Config.NEWS_ARTICLE_CONTENT_PAGE_SIZE) {
+      return null;
+    }
+    return new ArrayList<>(ids);
+  }
+
+  /**
+   * Queries the database for the content of the news articles represented by {@code ids} in a
+   * single batch, and maps each ID to its content, in the order of {@code ids}. News articles
+   * stored before their content was split into {@code NewsArticleContent} entities keep their
+   * content in their {@code NewsArticle} entities, which are only read for IDs without a {@code
+   * NewsArticleContent} entity.
+   */
+  static Map<String, String> findNewsArticleContents(List<Long> ids) {
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    List<Key> contentKeys = new ArrayList<>(ids.size());
+    for (long id : ids) {
+      contentKeys.add(KeyFactory.createKey("NewsArticleContent", id));
+    }
+    Map<Key, Entity> contentEntities = datastore.get(contentKeys);
+    List<Key> legacyKeys = new ArrayList<>();
+    for (Key contentKey : contentKeys) {
+      if (!contentEntities.containsKey(contentKey)) {
+        legacyKeys.add(KeyFactory.createKey("NewsArticle", contentKey.getId()));
+      }
+    }
+    Map<Key, Entity> legacyEntities = legacyKeys.isEmpty() ? null : datastore.get(legacyKeys);
+    Map<String, String> contents = new LinkedHashMap<>();
+    for (long id : ids) {
+      Entity entity = contentEntities.get(KeyFactory.createKey("NewsArticleContent", id));
+      if (entity == null && legacyEntities != null) {
+        entity = legacyEntities.get(KeyFactory.createKey("NewsArticle", id));
+      }
+      if (entity != null && entity.hasProperty("content")) {
+        contents.put(Long.toString(id), (String) entity.getProperty("content"));
+      }
+    }
+    return contents;
+  }
+}
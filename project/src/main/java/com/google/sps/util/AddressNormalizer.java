@@ -0,0 +1,70 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.google.sps.util;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Normalizes user input addresses so that trivially different spellings of the same address, such
+ * as "123 Main Street" and "123 main st.", map to the same string. Letters are lowercased,
+ * punctuation other than commas is dropped, whitespace is collapsed, and common street suffixes,
+ * directions and unit designators are abbreviated.
+ */
+public class AddressNormalizer {
+  private static final Map<String, String> ABBREVIATIONS = new HashMap<>();
+
+  static {
+    String[][] abbreviations = {
+      {"street", "st"}, {"avenue", "ave"}, {"road", "rd"}, {"boulevard", "blvd"},
+      {"drive", "dr"}, {"lane", "ln"}, {"court", "ct"}, {"place", "pl"}, {"terrace", "ter"},
+      {"highway", "hwy"}, {"parkway", "pkwy"}, {"circle", "cir"}, {"square", "sq"},
+      {"apartment", "apt"}, {"suite", "ste"}, {"floor", "fl"}, {"north", "n"}, {"south", "s"},
+      {"east", "e"}, {"west", "w"}, {"northeast", "ne"}, {"northwest", "nw"},
+      {"southeast", "se"}, {"southwest", "sw"}
+    };
+    for (String[] abbreviation : abbreviations) {
+      ABBREVIATIONS.put(abbreviation[0], abbreviation[1]);
+    }
+  }
+
+  private AddressNormalizer() {}
+
+  /** Returns the normalized form of {@code address}, or an empty string if it is null. */
+  public static String normalize(String address) {
+    if (address == null) {
+      return "";
+    }
+    String cleanedAddress =
+        address.toLowerCase(Locale.US)
+            .replaceAll("[^\\p{L}\\p{N}\\s,]", " ")
+            .replaceAll(",", " , ");
+    StringBuilder normalizedAddress = new StringBuilder(cleanedAddress.length());
+    for (String token : cleanedAddress.trim().split("\\s+")) {
+      if (token.isEmpty()) {
+        continue;
+      }
+      if (token.equals(",")) {
+        normalizedAddress.append(',');
+        continue;
+      }
+      if (normalizedAddress.length() > 0) {
+        normalizedAddress.append(' ');
+      }
+      normalizedAddress.append(ABBREVIATIONS.getOrDefault(token, token));
+    }
+    return normalizedAddress.toString();
+  }
+}
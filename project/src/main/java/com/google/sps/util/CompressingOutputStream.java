@@ -0,0 +1,119 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.google.sps.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Compresses the data written to it in a {@code CompressionFormat}, streaming the compressed data
+ * to an underlying stream as it is produced. Uses a pooled {@code Deflater}, which is returned to
+ * the pool when the stream is finished.
+ */
+public class CompressingOutputStream extends OutputStream {
+  private static final int BUFFER_SIZE = 8192;
+  private static final byte[] GZIP_HEADER =
+      {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+  private final OutputStream outputStream;
+  private final CompressionFormat format;
+  private final Deflater deflater;
+  private final CRC32 checksum = new CRC32();
+  private final byte[] buffer = new byte[BUFFER_SIZE];
+  private boolean isFinished;
+
+  CompressingOutputStream(OutputStream outputStream, CompressionFormat format)
+      throws IOException {
+    this.outputStream = outputStream;
+    this.format = format;
+    this.deflater = format.borrowDeflater();
+    if (format.isGzip()) {
+      outputStream.write(GZIP_HEADER);
+    }
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    write(new byte[] {(byte) b}, 0, 1);
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) throws IOException {
+    if (isFinished) {
+      throw new IOException("Write after the compressed stream was finished.");
+    }
+    if (format.isGzip()) {
+      checksum.update(b, off, len);
+    }
+    deflater.setInput(b, off, len);
+    // Consume all input before returning, since the caller may reuse {@code b}.
+    while (!deflater.needsInput()) {
+      writeDeflatedData(Deflater.NO_FLUSH);
+    }
+  }
+
+  /** Writes out all data compressed so far, so that the receiver can decompress it. */
+  @Override
+  public void flush() throws IOException {
+    if (!isFinished) {
+      while (writeDeflatedData(Deflater.SYNC_FLUSH) == BUFFER_SIZE) {}
+    }
+    outputStream.flush();
+  }
+
+  /**
+   * Completes the compressed data without closing the underlying stream, and returns the {@code
+   * Deflater} to the pool.
+   */
+  public void finish() throws IOException {
+    if (isFinished) {
+      return;
+    }
+    isFinished = true;
+    try {
+      deflater.finish();
+      while (!deflater.finished()) {
+        writeDeflatedData(Deflater.NO_FLUSH);
+      }
+      if (format.isGzip()) {
+        writeLittleEndianInt((int) checksum.getValue());
+        writeLittleEndianInt((int) deflater.getBytesRead());
+      }
+    } finally {
+      format.releaseDeflater(deflater);
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    finish();
+    outputStream.close();
+  }
+
+  private int writeDeflatedData(int flushMode) throws IOException {
+    int length = deflater.deflate(buffer, 0, BUFFER_SIZE, flushMode);
+    if (length > 0) {
+      outputStream.write(buffer, 0, length);
+    }
+    return length;
+  }
+
+  private void writeLittleEndianInt(int value) throws IOException {
+    outputStream.write(value & 0xff);
+    outputStream.write((value >> 8) & 0xff);
+    outputStream.write((value >> 16) & 0xff);
+    outputStream.write((value >> 24) & 0xff);
+  }
+}
@@ -0,0 +1,86 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.google.sps.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.Deflater;
+
+/**
+ * The HTTP content encodings that responses can be compressed with. Each format keeps a pool of
+ * up to {@code MAX_POOLED_DEFLATERS} {@code Deflater}s, which are reused across responses instead
+ * of allocating a new one, with its native buffers, for every response.
+ */
+public enum CompressionFormat {
+  GZIP("gzip", true),
+  // HTTP's "deflate" encoding is the zlib format, which wraps raw deflate data.
+  DEFLATE("deflate", false);
+
+  private static final int MAX_POOLED_DEFLATERS = 32;
+  private final String contentEncoding;
+  private final boolean isRawDeflate;
+  private final BlockingQueue<Deflater> deflaterPool =
+      new ArrayBlockingQueue<>(MAX_POOLED_DEFLATERS);
+
+  CompressionFormat(String contentEncoding, boolean isRawDeflate) {
+    this.contentEncoding = contentEncoding;
+    this.isRawDeflate = isRawDeflate;
+  }
+
+  /** Returns the name of the format in the {@code Content-Encoding} header. */
+  public String getContentEncoding() {
+    return contentEncoding;
+  }
+
+  /**
+   * Returns a stream that compresses everything written to it into {@code outputStream}. The
+   * stream must be finished or closed for the compressed data to be complete.
+   */
+  public CompressingOutputStream newOutputStream(OutputStream outputStream) throws IOException {
+    return new CompressingOutputStream(outputStream, this);
+  }
+
+  /** Returns {@code data} compressed in this format. */
+  public byte[] compress(byte[] data) {
+    ByteArrayOutputStream compressedData = new ByteArrayOutputStream(data.length / 4 + 64);
+    try (CompressingOutputStream compressingStream = newOutputStream(compressedData)) {
+      compressingStream.write(data);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return compressedData.toByteArray();
+  }
+
+  boolean isGzip() {
+    return this == GZIP;
+  }
+
+  /** Takes a reset {@code Deflater} from the pool, or creates one if the pool is empty. */
+  Deflater borrowDeflater() {
+    Deflater deflater = deflaterPool.poll();
+    return (deflater == null) ? new Deflater(Deflater.DEFAULT_COMPRESSION, isRawDeflate) : deflater;
+  }
+
+  /** Resets {@code deflater} and returns it to the pool, or releases it if the pool is full. */
+  void releaseDeflater(Deflater deflater) {
+    deflater.reset();
+    if (!deflaterPool.offer(deflater)) {
+      deflater.end();
+    }
+  }
+}
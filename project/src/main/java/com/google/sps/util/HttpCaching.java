@@ -0,0 +1,99 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.google.sps.util;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Lets browsers and proxies cache responses that only change with the data set's generation. A
+ * response is validated with an ETag derived from the generation and the request parameters, and
+ * may be reused without validation for {@code maxAgeSeconds}, and while it is being revalidated for
+ * {@code staleWhileRevalidateSeconds} longer. ETags are weak, since the same response may be sent
+ * with different content codings, which are byte-for-byte different but semantically equivalent.
+ */
+public class HttpCaching {
+  private HttpCaching() {}
+
+  /**
+   * Builds the ETag of a response built from {@code generation} and {@code parameters}, which may
+   * be null. Parameters are identified by a SHA-256 digest of their values, so that responses to
+   * different parameters don't share an ETag.
+   */
+  public static String buildEtag(long generation, String... parameters) {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 is not available.", e);
+    }
+    for (String parameter : parameters) {
+      // Prefix each value with its length, or -1 if it is null, so that values can't run into
+      // each other.
+      byte[] value =
+          (parameter == null) ? new byte[0] : parameter.getBytes(StandardCharsets.UTF_8);
+      digest.update(
+          ByteBuffer.allocate(Integer.BYTES).putInt(parameter == null ? -1 : value.length).array());
+      digest.update(value);
+    }
+    return String.format(
+        "W/\"%x-%s\"", generation,
+        Base64.getUrlEncoder().withoutPadding().encodeToString(digest.digest()));
+  }
+
+  /**
+   * Sets the caching headers of {@code response} for a response with {@code etag}, and returns
+   * true if {@code request} already has an up-to-date copy, in which case the response is marked
+   * as not modified and its body must not be written.
+   */
+  public static boolean validate(HttpServletRequest request, HttpServletResponse response,
+      String etag, long maxAgeSeconds, long staleWhileRevalidateSeconds) {
+    response.setHeader("ETag", etag);
+    response.setHeader("Cache-Control",
+                       String.format("public, max-age=%d, stale-while-revalidate=%d",
+                                     maxAgeSeconds, staleWhileRevalidateSeconds));
+    if (!matchesEtag(request.getHeader("If-None-Match"), etag)) {
+      return false;
+    }
+    response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+    return true;
+  }
+
+  /**
+   * Returns true if the {@code ifNoneMatch} header lists {@code etag} or is {@code *}, comparing
+   * ETags weakly, as required for {@code If-None-Match}.
+   */
+  static boolean matchesEtag(String ifNoneMatch, String etag) {
+    if (ifNoneMatch == null) {
+      return false;
+    }
+    String opaqueEtag = stripWeakness(etag);
+    for (String candidateEtag : ifNoneMatch.split(",")) {
+      candidateEtag = stripWeakness(candidateEtag.trim());
+      if (candidateEtag.equals("*") || candidateEtag.equals(opaqueEtag)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static String stripWeakness(String etag) {
+    return etag.startsWith("W/") ? etag.substring(2) : etag;
+  }
+}
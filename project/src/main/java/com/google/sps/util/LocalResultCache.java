@@ -0,0 +1,70 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.google.sps.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * An in-process {@code ResultCache} that holds up to {@code maxSize} entries and evicts the least
+ * recently used entry when it is full. Each instance of the web app has its own cache.
+ */
+public class LocalResultCache<V> implements ResultCache<V> {
+  private final Map<String, Entry<V>> entries;
+  private final LongSupplier clock;
+
+  public LocalResultCache(int maxSize) {
+    this(maxSize, System::currentTimeMillis);
+  }
+
+  /** For testing purposes. */
+  LocalResultCache(int maxSize, LongSupplier clock) {
+    this.clock = clock;
+    this.entries = new LinkedHashMap<String, Entry<V>>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Entry<V>> eldest) {
+        return size() > maxSize;
+      }
+    };
+  }
+
+  @Override
+  public synchronized V get(String key) {
+    Entry<V> entry = entries.get(key);
+    if (entry == null) {
+      return null;
+    }
+    if (clock.getAsLong() >= entry.expirationTime) {
+      entries.remove(key);
+      return null;
+    }
+    return entry.value;
+  }
+
+  @Override
+  public synchronized void put(String key, V value, long timeToLiveMillis) {
+    entries.put(key, new Entry<>(value, clock.getAsLong() + timeToLiveMillis));
+  }
+
+  private static class Entry<V> {
+    private final V value;
+    private final long expirationTime;
+
+    Entry(V value, long expirationTime) {
+      this.value = value;
+      this.expirationTime = expirationTime;
+    }
+  }
+}
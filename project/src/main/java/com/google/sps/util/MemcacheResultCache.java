@@ -0,0 +1,52 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.google.sps.util;
+
+import com.google.appengine.api.memcache.Expiration;
+import com.google.appengine.api.memcache.MemcacheService;
+import com.google.appengine.api.memcache.MemcacheServiceFactory;
+import java.io.Serializable;
+
+/**
+ * A {@code ResultCache} backed by App Engine Memcache, which is shared by all instances of the web
+ * app. Keys are prefixed with {@code keyPrefix} so that different caches don't collide. Memcache
+ * may evict entries at any time, and failures to reach it are treated as cache misses.
+ */
+public class MemcacheResultCache<V extends Serializable> implements ResultCache<V> {
+  private final String keyPrefix;
+  private final MemcacheService memcache;
+
+  public MemcacheResultCache(String keyPrefix) {
+    this.keyPrefix = keyPrefix;
+    this.memcache = MemcacheServiceFactory.getMemcacheService();
+  }
+
+  @Override
+  public V get(String key) {
+    try {
+      return (V) memcache.get(keyPrefix + key);
+    } catch (RuntimeException e) {
+      return null;
+    }
+  }
+
+  @Override
+  public void put(String key, V value, long timeToLiveMillis) {
+    try {
+      memcache.put(keyPrefix + key, value, Expiration.byDeltaMillis((int) timeToLiveMillis));
+    } catch (RuntimeException e) {
+      return;
+    }
+  }
+}
@@ -0,0 +1,27 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.google.sps.util;
+
+/**
+ * A cache of results keyed by strings, whose entries expire after a time-to-live given when they
+ * are put. Implementations may evict entries earlier, so a missing entry only means that the
+ * result has to be computed again.
+ */
+public interface ResultCache<V> {
+  /** Returns the cached result for {@code key}, or null if there is none or it has expired. */
+  V get(String key);
+
+  /** Caches {@code value} for {@code key} for {@code timeToLiveMillis} milliseconds. */
+  void put(String key, V value, long timeToLiveMillis);
+}
@@ -0,0 +1,202 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.util;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+/**
+ * An in-process, read-through cache of a single immutable snapshot of data that only changes when
+ * the data set's generation changes. The generation is checked at most every {@code
+ * checkIntervalMillis}; if it is unknown, the snapshot is rebuilt once it is {@code maxAgeMillis}
+ * old instead. Only the first request to build a missing snapshot waits for it, together with any
+ * concurrent requests, which share that single build. Once a snapshot exists, a single request at
+ * a time checks and rebuilds it, while the other requests keep being served the current snapshot.
+ * The cached value must not be modified by its users.
+ */
+public class SnapshotCache<T> {
+  private static final Logger logger = Logger.getLogger(SnapshotCache.class.getName());
+  private final String name;
+  private final Supplier<T> loader;
+  private final Supplier<Long> generationReader;
+  private final long checkIntervalMillis;
+  private final long maxAgeMillis;
+  private final LongSupplier clock;
+  private volatile Snapshot<T> snapshot;
+  private final Object buildLock = new Object();
+  private final AtomicBoolean isRefreshing = new AtomicBoolean();
+  private final AtomicLong hitCount = new AtomicLong();
+  private final AtomicLong missCount = new AtomicLong();
+  private final AtomicLong rebuildCount = new AtomicLong();
+
+  /**
+   * Constructs a {@code SnapshotCache} named {@code name} that builds snapshots with {@code loader}
+   * and reads the current generation with {@code generationReader}, which returns null if the
+   * generation is unknown.
+   */
+  public SnapshotCache(String name, Supplier<T> loader, Supplier<Long> generationReader,
+      long checkIntervalMillis, long maxAgeMillis) {
+    this(name, loader, generationReader, checkIntervalMillis, maxAgeMillis,
+         System::currentTimeMillis);
+  }
+
+  /** For testing purposes. */
+  SnapshotCache(String name, Supplier<T> loader, Supplier<Long> generationReader,
+      long checkIntervalMillis, long maxAgeMillis, LongSupplier clock) {
+    this.name = name;
+    this.loader = loader;
+    this.generationReader = generationReader;
+    this.checkIntervalMillis = checkIntervalMillis;
+    this.maxAgeMillis = maxAgeMillis;
+    this.clock = clock;
+  }
+
+  /** Same as {@link #getSnapshot()}, but only returns the snapshot's value. */
+  public T get() {
+    return getSnapshot().getValue();
+  }
+
+  /**
+   * Returns the current snapshot, building it first if there is none yet. If the snapshot is due
+   * for a generation check and no other request is checking it, checks it and rebuilds it if the
+   * generation has changed. A failed rebuild is reported and the previous snapshot kept, to be
+   * checked again after {@code checkIntervalMillis}. Anything derived from the snapshot's value,
+   * such as an ETag, must be labeled with the snapshot's own generation rather than with a
+   * generation read separately, which may be newer.
+   */
+  public Snapshot<T> getSnapshot() {
+    Snapshot<T> currentSnapshot = snapshot;
+    if (currentSnapshot == null) {
+      return getOrBuildMissingSnapshot();
+    }
+    hitCount.incrementAndGet();
+    if (clock.getAsLong() < currentSnapshot.nextCheckTime
+        || !isRefreshing.compareAndSet(false, true)) {
+      return currentSnapshot;
+    }
+    try {
+      return refresh(currentSnapshot);
+    } catch (RuntimeException e) {
+      logger.warning(String.format("Failed to refresh the %s snapshot: %s", name, e));
+      snapshot = currentSnapshot.withNextCheckTime(clock.getAsLong() + checkIntervalMillis);
+      return currentSnapshot;
+    } finally {
+      isRefreshing.set(false);
+    }
+  }
+
+  /** Drops the current snapshot, so that the next request builds a new one. */
+  public void clear() {
+    synchronized (buildLock) {
+      snapshot = null;
+    }
+  }
+
+  private Snapshot<T> getOrBuildMissingSnapshot() {
+    synchronized (buildLock) {
+      Snapshot<T> currentSnapshot = snapshot;
+      if (currentSnapshot != null) {
+        hitCount.incrementAndGet();
+        return currentSnapshot;
+      }
+      missCount.incrementAndGet();
+      return build(generationReader.get());
+    }
+  }
+
+  /** Keeps {@code currentSnapshot} if it is still current, and rebuilds it otherwise. */
+  private Snapshot<T> refresh(Snapshot<T> currentSnapshot) {
+    Long generation = generationReader.get();
+    long now = clock.getAsLong();
+    boolean isCurrent =
+        (generation == null)
+            ? now - currentSnapshot.buildTime < maxAgeMillis
+            : generation.equals(currentSnapshot.generation);
+    if (isCurrent) {
+      snapshot = currentSnapshot.withNextCheckTime(now + checkIntervalMillis);
+      return snapshot;
+    }
+    synchronized (buildLock) {
+      return build(generation);
+    }
+  }
+
+  private Snapshot<T> build(Long generation) {
+    long buildTime = clock.getAsLong();
+    T value = loader.get();
+    snapshot = new Snapshot<>(value, generation, buildTime, buildTime + checkIntervalMillis);
+    rebuildCount.incrementAndGet();
+    logger.info(
+        String.format("Built the %s snapshot of generation %s: hits=%d, misses=%d, rebuilds=%d",
+                      name, generation, hitCount.get(), missCount.get(), rebuildCount.get()));
+    return snapshot;
+  }
+
+  /** Returns the number of requests served from an existing snapshot. */
+  public long getHitCount() {
+    return hitCount.get();
+  }
+
+  /** Returns the number of requests that had to wait for a missing snapshot to be built. */
+  public long getMissCount() {
+    return missCount.get();
+  }
+
+  /** Returns the number of snapshots built. */
+  public long getRebuildCount() {
+    return rebuildCount.get();
+  }
+
+  /** Returns the age of the current snapshot in milliseconds, or -1 if there is none. */
+  public long getSnapshotAgeMillis() {
+    Snapshot<T> currentSnapshot = snapshot;
+    return (currentSnapshot == null) ? -1 : clock.getAsLong() - currentSnapshot.buildTime;
+  }
+
+  /** An immutable snapshot, the generation it was built from and when to check it next. */
+  public static final class Snapshot<T> {
+    private final T value;
+    private final Long generation;
+    private final long buildTime;
+    private final long nextCheckTime;
+
+    Snapshot(T value, Long generation, long buildTime, long nextCheckTime) {
+      this.value = value;
+      this.generation = generation;
+      this.buildTime = buildTime;
+      this.nextCheckTime = nextCheckTime;
+    }
+
+    Snapshot<T> withNextCheckTime(long nextCheckTime) {
+      return new Snapshot<>(value, generation, buildTime, nextCheckTime);
+    }
+
+    /** Returns the cached value, which must not be modified. */
+    public T getValue() {
+      return value;
+    }
+
+    /**
+     * Returns the generation that the snapshot was built from, or null if it was unknown at the
+     * time.
+     */
+    public Long getGeneration() {
+      return generation;
+    }
+  }
+}
@@ -19,9 +19,20 @@ angular.module('candidatePage').component('candidatePage', {
   templateUrl: '/candidate-page/candidate-page.template.html', 
   controller: function candidatePageController($scope) {
     getCandidateInformation($scope);
+    // News articles' full content isn't part of the candidate information, and
+    // is only fetched once it is shown.
+    $scope.$watch('showContent || all', (isContentShown) => {
+      if (isContentShown) {
+        getNewsArticleContent($scope);
+      }
+    });
   }
 });
 
+// The maximum number of news articles whose full content is fetched at once,
+// as accepted by /news-article-content.
+const NEWS_ARTICLE_CONTENT_PAGE_SIZE = 20;
+
 /**
  * Adds candidate information to the page's scope so it can be
  * inserted by the page template.
@@ -52,6 +63,41 @@ async function getCandidateInformation(scope) {
 
   // Then add twitter information and load the widget
   addCandidateTwitterInfo(scope, officialCandidateInfo.twitter)
+  if (scope.showContent || scope.all) {
+    getNewsArticleContent(scope);
+  }
+}
+
+/**
+ * Adds the full content of the news articles in the page's scope that don't
+ * have it yet, fetching it from /news-article-content in pages of
+ * NEWS_ARTICLE_CONTENT_PAGE_SIZE news articles.
+ */
+async function getNewsArticleContent(scope) {
+  if (!scope.newsArticles) {
+    return;
+  }
+  const newsArticlesToFetch = scope.newsArticles.filter(
+      (newsArticle) => newsArticle.content === undefined &&
+                       !newsArticle.isContentRequested);
+  for (let i = 0; i < newsArticlesToFetch.length;
+       i += NEWS_ARTICLE_CONTENT_PAGE_SIZE) {
+    const page =
+        newsArticlesToFetch.slice(i, i + NEWS_ARTICLE_CONTENT_PAGE_SIZE);
+    page.forEach((newsArticle) => newsArticle.isContentRequested = true);
+    const ids = page.map((newsArticle) => newsArticle.id).join(',');
+    const response = await fetch(`/news-article-content?ids=${ids}`);
+    if (!response.ok) {
+      // Let the content be fetched again the next time it is shown.
+      page.forEach((newsArticle) => newsArticle.isContentRequested = false);
+      continue;
+    }
+    const contents = await response.json();
+    page.forEach((newsArticle) => {
+      newsArticle.content = contents[newsArticle.id] || '';
+    });
+    scope.$apply();
+  }
 }
 
 /**
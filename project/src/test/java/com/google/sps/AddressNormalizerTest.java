@@ -0,0 +1,45 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.google.sps.util;
+
+import static com.google.common.truth.Truth.*;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * A tester for the address normalizer.
+ */
+@RunWith(JUnit4.class)
+public class AddressNormalizerTest {
+  @Test
+  public void normalize_triviallyDifferentAddressesAreEqual() {
+    String normalizedAddress = AddressNormalizer.normalize("123 Main Street, Springfield, IL");
+    assertThat(AddressNormalizer.normalize("  123 main st.,springfield ,  il "))
+        .isEqualTo(normalizedAddress);
+    assertThat(normalizedAddress).isEqualTo("123 main st, springfield, il");
+  }
+
+  @Test
+  public void normalize_abbreviateDirectionsAndUnits() {
+    assertThat(AddressNormalizer.normalize("1600 North Avenue, Apartment #4"))
+        .isEqualTo("1600 n ave, apt 4");
+  }
+
+  @Test
+  public void normalize_nullAddress() {
+    assertThat(AddressNormalizer.normalize(null)).isEmpty();
+  }
+}
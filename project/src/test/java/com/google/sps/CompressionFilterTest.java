@@ -0,0 +1,147 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.google.sps.servlets;
+
+import static com.google.common.truth.Truth.*;
+import static org.mockito.Mockito.*;
+
+import com.google.sps.util.CompressionFormat;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * A tester for the response compression filter.
+ */
+@RunWith(JUnit4.class)
+public class CompressionFilterTest {
+  @Test
+  public void negotiateCompressionFormat_preferGzipUnlessRejected() {
+    assertThat(CompressionFilter.negotiateCompressionFormat(null)).isNull();
+    assertThat(CompressionFilter.negotiateCompressionFormat("gzip, deflate, br"))
+        .isEqualTo(CompressionFormat.GZIP);
+    assertThat(CompressionFilter.negotiateCompressionFormat("gzip;q=0, deflate"))
+        .isEqualTo(CompressionFormat.DEFLATE);
+    assertThat(CompressionFilter.negotiateCompressionFormat("gzip;q=0.5, deflate;q=0.8"))
+        .isEqualTo(CompressionFormat.DEFLATE);
+    assertThat(CompressionFilter.negotiateCompressionFormat("*")).isEqualTo(CompressionFormat.GZIP);
+    assertThat(CompressionFilter.negotiateCompressionFormat("br, identity")).isNull();
+  }
+
+  @Test
+  public void doFilter_compressLargeResponses() throws IOException, ServletException {
+    byte[] responseBody = buildResponseBody(Config.COMPRESSION_MIN_SIZE_BYTES * 10);
+    HttpServletResponse response = mock(HttpServletResponse.class);
+    ByteArrayServletOutputStream responseStream = new ByteArrayServletOutputStream();
+    when(response.getOutputStream()).thenReturn(responseStream);
+    new CompressionFilter().doFilter(
+        buildRequest("gzip"), response,
+        (filteredRequest, filteredResponse) ->
+            filteredResponse.getOutputStream().write(responseBody));
+    verify(response).setHeader("Content-Encoding", "gzip");
+    GZIPInputStream decompressedStream =
+        new GZIPInputStream(new ByteArrayInputStream(responseStream.toByteArray()));
+    ByteArrayOutputStream decompressedBody = new ByteArrayOutputStream();
+    byte[] buffer = new byte[4096];
+    int length;
+    while ((length = decompressedStream.read(buffer)) != -1) {
+      decompressedBody.write(buffer, 0, length);
+    }
+    assertThat(decompressedBody.toByteArray()).isEqualTo(responseBody);
+  }
+
+  @Test
+  public void doFilter_sendSmallResponsesAsIs() throws IOException, ServletException {
+    byte[] responseBody = buildResponseBody(Config.COMPRESSION_MIN_SIZE_BYTES / 2);
+    HttpServletResponse response = mock(HttpServletResponse.class);
+    ByteArrayServletOutputStream responseStream = new ByteArrayServletOutputStream();
+    when(response.getOutputStream()).thenReturn(responseStream);
+    new CompressionFilter().doFilter(
+        buildRequest("gzip"), response,
+        (filteredRequest, filteredResponse) ->
+            filteredResponse.getOutputStream().write(responseBody));
+    verify(response, never()).setHeader(eq("Content-Encoding"), anyString());
+    assertThat(responseStream.toByteArray()).isEqualTo(responseBody);
+  }
+
+  @Test
+  public void doFilter_passPrecompressedResponsesThrough() throws IOException, ServletException {
+    // A servlet that sets the content encoding itself has already compressed the response in the
+    // negotiated format, which should be sent without compressing it again.
+    byte[] compressedBody =
+        CompressionFormat.GZIP.compress(buildResponseBody(Config.COMPRESSION_MIN_SIZE_BYTES * 10));
+    HttpServletRequest request = buildRequest("gzip");
+    HttpServletResponse response = mock(HttpServletResponse.class);
+    ByteArrayServletOutputStream responseStream = new ByteArrayServletOutputStream();
+    when(response.getOutputStream()).thenReturn(responseStream);
+    FilterChain chain = (filteredRequest, filteredResponse) -> {
+      verify(request).setAttribute(CompressionFilter.COMPRESSION_FORMAT_ATTRIBUTE,
+                                   CompressionFormat.GZIP);
+      ((HttpServletResponse) filteredResponse).setHeader("Content-Encoding", "gzip");
+      filteredResponse.setContentLength(compressedBody.length);
+      filteredResponse.getOutputStream().write(compressedBody);
+    };
+    new CompressionFilter().doFilter(request, response, chain);
+    verify(response).setContentLength(compressedBody.length);
+    assertThat(responseStream.toByteArray()).isEqualTo(compressedBody);
+  }
+
+  private static HttpServletRequest buildRequest(String acceptEncoding) {
+    HttpServletRequest request = mock(HttpServletRequest.class);
+    when(request.getHeader("Accept-Encoding")).thenReturn(acceptEncoding);
+    return request;
+  }
+
+  private static byte[] buildResponseBody(int size) {
+    StringBuilder responseBody = new StringBuilder(size);
+    while (responseBody.length() < size) {
+      responseBody.append("{\"candidateName\":\"Candidate\"},");
+    }
+    responseBody.setLength(size);
+    return responseBody.toString().getBytes(StandardCharsets.UTF_8);
+  }
+
+  // Servlet output stream that keeps the response in memory.
+  private static class ByteArrayServletOutputStream extends ServletOutputStream {
+    private final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+    @Override
+    public void write(int b) {
+      outputStream.write(b);
+    }
+
+    @Override
+    public boolean isReady() {
+      return true;
+    }
+
+    @Override
+    public void setWriteListener(WriteListener writeListener) {}
+
+    byte[] toByteArray() {
+      return outputStream.toByteArray();
+    }
+  }
+}
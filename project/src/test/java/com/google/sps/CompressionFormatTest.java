@@ -0,0 +1,91 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.google.sps.util;
+
+import static com.google.common.truth.Truth.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * A tester for compressing responses with pooled deflaters.
+ */
+@RunWith(JUnit4.class)
+public class CompressionFormatTest {
+  private static final byte[] DATA = buildData();
+
+  @Test
+  public void compress_gzipRoundTrip() throws IOException {
+    byte[] compressedData = CompressionFormat.GZIP.compress(DATA);
+    assertThat(compressedData.length).isLessThan(DATA.length / 10);
+    assertThat(readFully(new GZIPInputStream(new ByteArrayInputStream(compressedData))))
+        .isEqualTo(DATA);
+  }
+
+  @Test
+  public void compress_deflateRoundTrip() throws IOException {
+    byte[] compressedData = CompressionFormat.DEFLATE.compress(DATA);
+    assertThat(readFully(new InflaterInputStream(new ByteArrayInputStream(compressedData))))
+        .isEqualTo(DATA);
+  }
+
+  @Test
+  public void compress_reusedDeflatersCompressIdentically() {
+    // Compressing the same data again reuses a pooled deflater, which should have been reset.
+    assertThat(CompressionFormat.GZIP.compress(DATA))
+        .isEqualTo(CompressionFormat.GZIP.compress(DATA));
+  }
+
+  @Test
+  public void newOutputStream_flushedDataIsDecompressible() throws IOException {
+    // Data written and flushed in several parts should decompress as a whole once the stream is
+    // finished.
+    ByteArrayOutputStream compressedData = new ByteArrayOutputStream();
+    CompressingOutputStream compressingStream =
+        CompressionFormat.GZIP.newOutputStream(compressedData);
+    compressingStream.write(DATA, 0, DATA.length / 2);
+    compressingStream.flush();
+    compressingStream.write(DATA, DATA.length / 2, DATA.length - DATA.length / 2);
+    compressingStream.finish();
+    assertThat(
+        readFully(new GZIPInputStream(new ByteArrayInputStream(compressedData.toByteArray()))))
+            .isEqualTo(DATA);
+  }
+
+  private static byte[] buildData() {
+    StringBuilder data = new StringBuilder();
+    for (int i = 0; i < 2000; i++) {
+      data.append("{\"electionName\":\"Election ").append(i).append("\",\"positions\":[]},");
+    }
+    return data.toString().getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static byte[] readFully(InputStream inputStream) throws IOException {
+    ByteArrayOutputStream data = new ByteArrayOutputStream();
+    byte[] buffer = new byte[4096];
+    int length;
+    while ((length = inputStream.read(buffer)) != -1) {
+      data.write(buffer, 0, length);
+    }
+    return data.toByteArray();
+  }
+}
@@ -18,17 +18,48 @@ import static com.google.common.truth.Truth.*;
 import static com.google.common.truth.Truth8.*;
 import static org.mockito.Mockito.*;
 
+import com.google.appengine.api.datastore.DatastoreFailureException;
 import com.google.appengine.api.datastore.DatastoreService;
 import com.google.appengine.api.datastore.DatastoreServiceFactory;
 import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.datastore.KeyFactory;
 import com.google.appengine.tools.development.testing.LocalDatastoreServiceTestConfig;
 import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import com.google.apphosting.api.ApiProxy;
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.sps.servlets.DataServlet.ElectionRelevancy;
+import com.google.sps.util.CompressionFormat;
 import java.io.IOException;
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
 import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
 import org.apache.http.client.ClientProtocolException;
 import org.apache.http.client.ResponseHandler;
+import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClients;
@@ -79,6 +110,7 @@ public class DataServletTest {
   private static final String UNKNOWN_STATE = "";
   private static final String STATE_FILTER = "NY";
   private static final String ADDRESS = "Sample address";
+  private static final String VOTER_INFO_URL = "https://www.googleapis.com/civicinfo/v2/voterinfo";
   private static final DataServlet dataServlet = new DataServlet();
 
   private static final LocalServiceTestHelper datastoreHelper =
@@ -87,6 +119,8 @@ public class DataServletTest {
   @Before
   public void initialize() {
     datastoreHelper.setUp();
+    // The servlet's caches outlive each test's local Datastore, so start from empty caches.
+    DataServlet.clearCaches();
   }
 
   @Test
@@ -113,8 +147,7 @@ public class DataServletTest {
     // Parse JSON-formatted String {@code RELEVANT_ADDRESS_ELECTION_RESPONSE} and see that it
     // indicates the election is relevant to the address and the address is both specific and
     // counts as a residential address, according to the Civic Information API response structure.
-    dataServlet.parseResponseForRelevancy(RELEVANT_ADDRESS_ELECTION_RESPONSE);
-    assertThat(dataServlet.isAddressRelevantButNotSpecificOrResidential).isFalse();
+    assertThat(dataServlet.parseResponseForRelevancy(RELEVANT_ADDRESS_ELECTION_RESPONSE)).isFalse();
   }
 
   @Test
@@ -122,9 +155,9 @@ public class DataServletTest {
     // Parse JSON-formatted String {@code RELEVANT_NONSPECIFIC_ADDRESS_ELECTION_RESPONSE} and see
     // that it,indicates the election is probably relevant to the address according to the Civic
     // Information API response structure, but the address is nonspecific.
-    dataServlet.isAddressRelevantButNotSpecificOrResidential = false;
-    dataServlet.parseResponseForRelevancy(RELEVANT_NONSPECIFIC_ADDRESS_ELECTION_RESPONSE);
-    assertThat(dataServlet.isAddressRelevantButNotSpecificOrResidential).isTrue();
+    assertThat(
+        dataServlet.parseResponseForRelevancy(RELEVANT_NONSPECIFIC_ADDRESS_ELECTION_RESPONSE))
+            .isTrue();
   }
 
   @Test
@@ -228,8 +261,301 @@ public class DataServletTest {
             .isTrue();
   }
 
+  @Test
+  public void checkElectionsRelevancy_keepOrderAndExcludeLateOrFailedElections()
+      throws IOException {
+    // Check four elections concurrently, one of which takes longer than the deadline and one of
+    // which fails, like irrelevant elections do. The results should be in the same order as the
+    // elections, with the late and failed elections deemed irrelevant.
+    DataServlet dataServletSpy = spy(new DataServlet());
+    // App Engine's local request thread factory needs the Java 8 runtime, so plain threads stand
+    // in for request threads.
+    doReturn(Executors.defaultThreadFactory()).when(dataServletSpy)
+        .getRelevancyCheckThreadFactory();
+    List<Entity> elections = new ArrayList<>();
+    for (String queryId : new String[] {"1", "late", "failed", "4"}) {
+      Entity election = new Entity("Election");
+      election.setProperty("queryId", queryId);
+      elections.add(election);
+    }
+    doReturn(ElectionRelevancy.RELEVANT).when(dataServletSpy)
+        .checkElectionRelevancy(elections.get(0), ADDRESS);
+    doAnswer(invocation -> {
+      Thread.sleep(5000);
+      return ElectionRelevancy.RELEVANT;
+    }).when(dataServletSpy).checkElectionRelevancy(elections.get(1), ADDRESS);
+    doThrow(new IOException()).when(dataServletSpy)
+        .checkElectionRelevancy(elections.get(2), ADDRESS);
+    doReturn(ElectionRelevancy.RELEVANT_BUT_NOT_SPECIFIC).when(dataServletSpy)
+        .checkElectionRelevancy(elections.get(3), ADDRESS);
+    long startTime = System.currentTimeMillis();
+    List<ElectionRelevancy> relevancies =
+        dataServletSpy.checkElectionsRelevancy(elections, ADDRESS, 500);
+    assertThat(System.currentTimeMillis() - startTime).isLessThan(5000L);
+    assertThat(relevancies)
+        .containsExactly(ElectionRelevancy.RELEVANT, ElectionRelevancy.IRRELEVANT,
+                         ElectionRelevancy.IRRELEVANT, ElectionRelevancy.RELEVANT_BUT_NOT_SPECIFIC)
+        .inOrder();
+  }
+
+  @Test
+  public void buildCivicInfoRequest_timeOutWithinRelevancyCheckDeadline() {
+    // Civic Information API queries that hang should give up by the relevancy check deadline, so
+    // that they don't keep their threads.
+    RequestConfig requestConfig = DataServlet.buildCivicInfoRequest(VOTER_INFO_URL).getConfig();
+    assertThat(requestConfig.getConnectTimeout()).isGreaterThan(0);
+    assertThat((long) requestConfig.getConnectTimeout())
+        .isAtMost(Config.RELEVANCY_CHECK_DEADLINE_MILLIS);
+    assertThat(requestConfig.getConnectionRequestTimeout()).isGreaterThan(0);
+    assertThat((long) requestConfig.getConnectionRequestTimeout())
+        .isAtMost(Config.RELEVANCY_CHECK_DEADLINE_MILLIS);
+    assertThat(requestConfig.getSocketTimeout()).isGreaterThan(0);
+    assertThat((long) requestConfig.getSocketTimeout())
+        .isAtMost(Config.RELEVANCY_CHECK_DEADLINE_MILLIS);
+  }
+
+  @Test
+  public void doGet_concurrentRequestsKeepTheirOwnState() throws Exception {
+    // Serve many address searches and state listings from many threads at once with a single
+    // servlet instance, as App Engine does for a threadsafe app. Searches for nonspecific addresses
+    // should be alerted about it, and no other response should be. Use App Engine development
+    // tools for testing Datastore locally in memory, sharing its environment with all threads.
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    int electionCount = 3;
+    for (long i = 1; i <= electionCount; i++) {
+      Entity election = new Entity("Election", "Concurrent election " + i);
+      election.setProperty("queryId", Long.toString(i));
+      election.setProperty("state", NY_STATE);
+      election.setProperty("date", new Date());
+      election.setProperty("candidatePositions", Arrays.asList("Governor"));
+      election.setProperty("candidateIds", Arrays.asList(Long.toString(i)));
+      election.setProperty("candidateIncumbency", Arrays.asList(false));
+      Entity candidate = new Entity("Candidate", i);
+      candidate.setProperty("name", "Candidate " + i);
+      candidate.setProperty("party", "Party");
+      datastore.put(Arrays.asList(election, candidate));
+    }
+    DataServlet dataServletSpy = spy(new DataServlet());
+    // App Engine's local request thread factory needs the Java 8 runtime, so plain threads stand
+    // in for request threads.
+    doReturn(Executors.defaultThreadFactory()).when(dataServletSpy)
+        .getRelevancyCheckThreadFactory();
+    doAnswer(invocation ->
+        ((String) invocation.getArgument(1)).startsWith("Nonspecific")
+            ? ElectionRelevancy.RELEVANT_BUT_NOT_SPECIFIC
+            : ElectionRelevancy.RELEVANT)
+        .when(dataServletSpy).checkElectionRelevancy(any(Entity.class), anyString());
+    ApiProxy.Environment environment = ApiProxy.getCurrentEnvironment();
+    ExecutorService requestExecutor = Executors.newFixedThreadPool(32);
+    List<Future<Boolean>> responses = new ArrayList<>();
+    for (int i = 0; i < 500; i++) {
+      String address = ((i % 2 == 0) ? "Nonspecific address " : "Specific address ") + (i % 20);
+      boolean listAllElections = (i % 5 == 0);
+      responses.add(requestExecutor.submit(() -> {
+        ApiProxy.setEnvironmentForCurrentThread(environment);
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getParameter("address")).thenReturn(address);
+        when(request.getParameter("listAllElections"))
+            .thenReturn(Boolean.toString(listAllElections));
+        HttpServletResponse response = mock(HttpServletResponse.class);
+        ByteArrayServletOutputStream responseStream = new ByteArrayServletOutputStream();
+        when(response.getOutputStream()).thenReturn(responseStream);
+        dataServletSpy.doGet(request, response);
+        JsonObject responseJson =
+            new JsonParser().parse(responseStream.toString()).getAsJsonObject();
+        boolean isAlerted = !listAllElections && address.startsWith("Nonspecific");
+        return responseJson.getAsJsonArray("electionsData").size() == electionCount
+            && responseJson.has("alert") == isAlerted;
+      }));
+    }
+    requestExecutor.shutdown();
+    for (Future<Boolean> response : responses) {
+      assertThat(response.get()).isTrue();
+    }
+  }
+
+  @Test
+  public void extractPositionInformation_groupInterleavedPositionsInFirstSeenOrder() {
+    // Group the candidates of a large election whose positions are interleaved, with one candidate
+    // missing from the database. Each position should appear once, in the order it is first seen,
+    // with its candidates in their original order, and the missing candidate should be left out.
+    int positionCount = 500;
+    int candidatesPerPosition = 4;
+    List<String> candidatePositions = new ArrayList<>();
+    List<String> candidateIds = new ArrayList<>();
+    List<Boolean> candidateIncumbency = new ArrayList<>();
+    Map<Key, Entity> candidates = new HashMap<>();
+    for (int round = 0; round < candidatesPerPosition; round++) {
+      for (int position = 0; position < positionCount; position++) {
+        long candidateId = round * positionCount + position + 1;
+        candidatePositions.add("Position " + position);
+        candidateIds.add(Long.toString(candidateId));
+        candidateIncumbency.add(round == 0);
+        Entity candidate = new Entity("Candidate", candidateId);
+        candidate.setProperty("name", "Candidate " + candidateId);
+        candidate.setProperty("party", "Party");
+        candidates.put(candidate.getKey(), candidate);
+      }
+    }
+    candidates.remove(KeyFactory.createKey("Candidate", 1));
+    JsonArray positions =
+        new Gson().toJsonTree(DataServlet.extractPositionInformation(candidatePositions,
+                                                                     candidateIds,
+                                                                     candidateIncumbency,
+                                                                     candidates))
+            .getAsJsonArray();
+    assertThat(positions.size()).isEqualTo(positionCount);
+    JsonObject firstPosition = positions.get(0).getAsJsonObject();
+    assertThat(firstPosition.get("positionName").getAsString()).isEqualTo("Position 0");
+    assertThat(firstPosition.getAsJsonArray("candidates").size())
+        .isEqualTo(candidatesPerPosition - 1);
+    JsonObject lastPosition = positions.get(positionCount - 1).getAsJsonObject();
+    assertThat(lastPosition.get("positionName").getAsString())
+        .isEqualTo("Position " + (positionCount - 1));
+    JsonArray lastPositionCandidates = lastPosition.getAsJsonArray("candidates");
+    assertThat(lastPositionCandidates.size()).isEqualTo(candidatesPerPosition);
+    assertThat(lastPositionCandidates.get(0).getAsJsonObject()
+                   .get("candidateName").getAsString())
+        .isEqualTo("Candidate " + positionCount);
+    assertThat(lastPositionCandidates.get(candidatesPerPosition - 1).getAsJsonObject()
+                   .get("candidateName").getAsString())
+        .isEqualTo("Candidate " + (positionCount * candidatesPerPosition));
+  }
+
+  @Test
+  public void getCandidateEntities_fetchAcrossMultipleBatches() {
+    // Store more candidates than fit in a single batch get, and request them together with a
+    // candidate that doesn't exist. All stored candidates should be returned, keyed by their keys,
+    // and the missing candidate should be left out. Use App Engine development tools for testing
+    // Datastore locally in memory.
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    int candidateCount = 1001;
+    List<Entity> candidates = new ArrayList<>(candidateCount);
+    Set<Key> candidateKeys = new LinkedHashSet<>();
+    for (long candidateId = 1; candidateId <= candidateCount; candidateId++) {
+      Entity candidate = new Entity("Candidate", candidateId);
+      candidate.setProperty("name", "Candidate " + candidateId);
+      candidates.add(candidate);
+      candidateKeys.add(candidate.getKey());
+    }
+    datastore.put(candidates);
+    Key missingCandidateKey = KeyFactory.createKey("Candidate", candidateCount + 1);
+    candidateKeys.add(missingCandidateKey);
+    Map<Key, Entity> candidateEntities = DataServlet.getCandidateEntities(candidateKeys);
+    assertThat(candidateEntities).hasSize(candidateCount);
+    assertThat(candidateEntities).doesNotContainKey(missingCandidateKey);
+    assertThat(candidateEntities.get(KeyFactory.createKey("Candidate", candidateCount))
+                   .getProperty("name"))
+        .isEqualTo("Candidate " + candidateCount);
+  }
+  @Test(expected = DatastoreFailureException.class)
+  public void getCandidateEntities_throwIfBatchFails() throws Exception {
+    // Fail every batch get of candidates. Rather than leaving the candidates out, which would
+    // build an incomplete directory that stays cached until the dataset generation changes,
+    // getting the candidates should fail.
+    ApiProxy.Delegate datastoreDelegate = ApiProxy.getDelegate();
+    ApiProxy.setDelegate(
+        (ApiProxy.Delegate) Proxy.newProxyInstance(
+            ApiProxy.Delegate.class.getClassLoader(), new Class<?>[] {ApiProxy.Delegate.class},
+            (proxy, method, arguments) -> {
+              if (method.getName().equals("makeAsyncCall") && "Get".equals(arguments[2])) {
+                CompletableFuture<byte[]> failedCall = new CompletableFuture<>();
+                failedCall.completeExceptionally(
+                    new ApiProxy.ApplicationException(0, "Batch get failed"));
+                return failedCall;
+              }
+              try {
+                return method.invoke(datastoreDelegate, arguments);
+              } catch (InvocationTargetException e) {
+                throw e.getCause();
+              }
+            }));
+    try {
+      DataServlet.getCandidateEntities(
+          new LinkedHashSet<>(Arrays.asList(KeyFactory.createKey("Candidate", 1))));
+    } finally {
+      ApiProxy.setDelegate(datastoreDelegate);
+    }
+  }
+
+
+  @Test
+  public void buildListingKey_distinguishFormatsGenerationsAndStateFilters() {
+    // State filters are kept as is, so filters with colliding hash codes, such as "Aa" and "BB",
+    // and a missing filter don't share a compressed listing.
+    long generation = 1;
+    String key = DataServlet.buildListingKey(CompressionFormat.GZIP, generation, "Aa");
+    assertThat(DataServlet.buildListingKey(CompressionFormat.GZIP, generation, "Aa"))
+        .isEqualTo(key);
+    assertThat(DataServlet.buildListingKey(CompressionFormat.GZIP, generation, "BB"))
+        .isNotEqualTo(key);
+    assertThat(DataServlet.buildListingKey(CompressionFormat.DEFLATE, generation, "Aa"))
+        .isNotEqualTo(key);
+    assertThat(DataServlet.buildListingKey(CompressionFormat.GZIP, generation + 1, "Aa"))
+        .isNotEqualTo(key);
+    assertThat(DataServlet.buildListingKey(CompressionFormat.GZIP, generation, null))
+        .isNotEqualTo(DataServlet.buildListingKey(CompressionFormat.GZIP, generation, "*"));
+  }
+
+  @Test
+  public void buildAddressKey_changeWithGeneration() {
+    // Cached address lookups are only reused against the directory of the same generation.
+    String key = DataServlet.buildAddressKey(1L, ADDRESS);
+    assertThat(DataServlet.buildAddressKey(1L, ADDRESS)).isEqualTo(key);
+    assertThat(DataServlet.buildAddressKey(2L, ADDRESS)).isNotEqualTo(key);
+    assertThat(DataServlet.buildAddressKey(null, ADDRESS)).isNotEqualTo(key);
+  }
+
+  @Test
+  public void writeJson_keepShapeOfSerializedPackage() throws IOException {
+    // Splice serialized elections and an alert together, and see that the result is the same as
+    // serializing the whole package with Gson.
+    Gson gson = new Gson();
+    String alert = "Alert";
+    List<byte[]> elections = new ArrayList<>();
+    JsonArray expectedElections = new JsonArray();
+    for (String electionName : new String[] {"First election", "Second election"}) {
+      JsonObject election = new JsonObject();
+      election.addProperty("electionName", electionName);
+      elections.add(gson.toJson(election).getBytes(StandardCharsets.UTF_8));
+      expectedElections.add(election);
+    }
+    JsonObject expectedPackage = new JsonObject();
+    expectedPackage.add("electionsData", expectedElections);
+    expectedPackage.addProperty("alert", alert);
+    ByteArrayServletOutputStream outputStream = new ByteArrayServletOutputStream();
+    dataServlet.new DirectoryPageDataPackage(
+        elections, (",\"alert\":" + gson.toJson(alert)).getBytes(StandardCharsets.UTF_8))
+            .writeJson(outputStream);
+    assertThat(new JsonParser().parse(outputStream.toString())).isEqualTo(expectedPackage);
+    assertThat(outputStream.toString()).endsWith(System.lineSeparator());
+  }
+
   @After
   public void cleanup() {
     datastoreHelper.tearDown();
   }
+
+  // Servlet output stream that keeps the response in memory.
+  private static class ByteArrayServletOutputStream extends ServletOutputStream {
+    private final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+    @Override
+    public void write(int b) {
+      outputStream.write(b);
+    }
+
+    @Override
+    public boolean isReady() {
+      return true;
+    }
+
+    @Override
+    public void setWriteListener(WriteListener writeListener) {}
+
+    @Override
+    public String toString() {
+      return new String(outputStream.toByteArray(), StandardCharsets.UTF_8);
+    }
+  }
 }
@@ -0,0 +1,89 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.google.sps.util;
+
+import static com.google.common.truth.Truth.*;
+import static org.mockito.Mockito.*;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * A tester for HTTP caching of generation-based responses.
+ */
+@RunWith(JUnit4.class)
+public class HttpCachingTest {
+  private static final long GENERATION = 1595413800000L;
+
+  @Test
+  public void buildEtag_dependOnGenerationAndParameters() {
+    String etag = HttpCaching.buildEtag(GENERATION, "data", "NY");
+    assertThat(HttpCaching.buildEtag(GENERATION, "data", "NY")).isEqualTo(etag);
+    assertThat(HttpCaching.buildEtag(GENERATION + 1, "data", "NY")).isNotEqualTo(etag);
+    assertThat(HttpCaching.buildEtag(GENERATION, "data", "NJ")).isNotEqualTo(etag);
+    assertThat(HttpCaching.buildEtag(GENERATION, "data", null)).isNotEqualTo(etag);
+    assertThat(HttpCaching.buildEtag(GENERATION, "data", "null")).isNotEqualTo(
+        HttpCaching.buildEtag(GENERATION, "data", null));
+    assertThat(etag).startsWith("W/\"");
+  }
+
+  @Test
+  public void buildEtag_distinguishParametersWithCollidingHashCodes() {
+    // "Aa" and "BB" have the same {@code String} hash code.
+    assertThat("Aa".hashCode()).isEqualTo("BB".hashCode());
+    assertThat(HttpCaching.buildEtag(GENERATION, "data", "Aa"))
+        .isNotEqualTo(HttpCaching.buildEtag(GENERATION, "data", "BB"));
+    assertThat(HttpCaching.buildEtag(GENERATION, "data", "a,b"))
+        .isNotEqualTo(HttpCaching.buildEtag(GENERATION, "data", "a", "b"));
+  }
+
+  @Test
+  public void matchesEtag_listedWeakOrWildcardEtags() {
+    String etag = HttpCaching.buildEtag(GENERATION, "data", "NY");
+    assertThat(HttpCaching.matchesEtag(null, etag)).isFalse();
+    assertThat(HttpCaching.matchesEtag("\"other\"", etag)).isFalse();
+    assertThat(HttpCaching.matchesEtag("\"other\", " + etag, etag)).isTrue();
+    // Weak comparison ignores whether either ETag is weak.
+    assertThat(HttpCaching.matchesEtag(etag.substring(2), etag)).isTrue();
+    assertThat(HttpCaching.matchesEtag("*", etag)).isTrue();
+  }
+
+  @Test
+  public void validate_notModifiedIfEtagMatches() {
+    String etag = HttpCaching.buildEtag(GENERATION, "candidate", "1", "Election");
+    HttpServletRequest request = mock(HttpServletRequest.class);
+    HttpServletResponse response = mock(HttpServletResponse.class);
+    when(request.getHeader("If-None-Match")).thenReturn(etag);
+    assertThat(HttpCaching.validate(request, response, etag, 300, 3600)).isTrue();
+    verify(response).setHeader("ETag", etag);
+    verify(response).setHeader("Cache-Control", "public, max-age=300, stale-while-revalidate=3600");
+    verify(response).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+  }
+
+  @Test
+  public void validate_modifiedIfEtagIsOutdated() {
+    HttpServletRequest request = mock(HttpServletRequest.class);
+    HttpServletResponse response = mock(HttpServletResponse.class);
+    when(request.getHeader("If-None-Match"))
+        .thenReturn(HttpCaching.buildEtag(GENERATION - 1, "data", "NY"));
+    assertThat(
+        HttpCaching.validate(request, response, HttpCaching.buildEtag(GENERATION, "data", "NY"),
+                             300, 3600))
+            .isFalse();
+    verify(response, never()).setStatus(anyInt());
+  }
+}
@@ -0,0 +1,89 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import static com.google.common.truth.Truth.*;
+
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.tools.development.testing.LocalDatastoreServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * A tester for the news article content servlet.
+ */
+@RunWith(JUnit4.class)
+public class NewsArticleContentServletTest {
+  private static final long NEWS_ARTICLE_ID = 1;
+  private static final long LEGACY_NEWS_ARTICLE_ID = 2;
+  private static final long MISSING_NEWS_ARTICLE_ID = 3;
+  private static final String CONTENT = "Content";
+  private static final String LEGACY_CONTENT = "Legacy content";
+
+  private static final LocalServiceTestHelper datastoreHelper =
+      new LocalServiceTestHelper(new LocalDatastoreServiceTestConfig());
+
+  @Before
+  public void initialize() {
+    datastoreHelper.setUp();
+  }
+
+  @Test
+  public void parseIds_acceptOnlyPagesOfValidIds() {
+    assertThat(NewsArticleContentServlet.parseIds("1, 2,1")).containsExactly(1L, 2L).inOrder();
+    assertThat(NewsArticleContentServlet.parseIds(null)).isNull();
+    assertThat(NewsArticleContentServlet.parseIds("1,a")).isNull();
+    List<String> tooManyIds = new ArrayList<>();
+    for (int i = 0; i <= Config.NEWS_ARTICLE_CONTENT_PAGE_SIZE; i++) {
+      tooManyIds.add(Integer.toString(i));
+    }
+    assertThat(NewsArticleContentServlet.parseIds(String.join(",", tooManyIds))).isNull();
+  }
+
+  @Test
+  public void findNewsArticleContents_readSplitAndLegacyContent() {
+    // Store the content of one news article in its own {@code NewsArticleContent} entity, and
+    // the content of another one in its {@code NewsArticle} entity, as stored before content was
+    // split. Both should be found, in the requested order, and the missing one left out.
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    Entity newsArticleContent = new Entity("NewsArticleContent", NEWS_ARTICLE_ID);
+    newsArticleContent.setProperty("content", CONTENT);
+    Entity legacyNewsArticle = new Entity("NewsArticle", LEGACY_NEWS_ARTICLE_ID);
+    legacyNewsArticle.setProperty("content", LEGACY_CONTENT);
+    datastore.put(Arrays.asList(newsArticleContent, legacyNewsArticle));
+    Map<String, String> contents =
+        NewsArticleContentServlet.findNewsArticleContents(
+            Arrays.asList(LEGACY_NEWS_ARTICLE_ID, MISSING_NEWS_ARTICLE_ID, NEWS_ARTICLE_ID));
+    assertThat(contents)
+        .containsExactly(Long.toString(LEGACY_NEWS_ARTICLE_ID), LEGACY_CONTENT,
+                         Long.toString(NEWS_ARTICLE_ID), CONTENT)
+        .inOrder();
+  }
+
+  @After
+  public void cleanup() {
+    datastoreHelper.tearDown();
+  }
+}
@@ -0,0 +1,78 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.google.sps.util;
+
+import static com.google.common.truth.Truth.*;
+
+import com.google.appengine.tools.development.testing.LocalMemcacheServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * A tester for the in-process and Memcache result caches.
+ */
+@RunWith(JUnit4.class)
+public class ResultCacheTest {
+  private final LocalServiceTestHelper memcacheHelper =
+      new LocalServiceTestHelper(new LocalMemcacheServiceTestConfig());
+
+  @Before
+  public void initialize() {
+    memcacheHelper.setUp();
+  }
+
+  @Test
+  public void localResultCache_expireAfterTimeToLive() {
+    AtomicLong clock = new AtomicLong(0);
+    LocalResultCache<String> resultCache = new LocalResultCache<>(10, clock::get);
+    resultCache.put("address", "result", 1000);
+    clock.set(999);
+    assertThat(resultCache.get("address")).isEqualTo("result");
+    clock.set(1000);
+    assertThat(resultCache.get("address")).isNull();
+  }
+
+  @Test
+  public void localResultCache_evictLeastRecentlyUsed() {
+    LocalResultCache<String> resultCache = new LocalResultCache<>(2);
+    resultCache.put("first", "1", 60000);
+    resultCache.put("second", "2", 60000);
+    resultCache.get("first");
+    resultCache.put("third", "3", 60000);
+    assertThat(resultCache.get("first")).isEqualTo("1");
+    assertThat(resultCache.get("second")).isNull();
+    assertThat(resultCache.get("third")).isEqualTo("3");
+  }
+
+  @Test
+  public void memcacheResultCache_storeUnderPrefixedKey() {
+    // Use App Engine development tools for testing Memcache locally in memory. Caches with
+    // different prefixes shouldn't see each other's entries.
+    MemcacheResultCache<String> resultCache = new MemcacheResultCache<>("Test:");
+    resultCache.put("address", "result", 60000);
+    assertThat(resultCache.get("address")).isEqualTo("result");
+    assertThat(new MemcacheResultCache<String>("Other:").get("address")).isNull();
+    assertThat(resultCache.get("missing")).isNull();
+  }
+
+  @After
+  public void cleanup() {
+    memcacheHelper.tearDown();
+  }
+}
@@ -0,0 +1,113 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.util;
+
+import static com.google.common.truth.Truth.*;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * A tester for the snapshot cache.
+ */
+@RunWith(JUnit4.class)
+public class SnapshotCacheTest {
+  private static final long CHECK_INTERVAL = 1000;
+  private static final long MAX_AGE = 10000;
+  private AtomicLong clock;
+  private AtomicInteger loadCount;
+  private AtomicReference<Long> generation;
+  private SnapshotCache<Integer> snapshotCache;
+
+  @Before
+  public void initialize() {
+    clock = new AtomicLong(0);
+    loadCount = new AtomicInteger(0);
+    generation = new AtomicReference<>(1L);
+    snapshotCache =
+        new SnapshotCache<>("test", loadCount::incrementAndGet, generation::get, CHECK_INTERVAL,
+                            MAX_AGE, clock::get);
+  }
+
+  @Test
+  public void get_buildOnceAndServeUntilGenerationChanges() {
+    assertThat(snapshotCache.get()).isEqualTo(1);
+    clock.set(CHECK_INTERVAL);
+    assertThat(snapshotCache.get()).isEqualTo(1);
+    generation.set(2L);
+    clock.set(CHECK_INTERVAL + 1);
+    // Not due for a generation check yet.
+    assertThat(snapshotCache.get()).isEqualTo(1);
+    clock.set(2 * CHECK_INTERVAL);
+    assertThat(snapshotCache.get()).isEqualTo(2);
+    assertThat(snapshotCache.getMissCount()).isEqualTo(1);
+    assertThat(snapshotCache.getHitCount()).isEqualTo(3);
+    assertThat(snapshotCache.getRebuildCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void getSnapshot_keepGenerationOfSnapshotUntilChecked() {
+    // The generation changes between checks, so the snapshot keeps being served with the
+    // generation it was built from, rather than the newer generation, until it is checked.
+    SnapshotCache.Snapshot<Integer> snapshot = snapshotCache.getSnapshot();
+    assertThat(snapshot.getValue()).isEqualTo(1);
+    assertThat(snapshot.getGeneration()).isEqualTo(1L);
+    generation.set(2L);
+    clock.set(CHECK_INTERVAL - 1);
+    snapshot = snapshotCache.getSnapshot();
+    assertThat(snapshot.getValue()).isEqualTo(1);
+    assertThat(snapshot.getGeneration()).isEqualTo(1L);
+    clock.set(CHECK_INTERVAL);
+    snapshot = snapshotCache.getSnapshot();
+    assertThat(snapshot.getValue()).isEqualTo(2);
+    assertThat(snapshot.getGeneration()).isEqualTo(2L);
+  }
+
+  @Test
+  public void get_unknownGenerationRebuildAfterMaxAge() {
+    generation.set(null);
+    assertThat(snapshotCache.get()).isEqualTo(1);
+    clock.set(MAX_AGE - 1);
+    assertThat(snapshotCache.get()).isEqualTo(1);
+    // The last check was at MAX_AGE - 1, so the next one is due an interval later.
+    clock.set(MAX_AGE - 1 + CHECK_INTERVAL);
+    assertThat(snapshotCache.get()).isEqualTo(2);
+    assertThat(snapshotCache.getSnapshotAgeMillis()).isEqualTo(0);
+  }
+
+  @Test
+  public void get_failedRebuildKeepsPreviousSnapshot() {
+    AtomicInteger failingLoadCount = new AtomicInteger(0);
+    SnapshotCache<Integer> failingCache =
+        new SnapshotCache<>("test",
+                            () -> {
+                              if (failingLoadCount.incrementAndGet() > 1) {
+                                throw new IllegalStateException("Database unavailable.");
+                              }
+                              return 1;
+                            },
+                            generation::get, CHECK_INTERVAL, MAX_AGE, clock::get);
+    assertThat(failingCache.get()).isEqualTo(1);
+    generation.set(2L);
+    clock.set(CHECK_INTERVAL);
+    assertThat(failingCache.get()).isEqualTo(1);
+    assertThat(failingCache.getRebuildCount()).isEqualTo(1);
+  }
+}